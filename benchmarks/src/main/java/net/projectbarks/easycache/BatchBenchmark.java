@@ -0,0 +1,107 @@
+package net.projectbarks.easycache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares storing and reading a batch of keys one at a time against the
+ * batch operations {@link EasyCache#storeAll(Map)} and
+ * {@link EasyCache#getAll(java.util.Collection, Class)}. Every measurement is
+ * a whole batch, divide by the batch size for the cost per key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(1)
+public class BatchBenchmark {
+
+    private static final int ENTRIES = 100000, BATCHES = 2048;
+
+    @Param({"10", "200"})
+    int batch;
+
+    List<List<String>> keys;
+    List<Map<String, Integer>> values;
+    int next;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Gigabyte, 1);
+        Random random = new Random(42);
+        keys = new ArrayList<List<String>>(BATCHES);
+        values = new ArrayList<Map<String, Integer>>(BATCHES);
+        for (int i = 0; i < BATCHES; i++) {
+            List<String> batchKeys = new ArrayList<String>(batch);
+            Map<String, Integer> batchValues = new HashMap<String, Integer>();
+            for (int j = 0; j < batch; j++) {
+                String key = "key-" + random.nextInt(ENTRIES);
+                batchKeys.add(key);
+                batchValues.put(key, key.length());
+            }
+            keys.add(batchKeys);
+            values.add(batchValues);
+        }
+        EasyCache.storeAll(merged());
+    }
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        EasyCache.clearCache();
+    }
+
+    @Benchmark
+    public void storeEach() {
+        for (Map.Entry<String, Integer> entry : values.get(next++ & (BATCHES - 1)).entrySet()) {
+            EasyCache.storeCacheObject(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void storeAll() {
+        EasyCache.storeAll(values.get(next++ & (BATCHES - 1)));
+    }
+
+    @Benchmark
+    public void getEach(Blackhole blackhole) {
+        for (String key : keys.get(next++ & (BATCHES - 1))) {
+            blackhole.consume(EasyCache.getCachedObject(key, Integer.class));
+        }
+    }
+
+    @Benchmark
+    public Map<String, Integer> getAll() {
+        return EasyCache.getAll(keys.get(next++ & (BATCHES - 1)), Integer.class);
+    }
+
+    private Map<String, Integer> merged() {
+        Map<String, Integer> merged = new HashMap<String, Integer>();
+        for (Map<String, Integer> batchValues : values) {
+            merged.putAll(batchValues);
+        }
+        return merged;
+    }
+}
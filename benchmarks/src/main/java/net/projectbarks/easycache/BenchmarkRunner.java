@@ -0,0 +1,54 @@
+package net.projectbarks.easycache;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.NoBenchmarksException;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark with allocation profiling enabled. The operation
+ * benchmarks are run once for every thread count given, showing how reads and
+ * writes scale with the threads. Every other benchmark is run once with the
+ * threads it declares.
+ *
+ * Run with: java -jar benchmarks/target/benchmarks.jar [thread counts] [include regex]
+ * for example: java -jar benchmarks/target/benchmarks.jar 1,4,16 OperationBenchmark.get
+ */
+public class BenchmarkRunner {
+
+    private static final String SCALING = "\\.OperationBenchmark\\.";
+
+    public static void main(String[] args) throws RunnerException {
+        String[] threads = (args.length > 0 ? args[0] : "1,2,4,8").split(",");
+        String include = args.length > 1 ? args[1] : "";
+        for (String count : threads) {
+            // Leaves out every benchmark that is not an operation benchmark.
+            run(include.isEmpty() ? SCALING : include, "^(?!.*" + SCALING + ")", Integer.parseInt(count.trim()));
+        }
+        run(include, SCALING, 0);
+    }
+
+    /**
+     * Runs the benchmarks matched.
+     *
+     * @param include the regex of the benchmarks to run
+     * @param exclude the regex of the benchmarks to leave out
+     * @param threads the threads to run with, or zero for the threads each benchmark declares
+     */
+    private static void run(String include, String exclude, int threads) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(include)
+                .exclude(exclude)
+                .addProfiler(GCProfiler.class);
+        if (threads > 0) {
+            options.threads(threads);
+        }
+        try {
+            new Runner(options.build()).run();
+        } catch (NoBenchmarksException ignored) {
+            // The include only matched benchmarks of the other run.
+        }
+    }
+}
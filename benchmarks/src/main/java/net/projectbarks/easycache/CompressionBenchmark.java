@@ -0,0 +1,155 @@
+package net.projectbarks.easycache;
+
+import net.projectbarks.easycache.codec.BinaryCodec;
+import net.projectbarks.easycache.codec.Codec;
+import net.projectbarks.easycache.codec.CompressingCodec;
+import net.projectbarks.easycache.codec.DeflateCompressor;
+import net.projectbarks.easycache.codec.GsonCodec;
+import net.projectbarks.easycache.codec.LzCompressor;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores verbose json documents by value within a fixed max size, with and
+ * without compression, and measures storing and reading back a document. The
+ * documents that stay cached and the compression ratio are reported as the
+ * cached and ratio counters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(1)
+public class CompressionBenchmark {
+
+    @Param({"100000"})
+    int entries;
+    @Param({"GSON", "GSON_LZ", "GSON_DEFLATE", "BINARY", "BINARY_LZ"})
+    String codec;
+
+    Codec valueCodec;
+    Document[] documents;
+    int next;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Megabyte, 32);
+        EasyCache.setStorageMode(StorageMode.VALUE);
+        Codec base = codec.startsWith("GSON") ? new GsonCodec() : new BinaryCodec();
+        if (codec.endsWith("_LZ")) {
+            valueCodec = new CompressingCodec(base, new LzCompressor(), 128);
+        } else if (codec.endsWith("_DEFLATE")) {
+            valueCodec = new CompressingCodec(base, new DeflateCompressor(), 128);
+        } else {
+            valueCodec = base;
+        }
+        EasyCache.setCodec(valueCodec);
+        documents = new Document[entries];
+        for (int i = 0; i < entries; i++) {
+            documents[i] = new Document(i);
+            EasyCache.storeCacheObject("document-" + i, documents[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        EasyCache.clearCache();
+        EasyCache.setStorageMode(StorageMode.REFERENCE);
+        EasyCache.setCodec(new BinaryCodec());
+        EasyCache.setMaxSize(DiskUnit.Megabyte, 100);
+    }
+
+    /**
+     * Density reports how many documents fit and how far they shrank.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Density {
+        private double documents;
+        private double compression;
+
+        // The counters are summed over the measurement iterations, so each one
+        // reports its share of the mean. They are measured before the trial tear
+        // down clears the cache.
+        @TearDown(Level.Iteration)
+        public void measure(CompressionBenchmark benchmark, IterationParams iteration) {
+            long cached = 0;
+            for (int i = 0; i < benchmark.entries; i++) {
+                if (EasyCache.getCachedObject("document-" + i, Document.class) != null) {
+                    cached++;
+                }
+            }
+            Codec valueCodec = benchmark.valueCodec;
+            double ratio = valueCodec instanceof CompressingCodec ? ((CompressingCodec) valueCodec).getRatio() : 1;
+            documents = (double) cached / iteration.getCount();
+            compression = ratio / iteration.getCount();
+        }
+
+        public double cached() {
+            return documents;
+        }
+
+        public double ratio() {
+            return compression;
+        }
+    }
+
+    @Benchmark
+    public void store(Density density) {
+        int index = next++ % entries;
+        EasyCache.storeCacheObject("document-" + index, documents[index]);
+    }
+
+    @Benchmark
+    public Document get(Density density) {
+        return EasyCache.getCachedObject("document-" + next++ % entries, Document.class);
+    }
+
+    static class Document {
+        long id;
+        String title;
+        String description;
+        List<Attribute> attributes = new ArrayList<Attribute>();
+
+        Document(int id) {
+            this.id = id;
+            this.title = "Document number " + id + " of the compression benchmark";
+            this.description = "A verbose description that repeats the usual wording found in product listings, "
+                    + "with free shipping, easy returns and a warranty on document " + id;
+            for (int i = 0; i < 8; i++) {
+                attributes.add(new Attribute("attribute-name-" + i, "attribute-value-" + (id + i) % 50));
+            }
+        }
+    }
+
+    static class Attribute {
+        String name;
+        String value;
+
+        Attribute(String name, String value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+}
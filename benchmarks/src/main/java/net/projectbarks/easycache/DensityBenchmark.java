@@ -0,0 +1,153 @@
+package net.projectbarks.easycache;
+
+import net.projectbarks.easycache.codec.BinaryCodec;
+import net.projectbarks.easycache.codec.GsonCodec;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures small DTOs stored by reference, by value as json and by value with
+ * the binary codec. Besides the time to store and read an entry, the heap used
+ * per entry and the weight each entry is counted as against the max size are
+ * reported as the heapBytes and weightBytes counters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(1)
+public class DensityBenchmark {
+
+    @Param({"200000"})
+    int entries;
+    @Param({"REFERENCE", "GSON", "BINARY"})
+    String storage;
+
+    Order[] orders;
+    double heapPerEntry;
+    int next;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Gigabyte, 1);
+        if (storage.equals("REFERENCE")) {
+            EasyCache.setStorageMode(StorageMode.REFERENCE);
+        } else {
+            EasyCache.setStorageMode(StorageMode.VALUE);
+            EasyCache.setCodec(storage.equals("GSON") ? new GsonCodec() : new BinaryCodec());
+        }
+        long before = usedHeap();
+        for (int i = 0; i < entries; i++) {
+            EasyCache.storeCacheObject("order-" + i, new Order(i));
+        }
+        heapPerEntry = (double) (usedHeap() - before) / entries;
+        orders = new Order[entries];
+        for (int i = 0; i < entries; i++) {
+            orders[i] = new Order(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        EasyCache.clearCache();
+        EasyCache.setStorageMode(StorageMode.REFERENCE);
+        EasyCache.setCodec(new BinaryCodec());
+    }
+
+    /**
+     * Footprint reports the heap and weight per entry next to the time taken.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        private double heapPerEntry;
+        private double weightPerEntry;
+
+        // The counters are summed over the measurement iterations, so each one
+        // reports its share of the mean. They are measured before the trial tear
+        // down clears the cache.
+        @TearDown(Level.Iteration)
+        public void measure(DensityBenchmark benchmark, IterationParams iteration) {
+            heapPerEntry = benchmark.heapPerEntry / iteration.getCount();
+            weightPerEntry = (double) EasyCache.getUsedSpace() / benchmark.entries / iteration.getCount();
+        }
+
+        public double heapBytes() {
+            return heapPerEntry;
+        }
+
+        public double weightBytes() {
+            return weightPerEntry;
+        }
+    }
+
+    @Benchmark
+    public void store(Footprint footprint) {
+        int index = next++ % entries;
+        EasyCache.storeCacheObject("order-" + index, orders[index]);
+    }
+
+    @Benchmark
+    public Order get(Footprint footprint) {
+        return EasyCache.getCachedObject("order-" + next++ % entries, Order.class);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static class Order {
+        long id;
+        String customer;
+        String status;
+        double total;
+        List<Line> lines = new ArrayList<Line>();
+
+        Order(int id) {
+            this.id = id;
+            this.customer = "customer-" + (id % 1000);
+            this.status = id % 3 == 0 ? "SHIPPED" : "PENDING";
+            this.total = id * 1.25d;
+            for (int i = 0; i < 3; i++) {
+                lines.add(new Line("sku-" + (id + i) % 500, i + 1, 9.99d));
+            }
+        }
+    }
+
+    static class Line {
+        String sku;
+        int quantity;
+        double price;
+
+        Line(String sku, int quantity, double price) {
+            this.sku = sku;
+            this.quantity = quantity;
+            this.price = price;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package net.projectbarks.easycache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores far more entries than fit in memory with the disk tier enabled and
+ * measures reads of random keys, most of which are promoted back from the
+ * memory mapped data files and spill another entry in turn.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(1)
+public class DiskTierBenchmark {
+
+    @Param({"500000"})
+    int entries;
+
+    File directory;
+    Random random;
+
+    @Setup(Level.Trial)
+    public void fill() throws IOException {
+        directory = File.createTempFile("easycache", "");
+        directory.delete();
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Megabyte, 10);
+        EasyCache.setDiskTier(directory, DiskUnit.Gigabyte, 2);
+        char[] text = new char[512];
+        for (int i = 0; i < entries; i++) {
+            text[0] = (char) ('a' + i % 26);
+            EasyCache.storeCacheObject("key-" + i, new String(text));
+        }
+        random = new Random(42);
+    }
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        EasyCache.disableDiskTier();
+        EasyCache.setMaxSize(DiskUnit.Megabyte, 100);
+        EasyCache.clearCache();
+        directory.delete();
+    }
+
+    @Benchmark
+    public String get() {
+        return EasyCache.getCachedObject("key-" + random.nextInt(entries), String.class);
+    }
+}
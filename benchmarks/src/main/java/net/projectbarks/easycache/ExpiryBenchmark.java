@@ -0,0 +1,77 @@
+package net.projectbarks.easycache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the maintenance work of the cache on the amount of entries given,
+ * {@link EasyCache#checkLifetime()} removing every entry once they have all
+ * expired and {@link EasyCache#setAllowUpdateTime(boolean)} switching update
+ * time on and off. Each measurement is a single call, the cache is filled again
+ * before every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1)
+public class ExpiryBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int entries;
+
+    private boolean allowUpdateTime;
+
+    @Setup(Level.Trial)
+    public void configure() {
+        EasyCache.setMaxSize(DiskUnit.Gigabyte, 2);
+        EasyCache.setExpiryMode(ExpiryMode.CALLER);
+        EasyCache.setSweepInterval(TimeUnit.DAYS, 1);
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() throws InterruptedException {
+        EasyCache.clearCache();
+        for (int i = 0; i < entries; i++) {
+            EasyCache.storeCacheObject("key-" + i, i, TimeUnit.MILLISECONDS, 1L);
+        }
+        // The expiry wheel only passes a bucket once its second is over.
+        Thread.sleep(1100L);
+    }
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        EasyCache.clearCache();
+        EasyCache.setAllowUpdateTime(false);
+        EasyCache.setExpiryMode(ExpiryMode.DAEMON);
+    }
+
+    @Benchmark
+    public long checkLifetime() {
+        EasyCache.checkLifetime();
+        return EasyCache.getUsedSpace();
+    }
+
+    @Benchmark
+    public boolean setAllowUpdateTime() {
+        allowUpdateTime = !allowUpdateTime;
+        EasyCache.setAllowUpdateTime(allowUpdateTime);
+        return allowUpdateTime;
+    }
+}
@@ -0,0 +1,82 @@
+package net.projectbarks.easycache;
+
+import net.projectbarks.easycache.datastore.CacheStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the latency of reads mixed with one write in eight, on an idle cache
+ * and while an asynchronous export of the whole cache keeps running in the
+ * background. The export is started again whenever it finishes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1)
+public class ExportLatencyBenchmark {
+
+    private static final CacheStore DISCARD = new CacheStore() {
+        @Override
+        public void store(String key, String value, Object rawValue, int index, int total) {
+        }
+    };
+
+    @Param({"1000000"})
+    int entries;
+    @Param({"false", "true"})
+    boolean exporting;
+
+    Random random;
+    CompletableFuture<Integer> export;
+    int count;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Gigabyte, 2);
+        for (int i = 0; i < entries; i++) {
+            EasyCache.storeCacheObject("key-" + i, "value-" + i);
+        }
+        random = new Random(42);
+    }
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        if (export != null) {
+            export.join();
+        }
+        EasyCache.clearCache();
+    }
+
+    @Benchmark
+    public Object operation() {
+        if (exporting && (export == null || export.isDone())) {
+            export = EasyCache.exportCacheAsync(DISCARD);
+        }
+        String key = "key-" + random.nextInt(entries);
+        if ((count++ & 7) == 0) {
+            EasyCache.storeCacheObject(key, "updated");
+            return key;
+        }
+        return EasyCache.getCachedObject(key, String.class);
+    }
+}
@@ -0,0 +1,69 @@
+package net.projectbarks.easycache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills the cache with one kilobyte values stored by reference or off heap and
+ * keeps replacing random entries. Run with the gc profiler, as the benchmark
+ * runner does, the gc.count and gc.time results show the time spent collecting.
+ * With objects stored off heap the collector only sees the small handles so the
+ * collection time should stay flat as the cache grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:MaxDirectMemorySize=4g"})
+@Threads(1)
+public class GcPauseBenchmark {
+
+    @Param({"500000"})
+    int entries;
+    @Param({"REFERENCE", "OFF_HEAP"})
+    StorageMode mode;
+
+    String value;
+    Random random;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Gigabyte, 2);
+        EasyCache.setStorageMode(mode);
+        char[] text = new char[1024];
+        for (int i = 0; i < entries; i++) {
+            text[0] = (char) ('a' + i % 26);
+            EasyCache.storeCacheObject("key-" + i, new String(text));
+        }
+        value = new String(text);
+        random = new Random(42);
+    }
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        EasyCache.clearCache();
+        EasyCache.setStorageMode(StorageMode.REFERENCE);
+    }
+
+    @Benchmark
+    public void replace() {
+        EasyCache.storeCacheObject("key-" + random.nextInt(entries), new String(value));
+    }
+}
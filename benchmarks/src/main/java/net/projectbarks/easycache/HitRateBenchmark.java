@@ -0,0 +1,137 @@
+package net.projectbarks.easycache;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the hit rate of every {@link EvictionPolicy} on zipfian workloads
+ * of different skew, with and without periodic scans of one off keys. Every
+ * miss stores the key, as a read through cache in front of a backend would.
+ * All values have the same size so the cache holds a fixed amount of objects.
+ * The mean hit rate of the iterations is reported as the hitRate counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(1)
+public class HitRateBenchmark {
+
+    /** The length of the trace, a power of two so it can be wrapped with a mask. */
+    private static final int REQUESTS = 1 << 20;
+    private static final String VALUE = "value";
+
+    @Param({"100000"})
+    int keys;
+    @Param({"1"})
+    double cachePercent;
+    @Param({"0.6", "0.8", "1.0", "1.2"})
+    double skew;
+    @Param({"false", "true"})
+    boolean scans;
+    @Param({"LRU", "W_TINY_LFU"})
+    EvictionPolicy policy;
+
+    String[] names;
+    int[] trace;
+    int position;
+
+    @Setup(Level.Trial)
+    public void configure() {
+        EasyCache.clearCache();
+        EasyCache.setEvictionPolicy(policy);
+        int capacity = (int) (keys * cachePercent / 100);
+        EasyCache.setMaxSize(DiskUnit.Byte, capacity * ("\"" + VALUE + "\"").length());
+        trace = trace();
+        names = new String[keys + REQUESTS];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = Integer.toString(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Megabyte, 100);
+    }
+
+    /**
+     * Requests counts the hits and misses of an iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Requests {
+        public long hits, misses;
+        private int iterations;
+
+        @Setup(Level.Iteration)
+        public void reset(IterationParams iteration) {
+            hits = 0;
+            misses = 0;
+            iterations = iteration.getCount();
+        }
+
+        // The counters are summed over the measurement iterations, so the
+        // hit rate of each one reports its share of the mean.
+        public double hitRate() {
+            return hits + misses == 0 ? 0 : 100.0 * hits / (hits + misses) / iterations;
+        }
+    }
+
+    @Benchmark
+    public void request(Requests requests) {
+        String name = names[trace[position++ & (REQUESTS - 1)]];
+        if (EasyCache.getCachedObject(name, String.class) != null) {
+            requests.hits++;
+        } else {
+            requests.misses++;
+            EasyCache.storeCacheObject(name, VALUE);
+        }
+    }
+
+    /**
+     * Builds a trace of keys drawn from a zipfian distribution. When scans
+     * are enabled every tenth block of requests is replaced by a run of
+     * keys that are never requested again.
+     */
+    private int[] trace() {
+        double[] cumulative = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cumulative[i] = sum;
+        }
+        Random random = new Random(7);
+        int[] trace = new int[REQUESTS];
+        int scanKey = keys;
+        for (int i = 0; i < REQUESTS; i++) {
+            if (scans && (i / 1000) % 10 == 9) {
+                trace[i] = scanKey++;
+                continue;
+            }
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            trace[i] = index < 0 ? ~index : index;
+        }
+        return trace;
+    }
+}
@@ -0,0 +1,64 @@
+package net.projectbarks.easycache;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Key distribution picks the order keys are used in by the benchmarks. With a
+ * uniform distribution every key is equally likely, with a zipfian distribution
+ * a few keys take most of the traffic like they do in a real cache. The popular
+ * keys are spread over the whole key range so they do not share a segment.
+ */
+public enum KeyDistribution {
+
+    UNIFORM {
+        @Override
+        int[] sequence(int keys, int length, Random random) {
+            int[] sequence = new int[length];
+            for (int i = 0; i < length; i++) {
+                sequence[i] = random.nextInt(keys);
+            }
+            return sequence;
+        }
+    },
+    ZIPFIAN {
+        @Override
+        int[] sequence(int keys, int length, Random random) {
+            double[] cumulative = new double[keys];
+            double total = 0;
+            for (int i = 0; i < keys; i++) {
+                total += 1 / Math.pow(i + 1, SKEW);
+                cumulative[i] = total;
+            }
+            int[] ranks = new int[keys];
+            for (int i = 0; i < keys; i++) {
+                ranks[i] = i;
+            }
+            for (int i = keys - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = ranks[i];
+                ranks[i] = ranks[j];
+                ranks[j] = swap;
+            }
+            int[] sequence = new int[length];
+            for (int i = 0; i < length; i++) {
+                int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                sequence[i] = ranks[Math.min(keys - 1, rank < 0 ? -rank - 1 : rank)];
+            }
+            return sequence;
+        }
+    };
+
+    /** The skew of the zipfian distribution, the same as used by YCSB. */
+    private static final double SKEW = 0.99;
+
+    /**
+     * Creates a sequence of key indexes in this distribution.
+     *
+     * @param keys the amount of keys to choose from
+     * @param length the length of the sequence
+     * @param random the source of randomness
+     * @return the key indexes
+     */
+    abstract int[] sequence(int keys, int length, Random random);
+}
@@ -0,0 +1,122 @@
+package net.projectbarks.easycache;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares numeric ids stored in the {@link EasyCache} as strings against the
+ * {@link LongEasyCache}. The value stored is shared so only the overhead of the
+ * caches themselves is measured, the heap taken up per entry is reported as the
+ * heapBytes counter and the gc profiler reports the bytes allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1)
+public class LongKeyBenchmark {
+
+    private static final Integer VALUE = 42;
+
+    @Param({"1000000"})
+    int entries;
+    @Param({"STRING", "LONG"})
+    String keys;
+
+    LongEasyCache cache;
+    double heapPerEntry;
+    int next;
+
+    @Setup(Level.Trial)
+    public void fill() throws InterruptedException {
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Gigabyte, 2);
+        EasyCache.setRecordStats(false);
+        long before = usedHeap();
+        if (keys.equals("STRING")) {
+            for (long id = 0; id < entries; id++) {
+                EasyCache.storeCacheObject(Long.toString(id), VALUE);
+            }
+        } else {
+            // Every table holds an even share, leave room for keys that do not spread evenly.
+            cache = new LongEasyCache(entries + entries / 10);
+            for (long id = 0; id < entries; id++) {
+                cache.store(id, VALUE);
+            }
+        }
+        heapPerEntry = (double) (usedHeap() - before) / entries;
+    }
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Megabyte, 100);
+        EasyCache.setRecordStats(true);
+    }
+
+    /**
+     * Footprint reports the heap per entry next to the time taken.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        private double heapPerEntry;
+
+        // The counter is summed over the measurement iterations, so each one
+        // reports its share of the mean.
+        @TearDown(Level.Iteration)
+        public void measure(LongKeyBenchmark benchmark, IterationParams iteration) {
+            heapPerEntry = benchmark.heapPerEntry / iteration.getCount();
+        }
+
+        public double heapBytes() {
+            return heapPerEntry;
+        }
+    }
+
+    @Benchmark
+    public Integer get(Footprint footprint) {
+        int id = next++ % entries;
+        if (cache == null) {
+            return EasyCache.getCachedObject(Long.toString(id), Integer.class);
+        }
+        return cache.get(id, Integer.class);
+    }
+
+    @Benchmark
+    public void store(Footprint footprint) {
+        int id = next++ % entries;
+        if (cache == null) {
+            EasyCache.storeCacheObject(Long.toString(id), VALUE);
+        } else {
+            cache.store(id, VALUE);
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100L);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,128 @@
+package net.projectbarks.easycache;
+
+import net.projectbarks.easycache.server.MemcachedServer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends get commands for a value of the size given to a memcached server on
+ * loopback, as many at once as the depth given, and waits for the replies.
+ * Every operation is a whole round of gets, the gets and bytes counters report
+ * the gets and reply bytes per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@Threads(1)
+public class MemcachedBenchmark {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    @Param({"100", "10000", "100000"})
+    int size;
+    @Param({"1", "64"})
+    int depth;
+    @Param({"REFERENCE", "VALUE"})
+    StorageMode mode;
+
+    MemcachedServer server;
+    Socket socket;
+    OutputStream out;
+    InputStream in;
+    byte[] gets;
+    byte[] buffer = new byte[1 << 16];
+    long reply;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        EasyCache.clearCache();
+        EasyCache.setStorageMode(mode);
+        server = new MemcachedServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setTcpNoDelay(true);
+        out = socket.getOutputStream();
+        in = new BufferedInputStream(socket.getInputStream(), 1 << 16);
+        byte[] value = new byte[size];
+        Arrays.fill(value, (byte) 'v');
+        out.write(("set value 0 0 " + size + "\r\n").getBytes(ASCII));
+        out.write(value);
+        out.write("\r\n".getBytes(ASCII));
+        out.flush();
+        expect("STORED\r\n".length());
+        byte[] get = "get value\r\n".getBytes(ASCII);
+        gets = new byte[get.length * depth];
+        for (int i = 0; i < depth; i++) {
+            System.arraycopy(get, 0, gets, i * get.length, get.length);
+        }
+        reply = ("VALUE value 0 " + size + "\r\n").length() + size + "\r\nEND\r\n".length();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        socket.close();
+        server.close();
+        EasyCache.clearCache();
+        EasyCache.setStorageMode(StorageMode.REFERENCE);
+    }
+
+    /**
+     * Transfer counts the gets answered and the bytes of their replies.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Transfer {
+        public long gets, bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            gets = 0;
+            bytes = 0;
+        }
+    }
+
+    @Benchmark
+    public void get(Transfer transfer) throws IOException {
+        out.write(gets);
+        out.flush();
+        expect(reply * depth);
+        transfer.gets += depth;
+        transfer.bytes += reply * depth;
+    }
+
+    private void expect(long bytes) throws IOException {
+        while (bytes > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, bytes));
+            if (read < 0) {
+                throw new IOException("Server closed the connection!");
+            }
+            bytes -= read;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package net.projectbarks.easycache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of a single {@link EasyCache#getCachedObject(String, Class)},
+ * {@link EasyCache#storeCacheObject(String, Object)} and
+ * {@link EasyCache#deleteEntryFromCache(String)} on a cache filled with the amount
+ * of entries given, with keys picked in a uniform or zipfian order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OperationBenchmark {
+
+    /** The length of the key sequence, a power of two so it can be wrapped with a mask. */
+    private static final int SEQUENCE = 1 << 20;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int entries;
+    @Param({"UNIFORM", "ZIPFIAN"})
+    KeyDistribution distribution;
+
+    String[] keys;
+    Integer[] values;
+    int[] sequence;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Gigabyte, 2);
+        keys = new String[entries];
+        values = new Integer[entries];
+        for (int i = 0; i < entries; i++) {
+            keys[i] = "key-" + i;
+            values[i] = i;
+            EasyCache.storeCacheObject(keys[i], values[i]);
+        }
+        sequence = distribution.sequence(entries, SEQUENCE, new Random(42));
+    }
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        EasyCache.clearCache();
+    }
+
+    /**
+     * Cursor is the position of a thread within the key sequence, every
+     * thread starts at a different place.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position = ThreadLocalRandom.current().nextInt(SEQUENCE);
+
+        int next(int[] sequence) {
+            return sequence[position++ & (SEQUENCE - 1)];
+        }
+    }
+
+    @Benchmark
+    public Integer get(Cursor cursor) {
+        return EasyCache.getCachedObject(keys[cursor.next(sequence)], Integer.class);
+    }
+
+    @Benchmark
+    public void store(Cursor cursor) {
+        int index = cursor.next(sequence);
+        EasyCache.storeCacheObject(keys[index], values[index]);
+    }
+
+    /**
+     * Deletes a key and stores it again right away so the cache keeps its
+     * size, the cost of the store is included.
+     */
+    @Benchmark
+    public boolean delete(Cursor cursor) {
+        int index = cursor.next(sequence);
+        boolean deleted = EasyCache.deleteEntryFromCache(keys[index]);
+        EasyCache.storeCacheObject(keys[index], values[index]);
+        return deleted;
+    }
+}
@@ -0,0 +1,92 @@
+package net.projectbarks.easycache;
+
+import net.projectbarks.easycache.codec.BinaryCodec;
+import net.projectbarks.easycache.codec.GsonCodec;
+import net.projectbarks.easycache.datastore.BinarySnapshotLoader;
+import net.projectbarks.easycache.datastore.BinarySnapshotStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills the cache with one kilobyte json values up to the size given and
+ * measures a single export of the whole cache to a binary snapshot and a single
+ * import of that snapshot into an empty cache. Divide the megabytes by the time
+ * for the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1)
+public class SnapshotBenchmark {
+
+    @Param({"512"})
+    int megabytes;
+
+    File file;
+
+    @Setup(Level.Trial)
+    public void fill() throws IOException {
+        file = File.createTempFile("easycache", ".snapshot");
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Megabyte, megabytes * 2);
+        EasyCache.setStorageMode(StorageMode.VALUE);
+        EasyCache.setCodec(new GsonCodec());
+        char[] text = new char[1000];
+        for (int i = 0; EasyCache.getUsedSpace() < DiskUnit.Megabyte.toBytes(megabytes); i++) {
+            text[i % text.length] = (char) ('a' + i % 26);
+            EasyCache.storeCacheObject("key-" + i, new String(text));
+        }
+        EasyCache.exportCache(new BinarySnapshotStore(file));
+    }
+
+    /**
+     * Import refills the cache from the snapshot, so the cache is emptied
+     * before every import. Export leaves the cache as it is.
+     */
+    @Setup(Level.Iteration)
+    public void empty(BenchmarkParams params) {
+        if (params.getBenchmark().endsWith("importCache")) {
+            EasyCache.clearCache();
+            System.gc();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        EasyCache.clearCache();
+        EasyCache.setStorageMode(StorageMode.REFERENCE);
+        EasyCache.setCodec(new BinaryCodec());
+        EasyCache.setMaxSize(DiskUnit.Megabyte, 100);
+        file.delete();
+    }
+
+    @Benchmark
+    public int exportCache() throws IOException {
+        return EasyCache.exportCache(new BinarySnapshotStore(file));
+    }
+
+    @Benchmark
+    public int importCache() throws IOException {
+        return EasyCache.importCache(new BinarySnapshotLoader(file));
+    }
+}
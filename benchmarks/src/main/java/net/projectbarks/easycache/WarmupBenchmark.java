@@ -0,0 +1,94 @@
+package net.projectbarks.easycache;
+
+import net.projectbarks.easycache.datastore.BulkCacheLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a single warm up of an empty cache from a bulk loader whose decode
+ * step turns a raw record into json, on a pool of the parallelism given. A
+ * parallelism of zero uses one thread per core.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(1)
+public class WarmupBenchmark {
+
+    @Param({"2000000"})
+    int entries;
+    @Param({"1", "0"})
+    int parallelism;
+
+    ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void configure() {
+        EasyCache.setMaxSize(DiskUnit.Gigabyte, 2);
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Setup(Level.Iteration)
+    public void empty() {
+        EasyCache.clearCache();
+        System.gc();
+    }
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        pool.shutdown();
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Megabyte, 100);
+    }
+
+    @Benchmark
+    public int importCache() {
+        return EasyCache.importCache(new RecordLoader(entries), pool);
+    }
+
+    private static class RecordLoader extends BulkCacheLoader {
+        private final int total;
+        private int next;
+
+        RecordLoader(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public boolean loadChunk(List<Result> chunk, int max) {
+            for (; next < total && chunk.size() < max; next++) {
+                Result result = new Result();
+                result.setKey("user:" + next);
+                chunk.add(result);
+            }
+            return next < total;
+        }
+
+        @Override
+        public void decode(Result result) {
+            String id = result.getKey().substring(5);
+            StringBuilder json = new StringBuilder("{\"id\":").append(id).append(",\"name\":\"user ").append(id)
+                    .append("\",\"roles\":[\"reader\",\"writer\"],\"score\":").append(id.hashCode() % 1000).append('}');
+            result.setValue(json.toString());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package net.projectbarks.easycache;
+
+import net.projectbarks.easycache.datastore.CacheStore;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Samples the latency of stores under a skewed set of keys while they are
+ * mirrored to a store that takes a few microseconds per write, either calling
+ * the store right after every store or through write behind. The writes that
+ * reached the store are reported as the storeWrites counter next to the
+ * cacheWrites made.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(1)
+public class WriteBehindBenchmark {
+
+    private static final int KEYS = 10000;
+    private static final long STORE_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+    @Param({"false", "true"})
+    boolean writeBehind;
+
+    SlowStore store;
+    Random random;
+    int next;
+
+    @Setup(Level.Trial)
+    public void configure() {
+        EasyCache.clearCache();
+        store = new SlowStore();
+        random = new Random(42);
+        if (writeBehind) {
+            EasyCache.setWriteBehind(store, 512, TimeUnit.MILLISECONDS, 100L, 5000L);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        if (writeBehind) {
+            EasyCache.disableWriteBehind();
+        }
+        EasyCache.clearCache();
+    }
+
+    /**
+     * Writes counts the writes made to the cache and those that reached
+     * the store during an iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Writes {
+        public long cacheWrites;
+        private AtomicLong stored;
+        private long start;
+
+        @Setup(Level.Iteration)
+        public void reset(WriteBehindBenchmark benchmark) {
+            cacheWrites = 0;
+            stored = benchmark.store.writes;
+            start = stored.get();
+        }
+
+        public long storeWrites() {
+            return stored == null ? 0 : stored.get() - start;
+        }
+    }
+
+    @Benchmark
+    public void store(Writes writes) {
+        // Squaring skews the keys towards the first ones like a hot set would.
+        double skew = random.nextDouble();
+        String key = "key-" + (int) (skew * skew * KEYS);
+        int value = next++;
+        EasyCache.storeCacheObject(key, value);
+        if (!writeBehind) {
+            store.store(key, Integer.toString(value), value, -1, 0, 0, 1);
+        }
+        writes.cacheWrites++;
+    }
+
+    /**
+     * Counts the writes it receives and spins for a while on each one like
+     * a round trip to a remote store would take.
+     */
+    static class SlowStore extends CacheStore {
+        final AtomicLong writes = new AtomicLong();
+
+        @Override
+        public void store(String key, String value, Object rawValue, int index, int total) {
+            writes.incrementAndGet();
+            long end = System.nanoTime() + STORE_NANOS;
+            while (System.nanoTime() < end) {
+                // Busy wait, sleeping is far too coarse for a few microseconds.
+            }
+        }
+    }
+}
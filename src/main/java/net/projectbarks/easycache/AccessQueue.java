@@ -0,0 +1,86 @@
+package net.projectbarks.easycache;
+
+/**
+ * Access queue is an intrusive doubly linked list of cached objects ordered
+ * from least to most recently used. Objects are linked through their own
+ * fields so adding, moving and removing an object are constant time and do
+ * not allocate. The queue also keeps the total weight of its objects.
+ *
+ * Note the queue is not thread safe and is guarded by the owning segment.
+ */
+class AccessQueue {
+
+    private final CachedObject sentinel;
+    private long weight;
+
+    AccessQueue() {
+        sentinel = new CachedObject(null, 0, 0, false);
+        sentinel.policyPrev = sentinel;
+        sentinel.policyNext = sentinel;
+    }
+
+    /**
+     * Gets the total weight of every object in the queue.
+     *
+     * @return the weight of the queue
+     */
+    long weight() {
+        return weight;
+    }
+
+    /**
+     * Gets if the queue does not hold any objects.
+     *
+     * @return true if the queue is empty
+     */
+    boolean isEmpty() {
+        return sentinel.policyNext == sentinel;
+    }
+
+    /**
+     * Gets the least recently used object without removing it.
+     *
+     * @return the first object or null if the queue is empty
+     */
+    CachedObject peekFirst() {
+        return isEmpty() ? null : sentinel.policyNext;
+    }
+
+    /**
+     * Links an object as the most recently used object of the queue.
+     *
+     * @param object an object that is not in any queue
+     */
+    void addLast(CachedObject object) {
+        object.policyPrev = sentinel.policyPrev;
+        object.policyNext = sentinel;
+        sentinel.policyPrev.policyNext = object;
+        sentinel.policyPrev = object;
+        object.queue = this;
+        weight += object.weight;
+    }
+
+    /**
+     * Moves an object of this queue to the most recently used position.
+     *
+     * @param object an object in this queue
+     */
+    void moveToLast(CachedObject object) {
+        remove(object);
+        addLast(object);
+    }
+
+    /**
+     * Unlinks an object from this queue.
+     *
+     * @param object an object in this queue
+     */
+    void remove(CachedObject object) {
+        object.policyPrev.policyNext = object.policyNext;
+        object.policyNext.policyPrev = object.policyPrev;
+        object.policyPrev = null;
+        object.policyNext = null;
+        object.queue = null;
+        weight -= object.weight;
+    }
+}
@@ -0,0 +1,258 @@
+package net.projectbarks.easycache;
+
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Async easy cache is a view of the {@link EasyCache} that never blocks the
+ * calling thread. Every operation is run on the executor of the view and
+ * returns a {@link CompletableFuture} completed with its result, so cache
+ * operations can be composed with other asynchronous calls.
+ *
+ * Loading is shared with the {@link EasyCache}, only a single load per key is
+ * ever running and every caller asking for a key while it loads receives the
+ * future of that load. Loaders that return a future of their own are not given
+ * a thread at all while they run.
+ *
+ * Note the view holds no objects itself, any number of views with different
+ * executors may be used at once.
+ */
+public class AsyncEasyCache {
+
+    /**
+     * The executor operations of this view are run on.
+     *
+     * @return the executor
+     */
+    @Getter private final Executor executor;
+
+    /**
+     * Creates a view running its operations on the common fork join pool.
+     */
+    public AsyncEasyCache() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a view running its operations on the executor given.
+     *
+     * @param executor the executor operations are run on
+     */
+    public AsyncEasyCache(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("Null input!");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Finds an object, see {@link EasyCache#getCachedObject(String, Class)}.
+     *
+     * @param key the id you used for store
+     * @param type the type you stored the object as
+     * @param <T> the return type you used in type
+     * @return a future completed with the object or null if it is not stored
+     */
+    public <T> CompletableFuture<T> get(final String key, final Class<T> type) {
+        return CompletableFuture.supplyAsync(new Supplier<T>() {
+            @Override
+            public T get() {
+                return EasyCache.getCachedObject(key, type);
+            }
+        }, executor);
+    }
+
+    /**
+     * Finds every key given, see {@link EasyCache#getAll(java.util.Collection, Class)}.
+     *
+     * @param keys the ids you used for store
+     * @param type the type you stored the objects as
+     * @param <T> the return type you used in type
+     * @return a future completed with the objects found mapped by their key
+     */
+    public <T> CompletableFuture<Map<String, T>> getAll(final Collection<String> keys, final Class<T> type) {
+        return CompletableFuture.supplyAsync(new Supplier<Map<String, T>>() {
+            @Override
+            public Map<String, T> get() {
+                return EasyCache.getAll(keys, type);
+            }
+        }, executor);
+    }
+
+    /**
+     * Finds an object and when it is not stored loads it with the loader given
+     * using the default lifetime, see {@link #getOrLoad(String, Class, java.util.function.Function, java.util.concurrent.TimeUnit, Long)}.
+     *
+     * @param key the id you used for store
+     * @param type the type you stored the object as
+     * @param loader starts loading the object of a key
+     * @param <T> the return type you used in type
+     * @return a future completed with the stored or loaded object
+     */
+    public <T> CompletableFuture<T> getOrLoad(String key, Class<T> type, Function<String, ? extends CompletableFuture<? extends T>> loader) {
+        return getOrLoad(key, type, loader, TimeUnit.MILLISECONDS, EasyCache.getDefaultLifetime());
+    }
+
+    /**
+     * Finds an object and when it is not stored loads it with a loader that
+     * returns a future of its own, such as a call to another service. The loader
+     * is started on the executor of this view but no thread waits on it, the
+     * object is stored once the future of the loader completes. A read through
+     * loader set on the {@link EasyCache} is not used for the key.
+     *
+     * @param key the id you used for store
+     * @param type the type you stored the object as
+     * @param loader starts loading the object of a key
+     * @param lifetimeUnit the unit in which the lifetime is measured
+     * @param lifetime set how long a loaded object lives for to be removed from cache.
+     * @param <T> the return type you used in type
+     * @return a future completed with the stored or loaded object
+     */
+    public <T> CompletableFuture<T> getOrLoad(final String key, final Class<T> type,
+                                              final Function<String, ? extends CompletableFuture<? extends T>> loader,
+                                              TimeUnit lifetimeUnit, Long lifetime) {
+        if (key == null || type == null || loader == null || lifetimeUnit == null || lifetime == null) {
+            throw new NullPointerException("Null input!");
+        }
+        final long lifetimeMillis = lifetimeUnit.toMillis(lifetime);
+        return CompletableFuture.supplyAsync(new Supplier<T>() {
+            @Override
+            public T get() {
+                return EasyCache.lookup(key, type);
+            }
+        }, executor).thenCompose(new Function<T, CompletableFuture<T>>() {
+            @Override
+            public CompletableFuture<T> apply(T value) {
+                if (value != null) {
+                    return CompletableFuture.completedFuture(value);
+                }
+                return EasyCache.loadAsync(key, loader, lifetimeMillis).thenApply(new Function<Object, T>() {
+                    @Override
+                    public T apply(Object loaded) {
+                        return cast(loaded, type);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Finds an object and when it is not stored loads it with a blocking
+     * loader run on the executor of this view, see
+     * {@link EasyCache#getOrLoadAsync(String, Class, java.util.concurrent.Callable, java.util.concurrent.TimeUnit, Long, java.util.concurrent.Executor)}.
+     *
+     * @param key the id you used for store
+     * @param type the type you stored the object as
+     * @param loader loads the object when it is not stored
+     * @param lifetimeUnit the unit in which the lifetime is measured
+     * @param lifetime set how long a loaded object lives for to be removed from cache.
+     * @param <T> the return type you used in type
+     * @return a future completed with the stored or loaded object
+     */
+    public <T> CompletableFuture<T> getOrLoad(final String key, final Class<T> type, final Callable<? extends T> loader,
+                                              final TimeUnit lifetimeUnit, final Long lifetime) {
+        return CompletableFuture.supplyAsync(new Supplier<CompletableFuture<T>>() {
+            @Override
+            public CompletableFuture<T> get() {
+                return EasyCache.getOrLoadAsync(key, type, loader, lifetimeUnit, lifetime, executor);
+            }
+        }, executor).thenCompose(Function.<CompletableFuture<T>>identity());
+    }
+
+    /**
+     * Stores an object using the default lifetime, see
+     * {@link EasyCache#storeCacheObject(String, Object)}.
+     *
+     * @param key the key to be used later
+     * @param value the value to be found for later
+     * @return a future completed once the object is stored
+     */
+    public CompletableFuture<Void> store(final String key, final Object value) {
+        return CompletableFuture.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                EasyCache.storeCacheObject(key, value);
+            }
+        }, executor);
+    }
+
+    /**
+     * Stores an object, see {@link EasyCache#storeCacheObject(String, Object, java.util.concurrent.TimeUnit, Long)}.
+     *
+     * @param key the key to be used later
+     * @param value the value to be found for later
+     * @param lifetimeUnit the unit in which the lifetime is measured
+     * @param lifetime set how long an object lives for to be removed from cache.
+     * @return a future completed once the object is stored
+     */
+    public CompletableFuture<Void> store(final String key, final Object value, final TimeUnit lifetimeUnit, final Long lifetime) {
+        return CompletableFuture.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                EasyCache.storeCacheObject(key, value, lifetimeUnit, lifetime);
+            }
+        }, executor);
+    }
+
+    /**
+     * Stores every key-value pair of the map, see {@link EasyCache#storeAll(java.util.Map)}.
+     *
+     * @param values the objects to be stored mapped by their key
+     * @return a future completed once every object is stored
+     */
+    public CompletableFuture<Void> storeAll(final Map<String, ?> values) {
+        return CompletableFuture.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                EasyCache.storeAll(values);
+            }
+        }, executor);
+    }
+
+    /**
+     * Deletes a single object, see {@link EasyCache#deleteEntryFromCache(String)}.
+     *
+     * @param key the key to be deleted
+     * @return a future completed with true if the key was stored
+     */
+    public CompletableFuture<Boolean> delete(final String key) {
+        return CompletableFuture.supplyAsync(new Supplier<Boolean>() {
+            @Override
+            public Boolean get() {
+                return EasyCache.deleteEntryFromCache(key);
+            }
+        }, executor);
+    }
+
+    /**
+     * Deletes every key given, see {@link EasyCache#deleteAll(java.util.Collection)}.
+     *
+     * @param keys the keys to be deleted
+     * @return a future completed with the amount of objects deleted
+     */
+    public CompletableFuture<Integer> deleteAll(final Collection<String> keys) {
+        return CompletableFuture.supplyAsync(new Supplier<Integer>() {
+            @Override
+            public Integer get() {
+                return EasyCache.deleteAll(keys);
+            }
+        }, executor);
+    }
+
+    private static <T> T cast(Object value, Class<T> type) {
+        try {
+            return type.cast(value);
+        } catch (ClassCastException exception) {
+            throw new ClassCastException("Invalid type " + type.getName() + " for value!");
+        }
+    }
+}
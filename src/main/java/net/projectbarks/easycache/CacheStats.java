@@ -0,0 +1,146 @@
+package net.projectbarks.easycache;
+
+import lombok.Getter;
+
+/**
+ * Cache stats is a snapshot of the statistics of the {@link EasyCache} taken
+ * by {@link EasyCache#getStats()}. Counts are totals since the cache was loaded
+ * or the statistics were last {@link EasyCache#resetStats() reset}, the weight
+ * and entry count are the state of the cache when the snapshot was taken.
+ *
+ * Note nothing is counted while recording is disabled with
+ * {@link EasyCache#setRecordStats(boolean)}.
+ */
+public final class CacheStats {
+
+    /**
+     * The amount of reads that found an object.
+     *
+     * @return the hit count
+     */
+    @Getter private final long hitCount;
+    /**
+     * The amount of reads that did not find an object.
+     *
+     * @return the miss count
+     */
+    @Getter private final long missCount;
+    /**
+     * The amount of loads, including refreshes, that returned an object.
+     *
+     * @return the load success count
+     */
+    @Getter private final long loadSuccessCount;
+    /**
+     * The amount of loads, including refreshes, that failed or returned null.
+     *
+     * @return the load failure count
+     */
+    @Getter private final long loadFailureCount;
+    /**
+     * The time spent by all loads together.
+     *
+     * @return time in nanoseconds
+     */
+    @Getter private final long totalLoadTime;
+    /**
+     * The bytes taken up by the stored objects.
+     *
+     * @return the weight in bytes
+     */
+    @Getter private final long weight;
+    /**
+     * The amount of objects stored in memory.
+     *
+     * @return the entry count
+     */
+    @Getter private final long entryCount;
+    /**
+     * The latencies of single reads such as {@link EasyCache#getCachedObject(String, Class)}.
+     *
+     * @return the read latencies
+     */
+    @Getter private final LatencyHistogram getLatency;
+    /**
+     * The latencies of single stores such as {@link EasyCache#storeCacheObject(String, Object)}.
+     *
+     * @return the store latencies
+     */
+    @Getter private final LatencyHistogram storeLatency;
+    private final long[] removals;
+
+    CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long totalLoadTime,
+               long[] removals, long weight, long entryCount, LatencyHistogram getLatency, LatencyHistogram storeLatency) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.removals = removals;
+        this.weight = weight;
+        this.entryCount = entryCount;
+        this.getLatency = getLatency;
+        this.storeLatency = storeLatency;
+    }
+
+    /**
+     * Gets the amount of reads, both hits and misses.
+     *
+     * @return the request count
+     */
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Gets the share of reads that found an object.
+     *
+     * @return the hit rate between 0 and 1, 1 when nothing was read
+     */
+    public double getHitRate() {
+        long requests = getRequestCount();
+        return requests == 0 ? 1 : (double) hitCount / requests;
+    }
+
+    /**
+     * Gets the average time a load took.
+     *
+     * @return time in nanoseconds
+     */
+    public double getAverageLoadPenalty() {
+        long loads = loadSuccessCount + loadFailureCount;
+        return loads == 0 ? 0 : (double) totalLoadTime / loads;
+    }
+
+    /**
+     * Gets the amount of objects removed for the cause given.
+     *
+     * @param cause the cause of the removals
+     * @return the removal count
+     */
+    public long getRemovalCount(RemovalCause cause) {
+        return removals[cause.ordinal()];
+    }
+
+    /**
+     * Gets the amount of objects removed by the cache itself, because of
+     * their size, lifetime or update time.
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        long evictions = 0;
+        for (RemovalCause cause : RemovalCause.values()) {
+            if (cause.isEviction()) {
+                evictions += removals[cause.ordinal()];
+            }
+        }
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, misses=%d, hitRate=%.4f, loads=%d, loadFailures=%d, evictions=%d, weight=%d, entries=%d",
+                hitCount, missCount, getHitRate(), loadSuccessCount, loadFailureCount, getEvictionCount(), weight, entryCount);
+    }
+}
@@ -3,6 +3,9 @@ package net.projectbarks.easycache;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import net.projectbarks.easycache.codec.Codec;
+
+import java.util.concurrent.Callable;
 
 /**
  * Cached object is utilized in the {@link EasyCache}
@@ -46,16 +49,60 @@ public class CachedObject implements Comparable<CachedObject> {
      * @param time the time the object must be updated by.
      * @return the exact live time.
      */
-    @Getter(AccessLevel.PUBLIC) @Setter(AccessLevel.PROTECTED) protected long updateTimeExact;
+    @Getter(AccessLevel.PUBLIC) @Setter(AccessLevel.PROTECTED) protected volatile long updateTimeExact;
     /**
      * If the object supports an update time. This is really only used for
      * internal purposes. Functions like compare, and getLower require this value
      * and cant always be passed in from the {@link net.projectbarks.easycache.EasyCache} class.
+     * Objects of the {@link net.projectbarks.easycache.EasyCache} leave it disabled, their
+     * update time is tracked apart from their lifetime so it can be switched on and off
+     * for every object at once.
      *
      * @param allow True if update time is supported
      * @return if update time is supported
      */
-    @Getter(AccessLevel.PUBLIC) @Setter(AccessLevel.PROTECTED) protected boolean allowUpdateTime;
+    @Getter(AccessLevel.PUBLIC) @Setter(AccessLevel.PROTECTED) protected volatile boolean allowUpdateTime;
+    /**
+     * The key the object is stored under in {@link net.projectbarks.easycache.EasyCache}.
+     * Used to find the object again when it is removed by the {@link TimingWheel}.
+     */
+    String key;
+    /**
+     * The neighbours of the object within its {@link TimingWheel} bucket,
+     * both are null when the object is not scheduled.
+     */
+    CachedObject wheelPrev, wheelNext;
+    /**
+     * The neighbours of the object within its bucket of the idle {@link TimingWheel},
+     * which schedules objects by the time they must be used by. Both are null when
+     * the object is not scheduled by its update time.
+     */
+    CachedObject idlePrev, idleNext;
+    /**
+     * The measured size of the object in bytes, counted against the
+     * max size of the segment it is stored in.
+     */
+    int weight;
+    /**
+     * The neighbours of the object within the {@link AccessQueue} of its
+     * eviction policy and the queue itself, all are null when the object
+     * is not tracked.
+     */
+    CachedObject policyPrev, policyNext;
+    AccessQueue queue;
+    /**
+     * The codec the value was encoded with when the object is stored by
+     * value, null when the value is the stored object itself.
+     */
+    Codec codec;
+    /**
+     * The loader the object was loaded by and the milliseconds each load lives
+     * for, null when the object was stored directly. Once the refresh time has
+     * passed the next read reloads the object in the background, zero means the
+     * object is never refreshed.
+     */
+    Callable<?> loader;
+    long loadLifetime, refreshTime;
 
     /**
      * Cached object stores a wide range of data
@@ -105,7 +152,17 @@ public class CachedObject implements Comparable<CachedObject> {
      * in the EasyCache class until the next deadline is hit.
      */
     protected void update() {
-        updateTimeExact = updateTime + System.currentTimeMillis();
+        update(System.currentTimeMillis());
+    }
+
+    /**
+     * Updates the object using a time already read by the caller, which
+     * saves reading the clock again for every object of a batch.
+     *
+     * @param now the current time in milliseconds
+     */
+    void update(long now) {
+        updateTimeExact = updateTime + now;
     }
 
     /**
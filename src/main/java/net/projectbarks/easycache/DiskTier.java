@@ -0,0 +1,376 @@
+package net.projectbarks.easycache;
+
+import net.projectbarks.easycache.codec.Codec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Disk tier keeps the objects evicted from the {@link EasyCache} in memory
+ * mapped files so they can be promoted back to memory when they are read again.
+ * Objects are appended to the newest of a series of fixed size data files, only
+ * the location of each object is kept in memory. Appending never overwrites
+ * older data, replacing or removing an object only marks its old record dead.
+ *
+ * Once more than half of a data file is dead its live records are copied to the
+ * newest file by a background thread and the file is deleted. When the tier is
+ * full the oldest data file is dropped along with every object still in it, these
+ * are the objects that went longest without being read.
+ *
+ * Note the files are only scratch space for the running cache, any data file
+ * left in the directory from an earlier run is deleted when the tier is created.
+ */
+class DiskTier {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String PREFIX = "easycache-", SUFFIX = ".seg";
+    /** The size of the length and key length written before every record. */
+    private static final int HEADER = 8;
+
+    private final File directory;
+    private final long capacity;
+    private final int fileSize;
+    private final HashMap<String, Record> index = new HashMap<String, Record>();
+    private final ArrayDeque<DataFile> files = new ArrayDeque<DataFile>();
+    private final ExecutorService compactor;
+    private int nextId;
+    private long liveBytes;
+    private boolean closed;
+
+    /**
+     * Creates an empty disk tier.
+     *
+     * @param directory the directory the data files are kept in
+     * @param capacity the most bytes the data files may take up
+     */
+    DiskTier(File directory, long capacity) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new RuntimeException("Unable to create directory " + directory + "!");
+        }
+        File[] stale = directory.listFiles();
+        if (stale != null) {
+            for (File file : stale) {
+                if (file.getName().startsWith(PREFIX) && file.getName().endsWith(SUFFIX)) {
+                    file.delete();
+                }
+            }
+        }
+        this.directory = directory;
+        this.fileSize = (int) Math.max(1 << 20, Math.min(1 << 26, capacity / 8));
+        this.capacity = Math.max(capacity, 2L * fileSize);
+        this.compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "EasyCache-Compactor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Appends an object to the newest data file. An older record of the
+     * same key is marked dead.
+     *
+     * @param key the key the object is stored under
+     * @param value the encoded object
+     * @param codec the codec the object was encoded with
+     * @param lifeTime the time the object will be deleted
+     * @param updateTime the amount of milliseconds the object may go unused
+     * @return the record of the object or null if it is too large for a data file or the tier is closed
+     */
+    synchronized Record put(String key, byte[] value, Codec codec, long lifeTime, long updateTime) {
+        if (closed) {
+            return null;
+        }
+        byte[] keyBytes = key.getBytes(UTF_8);
+        int length = HEADER + keyBytes.length + value.length;
+        DataFile file = reserve(length, true);
+        if (file == null) {
+            return null;
+        }
+        int offset = file.position;
+        MappedByteBuffer buffer = file.buffer;
+        buffer.position(offset);
+        buffer.putInt(length);
+        buffer.putInt(keyBytes.length);
+        buffer.put(keyBytes);
+        buffer.put(value);
+        file.position += length;
+        remove(key);
+        Record record = new Record(file, offset, length, codec, lifeTime, updateTime);
+        index.put(key, record);
+        file.live += length;
+        liveBytes += length;
+        return record;
+    }
+
+    /**
+     * Removes an object from the tier and reads it back.
+     *
+     * @param key the key the object is stored under
+     * @return the record of the object with its value or null if there is none
+     */
+    synchronized Record take(String key) {
+        Record record = index.get(key);
+        if (record == null) {
+            return null;
+        }
+        MappedByteBuffer buffer = record.file.buffer;
+        buffer.position(record.offset + 4);
+        int keyLength = buffer.getInt();
+        buffer.position(buffer.position() + keyLength);
+        record.value = new byte[record.length - HEADER - keyLength];
+        buffer.get(record.value);
+        remove(key);
+        return record;
+    }
+
+    /**
+     * Marks the record of a key dead.
+     *
+     * @param key the key to be removed
+     * @return true if the key had a record
+     */
+    synchronized boolean remove(String key) {
+        Record record = index.remove(key);
+        if (record == null) {
+            return false;
+        }
+        release(record);
+        return true;
+    }
+
+    /**
+     * Marks the record of a key dead if it is still the record given.
+     *
+     * @param key the key to be removed
+     * @param record the record written for the key
+     * @return true if the record was still live
+     */
+    synchronized boolean remove(String key, Record record) {
+        if (index.get(key) != record) {
+            return false;
+        }
+        return remove(key);
+    }
+
+    /**
+     * Gets the amount of bytes taken up by live records.
+     *
+     * @return the live bytes
+     */
+    synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Removes every object and deletes all data files.
+     */
+    synchronized void clear() {
+        index.clear();
+        liveBytes = 0;
+        while (!files.isEmpty()) {
+            files.pollFirst().close();
+        }
+    }
+
+    /**
+     * Clears the tier and stops the compaction thread.
+     */
+    synchronized void close() {
+        closed = true;
+        clear();
+        compactor.shutdownNow();
+    }
+
+    /**
+     * Finds room for a record in the newest data file, starting a new file
+     * when it is full. When the tier is full the oldest file is dropped if
+     * dropping is allowed, otherwise there is no room.
+     *
+     * @return the file to append to, or null if there is no room
+     */
+    private DataFile reserve(int length, boolean dropping) {
+        if (length > fileSize) {
+            return null;
+        }
+        DataFile file = files.peekLast();
+        if (file != null && file.position + length <= fileSize) {
+            return file;
+        }
+        if (!dropping && (long) (files.size() + 1) * fileSize > capacity) {
+            return null;
+        }
+        while ((long) (files.size() + 1) * fileSize > capacity) {
+            drop(files.peekFirst());
+        }
+        try {
+            file = new DataFile(new File(directory, PREFIX + nextId++ + SUFFIX), fileSize);
+        } catch (IOException exception) {
+            throw new RuntimeException("Unable to create data file in " + directory + "!", exception);
+        }
+        files.addLast(file);
+        return file;
+    }
+
+    /**
+     * Deletes a data file along with every live record in it.
+     */
+    private void drop(DataFile file) {
+        for (int offset = 0; offset < file.position; ) {
+            MappedByteBuffer buffer = file.buffer;
+            buffer.position(offset);
+            int length = buffer.getInt();
+            String key = readKey(buffer);
+            Record record = index.get(key);
+            if (record != null && record.file == file && record.offset == offset) {
+                index.remove(key);
+                liveBytes -= length;
+            }
+            offset += length;
+        }
+        files.remove(file);
+        file.close();
+    }
+
+    /**
+     * Subtracts a dead record from its data file. A file that is mostly
+     * dead is handed to the compaction thread.
+     */
+    private void release(Record record) {
+        final DataFile file = record.file;
+        file.live -= record.length;
+        liveBytes -= record.length;
+        if (closed || file == files.peekLast() || file.compacting || file.live * 2 > file.position) {
+            return;
+        }
+        file.compacting = true;
+        compactor.execute(new Runnable() {
+            @Override
+            public void run() {
+                compact(file);
+            }
+        });
+    }
+
+    /**
+     * Copies the live records of a data file to the newest file and deletes
+     * it. The lock is only held per record so the cache is not held up by a
+     * large file. Compaction never drops a file to make room, that would throw
+     * away the live records of another file, so once the tier is full it stops
+     * and the file is left to be compacted again later.
+     */
+    private void compact(DataFile file) {
+        long now = System.currentTimeMillis();
+        for (int offset = 0; ; ) {
+            synchronized (this) {
+                if (!files.contains(file)) {
+                    return;
+                }
+                if (offset >= file.position) {
+                    files.remove(file);
+                    file.close();
+                    return;
+                }
+                MappedByteBuffer buffer = file.buffer;
+                buffer.position(offset);
+                int length = buffer.getInt();
+                String key = readKey(buffer);
+                Record record = index.get(key);
+                if (record != null && record.file == file && record.offset == offset) {
+                    if (record.lifeTime > -1 && record.lifeTime <= now) {
+                        remove(key);
+                    } else {
+                        byte[] bytes = new byte[length];
+                        buffer.position(offset);
+                        buffer.get(bytes);
+                        DataFile target = reserve(length, false);
+                        if (target == null) {
+                            file.compacting = false;
+                            return;
+                        }
+                        target.buffer.position(target.position);
+                        target.buffer.put(bytes);
+                        file.live -= length;
+                        target.live += length;
+                        record.file = target;
+                        record.offset = target.position;
+                        target.position += length;
+                    }
+                }
+                offset += length;
+            }
+        }
+    }
+
+    private static String readKey(MappedByteBuffer buffer) {
+        byte[] key = new byte[buffer.getInt()];
+        buffer.get(key);
+        return new String(key, UTF_8);
+    }
+
+    /**
+     * Record is the location of an object within a data file along with
+     * everything needed to place it back in memory.
+     */
+    static final class Record {
+        DataFile file;
+        int offset;
+        final int length;
+        final Codec codec;
+        final long lifeTime, updateTime;
+        /** The encoded object, only set once the record has been taken. */
+        byte[] value;
+
+        Record(DataFile file, int offset, int length, Codec codec, long lifeTime, long updateTime) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+            this.codec = codec;
+            this.lifeTime = lifeTime;
+            this.updateTime = updateTime;
+        }
+    }
+
+    /**
+     * Data file is a single memory mapped file of the tier. Records are only
+     * ever appended at its position.
+     */
+    static final class DataFile {
+        private final File file;
+        private final RandomAccessFile access;
+        final MappedByteBuffer buffer;
+        int position;
+        long live;
+        boolean compacting;
+
+        DataFile(File file, int size) throws IOException {
+            this.file = file;
+            this.access = new RandomAccessFile(file, "rw");
+            access.setLength(size);
+            this.buffer = access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        /**
+         * Closes and deletes the file. The mapping itself is released once
+         * the buffer is garbage collected.
+         */
+        void close() {
+            try {
+                access.close();
+            } catch (IOException ignored) {
+            }
+            file.delete();
+        }
+    }
+}
@@ -1,13 +1,51 @@
 package net.projectbarks.easycache;
 
 
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 import lombok.Getter;
+import net.projectbarks.easycache.codec.BinaryCodec;
+import net.projectbarks.easycache.codec.ByteOutput;
+import net.projectbarks.easycache.codec.Codec;
+import net.projectbarks.easycache.codec.CodecException;
+import net.projectbarks.easycache.codec.GsonCodec;
+import net.projectbarks.easycache.datastore.BulkCacheLoader;
+import net.projectbarks.easycache.datastore.CacheLoader;
+import net.projectbarks.easycache.datastore.CacheStore;
+import net.projectbarks.easycache.datastore.ReadThroughLoader;
 
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * Easy cache takes a bunch of scrutinizing tasks and simplifies
@@ -19,13 +57,35 @@ import java.util.concurrent.TimeUnit;
  * runs. Please refer to method documentation for information related to
  * EasyCache.
  *
+ * Easy cache is safe to use from many threads at once. Reads never lock,
+ * writes only lock the {@link Segment} their key belongs to.
+ *
  * Created by brandon on 10/4/14.
  */
 public class EasyCache {
 
-    private static List<String> cacheKeys;
-    private static List<CachedObject> cacheValues;
-    private static long usedSpace;
+    private static final int SWEEP_CHUNK = 128;
+    private static final int IMPORT_CHUNK = 4096;
+    private static final int EXPORT_BATCH = 512, EXPORT_AHEAD = 8;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /** Serializes objects stored by reference when they are exported. */
+    private static final Gson GSON = new GsonBuilder().serializeNulls().create();
+    /** Decodes the json of imported objects. */
+    private static final Codec JSON_CODEC = new GsonCodec(GSON);
+
+    private static ConcurrentHashMap<String, CachedObject> cacheEntries;
+    private static Segment[] segments;
+    private static LongAdder usedSpace;
+    private static ScheduledExecutorService sweeper;
+    private static ScheduledFuture<?> sweepTask;
+    private static final AtomicLong lastSweep = new AtomicLong();
+    private static int sweepCursor;
+    /** The segments that have caught up since the sweep cursor last wrapped around. */
+    private static int sweepCaughtUp;
+    private static volatile DiskTier diskTier;
+    private static volatile WriteBehind writeBehind;
+    private static ConcurrentHashMap<String, CompletableFuture<Object>> loading;
+    private static StatsCounter stats;
 
     /**
      * Max size is responsible in limiting the amount of ram/data your objects
@@ -34,7 +94,7 @@ public class EasyCache {
      *
      * @return max size is the long presentation of max size.
      */
-    @Getter private static long maxSize;
+    @Getter private static volatile long maxSize;
     /**
      * The default amount of time an object has to be used or
      * set before it is removed from cache. Default is substituted
@@ -67,24 +127,162 @@ public class EasyCache {
      *
      * @return if update time is enabled
      */
-    @Getter private static boolean allowUpdateTime;
+    @Getter private static volatile boolean allowUpdateTime;
+    /**
+     * The expiry mode decides if outdated objects are removed by a daemon
+     * thread or by the threads using the cache. You can use the
+     * {@link #setExpiryMode(ExpiryMode)} function to change the mode.
+     *
+     * @return the current expiry mode
+     */
+    @Getter private static volatile ExpiryMode expiryMode;
+    /**
+     * The eviction policy decides which objects are removed once storing
+     * a new object would take the cache past its max size. You can use the
+     * {@link #setEvictionPolicy(EvictionPolicy)} function to change the policy.
+     *
+     * @return the current eviction policy
+     */
+    @Getter private static EvictionPolicy evictionPolicy;
+    /**
+     * The weigher measures how many bytes an object takes up when it is
+     * stored. By default objects are measured by their json form using the
+     * {@link JsonWeigher}. You can use the {@link #setWeigher(Weigher)} function
+     * to supply a cheaper weigher.
+     *
+     * @return the current weigher
+     */
+    @Getter private static volatile Weigher weigher;
+    /**
+     * The storage mode decides if stored objects are kept as they are or
+     * encoded to bytes by the codec. You can use the {@link #setStorageMode(StorageMode)}
+     * function to change the mode.
+     *
+     * @return the current storage mode
+     */
+    @Getter private static volatile StorageMode storageMode;
+    /**
+     * The codec encodes objects to bytes when they are stored by value.
+     * By default the compact {@link BinaryCodec} is used. You can use the
+     * {@link #setCodec(Codec)} function to change the codec.
+     *
+     * @return the current codec
+     */
+    @Getter private static volatile Codec codec;
+    /**
+     * The fraction of its lifetime after which an object stored by a loader
+     * is reloaded in the background by the next read. Zero means objects are
+     * never refreshed. You can use the {@link #setRefreshAhead(double)} function
+     * to change the fraction.
+     *
+     * @return the fraction of the lifetime
+     */
+    @Getter private static volatile double refreshAhead;
+    /**
+     * The executor background refreshes are run on. You can use the
+     * {@link #setRefreshExecutor(Executor)} function to change the executor.
+     *
+     * @return the refresh executor
+     */
+    @Getter private static volatile Executor refreshExecutor;
+    /**
+     * The loader objects the cache does not hold are loaded by, null when a
+     * miss is simply returned as null. You can use the {@link #setReadThrough(ReadThroughLoader)}
+     * function to set the loader.
+     *
+     * @return the read through loader
+     */
+    @Getter private static volatile ReadThroughLoader readThrough;
+    /**
+     * If hits, misses, loads, removals and latencies are recorded for the
+     * {@link #getStats() statistics}. While recording is disabled not even the
+     * clock is read for the statistics. You can use the {@link #setRecordStats(boolean)}
+     * function to change it.
+     *
+     * @return true if statistics are recorded
+     */
+    @Getter private static volatile boolean recordStats;
+    /**
+     * The amount of time between two sweeps for outdated objects. You can use the
+     * {@link #setSweepInterval(java.util.concurrent.TimeUnit, long)} function to
+     * change the interval.
+     *
+     * @return time in milliseconds
+     */
+    @Getter private static volatile long sweepInterval;
+    /**
+     * The most objects a single sweep will visit before it stops and leaves
+     * the rest for the next sweep. Zero or less means there is no limit.
+     *
+     * @return the maximum amount of objects visited per sweep
+     */
+    @Getter private static int sweepEntryBudget;
+    /**
+     * The most time a single sweep will run for before it stops and leaves
+     * the rest for the next sweep. Zero or less means there is no limit.
+     *
+     * @return time in nanoseconds
+     */
+    @Getter private static long sweepTimeBudget;
+    /**
+     * The time the last sweep for outdated objects took to complete. This
+     * can be used to confirm sweeps stay within their budget.
+     *
+     * @return time in nanoseconds
+     */
+    @Getter private static volatile long lastSweepDuration;
+    /**
+     * The longest time any sweep for outdated objects took to complete.
+     *
+     * @return time in nanoseconds
+     */
+    @Getter private static volatile long maxSweepDuration;
+    /**
+     * The amount of sweeps for outdated objects run since the cache was loaded.
+     *
+     * @return the amount of sweeps
+     */
+    @Getter private static volatile long sweepCount;
 
     static {
-        cacheKeys = new ArrayList<String>();
-        cacheValues = new ArrayList<CachedObject>();
         maxSize = DiskUnit.Megabyte.toBytes(100);
+        evictionPolicy = EvictionPolicy.W_TINY_LFU;
+        weigher = new JsonWeigher();
+        storageMode = StorageMode.REFERENCE;
+        codec = new BinaryCodec();
+        cacheEntries = new ConcurrentHashMap<String, CachedObject>();
+        loading = new ConcurrentHashMap<String, CompletableFuture<Object>>();
+        stats = new StatsCounter();
+        recordStats = true;
+        refreshExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "EasyCache-Refresh");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        segments = new Segment[Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 8 - 1) << 1)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(System.currentTimeMillis(), Policy.create(evictionPolicy, segmentCapacity()));
+        }
+        usedSpace = new LongAdder();
         defaultLifetime = TimeUnit.HOURS.toMillis(1);
         defaultUpdateTime = TimeUnit.MINUTES.toMillis(5);
-        usedSpace = 0;
         allowUpdateTime = false;
+        sweepInterval = TimeUnit.SECONDS.toMillis(1);
+        sweepEntryBudget = 10000;
+        sweepTimeBudget = TimeUnit.MILLISECONDS.toNanos(1);
+        lastSweep.set(System.currentTimeMillis());
+        setExpiryMode(ExpiryMode.DAEMON);
     }
 
     /**
      * This function adds string-object pairs into a ConcurrentHashMap. The object
-     * will undergo a serialization process and inserted into the map. The serialization
-     * hard clones an object removing all references to the prior object.
-     * {@link #getCachedObject(String, Class) getCachedObject} can be called later to
-     * demoralize the object and reuse it.
+     * is kept as it is, or when the {@link StorageMode#VALUE value} storage mode is used
+     * encoded to bytes by the codec, which hard clones the object removing all references
+     * to the prior object. {@link #getCachedObject(String, Class) getCachedObject} can be
+     * called later to decode the object and reuse it.
      *
      * Note it is important to have your object compatible with json or be a native object
      * otherwise the object may fail to serialize and an error will be thrown.
@@ -99,10 +297,10 @@ public class EasyCache {
 
     /**
      * This function adds string-object pairs into a ConcurrentHashMap. The object
-     * will undergo a serialization process and inserted into the map. The serialization
-     * hard clones an object removing all references to the prior object.
-     * {@link #getCachedObject(String, Class) getCachedObject} can be called later to
-     * demoralize the object and reuse it.
+     * is kept as it is, or when the {@link StorageMode#VALUE value} storage mode is used
+     * encoded to bytes by the codec, which hard clones the object removing all references
+     * to the prior object. {@link #getCachedObject(String, Class) getCachedObject} can be
+     * called later to decode the object and reuse it.
      *
      * Note it is important to have your object compatible with json or be a native object
      * otherwise the object may fail to serialize and an error will be thrown.
@@ -120,10 +318,10 @@ public class EasyCache {
 
     /**
      * This function adds string-object pairs into a ConcurrentHashMap. The object
-     * will undergo a serialization process and inserted into the map. The serialization
-     * hard clones an object removing all references to the prior object.
-     * {@link #getCachedObject(String, Class) getCachedObject} can be called later to
-     * demoralize the object and reuse it.
+     * is kept as it is, or when the {@link StorageMode#VALUE value} storage mode is used
+     * encoded to bytes by the codec, which hard clones the object removing all references
+     * to the prior object. {@link #getCachedObject(String, Class) getCachedObject} can be
+     * called later to decode the object and reuse it.
      *
      * Note it is important to have your object compatible with json or be a native object
      * otherwise the object may fail to serialize and an error will be thrown.
@@ -134,26 +332,186 @@ public class EasyCache {
      */
     public static void storeCacheObject(final String key, final Object value, TimeUnit lifetimeUnit, Long lifetime, TimeUnit updateUnit, Long updateTime) {
         isNull(key, value, lifetimeUnit, updateUnit, updateTime, updateTime);
-        long finalLifeTime = System.currentTimeMillis() + lifetimeUnit.toMillis(lifetime);
-        String serialized = new GsonBuilder()
-            .serializeNulls()
-            .create().toJson(value);
-        if (usedSpace + serialized.getBytes().length > maxSize) {
-            throw new RuntimeException("Max data has been used!");
+        long now = System.currentTimeMillis();
+        sweepIfDue(now);
+        store(key, value, now + lifetimeUnit.toMillis(lifetime), updateUnit.toMillis(updateTime));
+    }
+
+    /**
+     * Store does the work behind every storeCacheObject function. The value
+     * is measured before the segment lock is taken so the lock is only held
+     * while the object is placed into the table, the expiry wheel and the
+     * eviction policy. When the segment is past its share of the max size the
+     * least valuable objects are evicted, which may be the new object itself
+     * when the policy does not admit it. An object larger than the share of a
+     * segment is kept on its own, once the lock is released other segments are
+     * evicted from until the whole cache fits within the max size again, see
+     * {@link #trim(Segment)}. Only an object larger than the whole max size is
+     * refused, no matter how many segments there are.
+     *
+     * @param key the key to be used later
+     * @param value the value to be found for later
+     * @param finalLifeTime the time the object will be deleted
+     * @param updateTime the amount of milliseconds the object may go unused
+     */
+    private static void store(String key, Object value, long finalLifeTime, long updateTime) {
+        long start = recordStats ? System.nanoTime() : 0;
+        Pending pending = prepare(key, value, finalLifeTime, updateTime);
+        Segment segment = segmentFor(key);
+        WriteBehind mirror = writeBehind;
+        segment.lock();
+        try {
+            pending.insert(segment);
+            // Marked under the lock so the store sees writes of a key in the order they were inserted.
+            if (mirror != null) {
+                mirror.written(key, pending.value, pending.codec, finalLifeTime, updateTime);
+            }
+        } finally {
+            unlockAndSpill(segment);
+        }
+        trim(segment);
+        if (mirror != null) {
+            mirror.throttle();
+        }
+        if (start != 0) {
+            stats.recordStore(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Encodes or weighs an object in the current storage mode so it is ready
+     * to be inserted. Nothing is locked while an object is prepared.
+     *
+     * @param key the key to be used later
+     * @param value the value to be found for later
+     * @param finalLifeTime the time the object will be deleted
+     * @param updateTime the amount of milliseconds the object may go unused
+     * @return the object ready to be inserted
+     */
+    private static Pending prepare(String key, Object value, long finalLifeTime, long updateTime) {
+        StorageMode mode = storageMode;
+        Codec valueCodec = mode != StorageMode.REFERENCE ? codec : null;
+        int size;
+        if (valueCodec != null) {
+            value = encode(valueCodec, value);
+            size = ((byte[]) value).length;
+            if (mode == StorageMode.OFF_HEAP) {
+                size = SlabAllocator.capacityFor(size);
+            }
+        } else {
+            size = weigher.weigh(key, value);
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative weight for " + key + "!");
+        }
+        if (!fits(size)) {
+            throw new RuntimeException("Object is larger than the max size!");
+        }
+        return new Pending(key, value, size, valueCodec, mode, finalLifeTime, updateTime);
+    }
+
+    /**
+     * Tells if an object of the weight given may be stored at all, which is
+     * any object up to the whole max size. Every way of storing an object
+     * uses this same check.
+     *
+     * @param size the weight of the object
+     * @return true if the object may be stored
+     */
+    private static boolean fits(int size) {
+        return size <= maxSize;
+    }
+
+    /**
+     * Pending is an object that has been prepared and is ready to be inserted.
+     */
+    private static final class Pending {
+        final String key;
+        final Object value;
+        final int size;
+        final Codec codec;
+        final StorageMode mode;
+        final long lifeTime, updateTime;
+        Callable<?> loader;
+        long loadLifetime;
+
+        Pending(String key, Object value, int size, Codec codec, StorageMode mode, long lifeTime, long updateTime) {
+            this.key = key;
+            this.value = value;
+            this.size = size;
+            this.codec = codec;
+            this.mode = mode;
+            this.lifeTime = lifeTime;
+            this.updateTime = updateTime;
         }
-        usedSpace += serialized.getBytes().length;
-        CachedObject cachedObject = new CachedObject(value, finalLifeTime, updateUnit.toMillis(updateTime), allowUpdateTime);
 
-        int index = Collections.binarySearch(cacheValues, cachedObject);
-        if (index < 0) index = ~index;
-        cacheValues.add(index, cachedObject);
-        cacheKeys.add(index, key);
+        /**
+         * Must only be called while holding the segment lock.
+         *
+         * @return true if the object is still stored once the segment has evicted,
+         * the eviction policy may refuse it right away
+         */
+        boolean insert(Segment segment) {
+            CachedObject cachedObject = EasyCache.insert(segment, key, value, size, codec, mode, lifeTime, updateTime);
+            if (loader != null) {
+                cachedObject.loader = loader;
+                cachedObject.loadLifetime = loadLifetime;
+                double fraction = refreshAhead;
+                if (fraction > 0 && lifeTime > -1) {
+                    cachedObject.refreshTime = lifeTime - (long) (loadLifetime * (1 - fraction));
+                }
+            }
+            return cacheEntries.get(key) == cachedObject;
+        }
+    }
+
+    /**
+     * Places an object into the table, the expiry wheel and the eviction
+     * policy of its segment, replacing any object stored under the same key
+     * in memory or on disk. Must only be called while holding the segment lock.
+     *
+     * @param segment the segment the key belongs to
+     * @param key the key to be used later
+     * @param value the object or its encoded bytes
+     * @param size the weight of the object
+     * @param valueCodec the codec the bytes were encoded with or null for an object
+     * @param mode the storage mode the object is kept in
+     * @param finalLifeTime the time the object will be deleted
+     * @param updateTime the amount of milliseconds the object may go unused
+     * @return the cached object inserted
+     */
+    private static CachedObject insert(Segment segment, String key, Object value, int size, Codec valueCodec,
+                               StorageMode mode, long finalLifeTime, long updateTime) {
+        if (mode == StorageMode.OFF_HEAP) {
+            value = segment.slabs.store((byte[]) value);
+            chargeSlack(segment);
+        }
+        CachedObject cachedObject = new CachedObject(value, finalLifeTime, updateTime, false);
+        cachedObject.key = key;
+        cachedObject.weight = size;
+        cachedObject.codec = valueCodec;
+        removeEntry(segment, key, null, RemovalCause.REPLACED);
+        DiskTier tier = diskTier;
+        if (tier != null) {
+            tier.remove(key);
+        }
+        segment.spilling.remove(key);
+        cacheEntries.put(key, cachedObject);
+        segment.weight += size;
+        segment.count++;
+        usedSpace.add(size);
+        segment.policy.add(cachedObject);
+        schedule(segment, cachedObject);
+        evict(segment);
+        return cachedObject;
     }
 
     /**
      * This function will attempt to find a cached object with the type inserted.
      * An exception will be thrown when a key cannot be found or when a type is
-     * invalid.
+     * invalid. When a {@link #setReadThrough(ReadThroughLoader) read through loader}
+     * is set a key that is not found is loaded by it and stored, see
+     * {@link ReadThroughLoader}.
      *
      * @param key the id you used for store
      * @param type the type you stored the object as
@@ -162,156 +520,2083 @@ public class EasyCache {
      */
     public static <T> T getCachedObject(final String key, Class<T> type) {
         isNull(key);
-        if (!cacheKeys.contains(key)) {
-            return null;
+        T value = lookup(key, type);
+        ReadThroughLoader loader = readThrough;
+        if (value != null || loader == null) {
+            return value;
+        }
+        return join(key, type, load(key, readThroughTask(loader, key), defaultLifetime, null, null));
+    }
+
+    /**
+     * Lookup finds an object without loading it on a miss and records
+     * the read with the statistics. A {@link #setReadThrough(ReadThroughLoader)
+     * read through loader} is never used, callers that bring a loader of
+     * their own look keys up through this.
+     *
+     * @param key the id you used for store
+     * @param type the type you stored the object as
+     * @param <T> the return type you used in type
+     * @return the object or null if it is not stored
+     */
+    static <T> T lookup(String key, Class<T> type) {
+        if (!recordStats) {
+            return find(key, type);
+        }
+        long start = System.nanoTime();
+        T value = find(key, type);
+        stats.recordGet(value != null, System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * Find does the work behind {@link #getCachedObject(String, Class)}
+     * without recording any statistics.
+     *
+     * @param key the id you used for store
+     * @param type the type you stored the object as
+     * @param <T> the return type you used in type
+     * @return the object or null if it is not stored
+     */
+    private static <T> T find(String key, Class<T> type) {
+        long now = System.currentTimeMillis();
+        sweepIfDue(now);
+        CachedObject cachedObject = cacheEntries.get(key);
+        if (cachedObject == null) {
+            DiskTier tier = diskTier;
+            return tier == null ? null : promote(tier, key, type, now);
+        }
+        if (isExpired(cachedObject, now)) {
+            Segment segment = segmentFor(key);
+            segment.lock();
+            try {
+                // A buffered read may still move its update time forward.
+                segment.reads.drain(segment.policy);
+                if (isExpired(cachedObject, now)) {
+                    removeEntry(segment, key, cachedObject, expiryCause(cachedObject));
+                    return null;
+                }
+            } finally {
+                segment.unlock();
+            }
         }
-        T value;
+        Object value = cachedObject.getValue();
+        if (value instanceof SlabAllocator.Chunk) {
+            Segment segment = segmentFor(key);
+            segment.lock();
+            try {
+                if (cacheEntries.get(key) != cachedObject) {
+                    return find(key, type);
+                }
+                value = segment.slabs.read((SlabAllocator.Chunk) value);
+            } finally {
+                segment.unlock();
+            }
+        }
+        recordAccess(key, cachedObject, now);
+        refreshIfDue(key, cachedObject, now);
+        return decode(cachedObject, value, type);
+    }
+
+    /**
+     * Converts a stored value to the type asked for, encoded values are
+     * decoded by the codec they were encoded with.
+     *
+     * @param cachedObject the cached object the value belongs to
+     * @param value the value or its encoded bytes
+     * @param type the type you stored the object as
+     * @param <T> the return type you used in type
+     * @return the value as the type asked for
+     */
+    private static <T> T decode(CachedObject cachedObject, Object value, Class<T> type) {
         try {
-            CachedObject cachedObject = cacheValues.get(cacheKeys.indexOf(key));
-            cachedObject.update();
-            value = type.cast(cachedObject.getValue());
+            if (cachedObject.codec != null) {
+                return cachedObject.codec.decode((byte[]) value, type);
+            }
+            return type.cast(value);
+        } catch (CodecException exception) {
+            throw new ClassCastException("Invalid type " + type.getName() + " for value!");
         } catch (ClassCastException exception) {
             throw new ClassCastException("Invalid type " + type.getName() + " for value!");
         }
-        return value;
     }
 
     /**
-     * This function will clear all previously stored cache. This will free up additional
-     * memory depending on how many objects are stored.
+     * Finds every key given with a single look at the clock. Keys that are not
+     * stored, or have expired, are left out of the map returned. The work that
+     * needs a segment lock, such as removing expired objects, reading objects
+     * stored off heap and recording reads with the eviction policy, is grouped by
+     * segment so every segment is locked at most once for the whole batch.
+     *
+     * @param keys the ids you used for store
+     * @param type the type you stored the objects as
+     * @param <T> the return type you used in type
+     * @return the objects found mapped by their key
      */
-    public static void clearCache() {
-        cacheKeys.clear();
-        cacheValues.clear();
-        usedSpace = 0;
+    public static <T> Map<String, T> getAll(Collection<String> keys, Class<T> type) {
+        isNull(keys, type);
+        long now = System.currentTimeMillis();
+        sweepIfDue(now);
+        Map<String, T> results = new HashMap<String, T>(keys.size() * 2);
+        List<CachedObject>[] expired = newGroups(), offHeap = newGroups();
+        List<String> missing = null;
+        for (String key : keys) {
+            isNull(key);
+            CachedObject cachedObject = cacheEntries.get(key);
+            if (cachedObject == null) {
+                if (missing == null) {
+                    missing = new ArrayList<String>();
+                }
+                missing.add(key);
+                continue;
+            }
+            int index = segmentIndex(key);
+            if (isExpired(cachedObject, now)) {
+                group(expired, index, cachedObject);
+                continue;
+            }
+            if (cachedObject.getValue() instanceof SlabAllocator.Chunk) {
+                group(offHeap, index, cachedObject);
+                continue;
+            }
+            recordAccess(key, cachedObject, now);
+            refreshIfDue(key, cachedObject, now);
+            results.put(key, decode(cachedObject, cachedObject.getValue(), type));
+        }
+        for (int i = 0; i < segments.length; i++) {
+            if (expired[i] == null && offHeap[i] == null) {
+                continue;
+            }
+            Segment segment = segments[i];
+            segment.lock();
+            List<Object> read = null;
+            List<String> used = null;
+            try {
+                if (expired[i] != null) {
+                    segment.reads.drain(segment.policy);
+                    for (CachedObject cachedObject : expired[i]) {
+                        if (isExpired(cachedObject, now)) {
+                            removeEntry(segment, cachedObject.key, cachedObject, expiryCause(cachedObject));
+                        } else {
+                            if (used == null) {
+                                used = new ArrayList<String>();
+                            }
+                            used.add(cachedObject.key);
+                        }
+                    }
+                }
+                if (offHeap[i] != null) {
+                    read = new ArrayList<Object>(offHeap[i].size());
+                    for (CachedObject cachedObject : offHeap[i]) {
+                        boolean current = cacheEntries.get(cachedObject.key) == cachedObject;
+                        read.add(current ? segment.slabs.read((SlabAllocator.Chunk) cachedObject.getValue()) : null);
+                        if (current) {
+                            cachedObject.update(now);
+                            if (cachedObject.queue != null) {
+                                segment.policy.access(cachedObject);
+                            }
+                            refreshIfDue(cachedObject.key, cachedObject, now);
+                        }
+                    }
+                }
+            } finally {
+                segment.unlock();
+            }
+            for (int j = 0; used != null && j < used.size(); j++) {
+                T value = find(used.get(j), type);
+                if (value != null) {
+                    results.put(used.get(j), value);
+                }
+            }
+            for (int j = 0; read != null && j < read.size(); j++) {
+                CachedObject cachedObject = offHeap[i].get(j);
+                T value = read.get(j) != null ? decode(cachedObject, read.get(j), type) : find(cachedObject.key, type);
+                if (value != null) {
+                    results.put(cachedObject.key, value);
+                }
+            }
+        }
+        DiskTier tier = diskTier;
+        if (tier != null && missing != null) {
+            for (String key : missing) {
+                T value = promote(tier, key, type, now);
+                if (value != null) {
+                    results.put(key, value);
+                }
+            }
+        }
+        if (recordStats) {
+            stats.recordHits(results.size());
+            stats.recordMisses(keys.size() - results.size());
+        }
+        ReadThroughLoader loader = readThrough;
+        if (loader != null && results.size() < keys.size()) {
+            readThroughAll(loader, keys, type, results);
+        }
+        return results;
     }
 
     /**
-     * This function will delete a single entry from the cache. This also frees up
-     * space allowing for more objects to be stored. The delete function will
-     * throw an error if the key is return null and false if the key is not found.
+     * Loads every key the results are missing with a single call to the read
+     * through loader. Keys that are already being loaded are not loaded again,
+     * their running load is waited for instead. Each loaded object is stored
+     * before it is added to the results.
      *
-     * @param key the key to delete along with its associated value
-     * @return true if the object has been successfully found and removed
+     * @param loader the read through loader
+     * @param keys the keys asked for
+     * @param type the type you stored the objects as
+     * @param results the objects found so far mapped by their key
+     * @param <T> the return type you used in type
      */
-    public static boolean deleteEntryFromCache(final String key) {
-        isNull(key);
-        if(cacheKeys.contains(key)) {
-            int i = cacheKeys.indexOf(key);
-            int size = new GsonBuilder().serializeNulls().create().toJson(cacheKeys.get(i)).getBytes().length;
-            usedSpace -= size;
-            cacheKeys.remove(i);
-            cacheValues.remove(i);
-        } else {
-            return false;
+    private static <T> void readThroughAll(ReadThroughLoader loader, Collection<String> keys, Class<T> type, Map<String, T> results) {
+        Map<String, CompletableFuture<Object>> owned = new LinkedHashMap<String, CompletableFuture<Object>>();
+        Map<String, CompletableFuture<Object>> waiting = new HashMap<String, CompletableFuture<Object>>();
+        for (String key : keys) {
+            if (results.containsKey(key) || owned.containsKey(key) || waiting.containsKey(key)) {
+                continue;
+            }
+            CompletableFuture<Object> future = new CompletableFuture<Object>();
+            CompletableFuture<Object> running = loading.putIfAbsent(key, future);
+            if (running != null) {
+                waiting.put(key, running);
+            } else {
+                owned.put(key, future);
+            }
+        }
+        if (!owned.isEmpty()) {
+            long start = recordStats ? System.nanoTime() : 0;
+            Map<String, Object> loaded = null;
+            Throwable failure = null;
+            try {
+                loaded = loader.loadAll(Collections.unmodifiableSet(owned.keySet()));
+            } catch (Throwable throwable) {
+                failure = throwable;
+            }
+            if (start != 0) {
+                stats.recordLoad(failure == null, System.nanoTime() - start);
+            }
+            for (Map.Entry<String, CompletableFuture<Object>> entry : owned.entrySet()) {
+                String key = entry.getKey();
+                try {
+                    if (failure != null) {
+                        entry.getValue().completeExceptionally(failure);
+                        continue;
+                    }
+                    Object value = loaded == null ? null : loaded.get(key);
+                    if (value != null) {
+                        storeLoaded(key, value, readThroughTask(loader, key), defaultLifetime, null);
+                    }
+                    entry.getValue().complete(value);
+                } catch (Throwable throwable) {
+                    entry.getValue().completeExceptionally(throwable);
+                } finally {
+                    loading.remove(key, entry.getValue());
+                }
+            }
+            waiting.putAll(owned);
+        }
+        for (Map.Entry<String, CompletableFuture<Object>> entry : waiting.entrySet()) {
+            T value = join(entry.getKey(), type, entry.getValue());
+            if (value != null) {
+                results.put(entry.getKey(), value);
+            }
         }
-        return true;
     }
 
     /**
-     * This will limit the amount of space given to your cache
-     * MaxSize is not always accurate and may sometimes take more
-     * space the actually measured. Do not rely on MaxSize for amount
-     * of dedicated ram.
+     * Wraps the read through loader of a single key so it can be run as a
+     * load and later as a refresh of the key.
      *
-     * @param unit Unit of bytes given
-     * @param amount of bytes in the specified unit.
+     * @param loader the read through loader
+     * @param key the key to be loaded
+     * @return the task loading the key
      */
-    public static void setMaxSize(DiskUnit unit, int amount) {
-        isNull(unit);
-        maxSize = unit.toBytes(amount);
+    private static Callable<Object> readThroughTask(final ReadThroughLoader loader, final String key) {
+        return new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return loader.load(key);
+            }
+        };
     }
 
     /**
-     * Avoid redundant code by utilizing default update time. This will
-     * be substituted in storeCacheObject functions when left empty.
-     * When retrieving the default it will be in Milliseconds and can be
-     * converted back using the {@link java.util.concurrent.TimeUnit} class.
+     * Moves an object from the disk tier back into memory. The object is kept
+     * in its encoded form, off heap when that is the current storage mode, so
+     * it does not need to be encoded again when it is evicted once more. When
+     * the key was stored again in the meantime the object found in memory under
+     * the lock is returned, the read has already been counted by the caller.
      *
-     * @param unit the time unit time is left in
-     * @param time the amount of time in the specified unit.
+     * @param tier the disk tier to be read from
+     * @param key the id you used for store
+     * @param type the type you stored the object as
+     * @param now the current time in milliseconds
+     * @param <T> the return type you used in type
+     * @return the decoded object or null if it is not on disk
      */
-    public static void setDefaultUpdateTime(TimeUnit unit, long time) {
-        isNull(unit);
-        defaultUpdateTime = unit.toMillis(time);
+    private static <T> T promote(DiskTier tier, String key, Class<T> type, long now) {
+        Segment segment = segmentFor(key);
+        DiskTier.Record record = null;
+        CachedObject found;
+        Object value = null;
+        segment.lock();
+        try {
+            found = cacheEntries.get(key);
+            if (found != null) {
+                // A buffered read may still move its update time forward.
+                segment.reads.drain(segment.policy);
+                if (isExpired(found, now)) {
+                    removeEntry(segment, key, found, expiryCause(found));
+                    return null;
+                }
+                value = found.getValue();
+                if (value instanceof SlabAllocator.Chunk) {
+                    value = segment.slabs.read((SlabAllocator.Chunk) value);
+                }
+            } else {
+                Segment.Spill spill = segment.spilling.remove(key);
+                if (spill != null) {
+                    tier.remove(key);
+                    record = new DiskTier.Record(null, 0, 0, spill.codec, spill.lifeTime, spill.updateTime);
+                    record.value = spill.value;
+                } else {
+                    record = tier.take(key);
+                }
+                if (record == null || (record.lifeTime > -1 && record.lifeTime <= now)) {
+                    return null;
+                }
+                StorageMode mode = storageMode == StorageMode.OFF_HEAP ? StorageMode.OFF_HEAP : StorageMode.VALUE;
+                int size = mode == StorageMode.OFF_HEAP ? SlabAllocator.capacityFor(record.value.length) : record.value.length;
+                insert(segment, key, record.value, size, record.codec, mode, record.lifeTime, record.updateTime);
+            }
+        } finally {
+            unlockAndSpill(segment);
+        }
+        if (found != null) {
+            recordAccess(key, found, now);
+            return decode(found, value, type);
+        }
+        trim(segment);
+        try {
+            return record.codec.decode(record.value, type);
+        } catch (CodecException exception) {
+            throw new ClassCastException("Invalid type " + type.getName() + " for value!");
+        }
     }
 
     /**
-     * Avoid redundant code by utilizing default lifetime. This will
-     * be substituted in thestoreCacheObject functions when left empty.
-     * When retrieving the default it will be in Milliseconds and can be
-     * converted back using the {@link java.util.concurrent.TimeUnit} class.
+     * Export passes every object in the cache to the cache store given along
+     * with its serialized json form, the time it has left to live and the time
+     * it may go unused. The objects exported are those in memory when the export
+     * starts, objects on the disk tier are not exported. Use a
+     * {@link net.projectbarks.easycache.datastore.BinarySnapshotStore} to write a
+     * snapshot file that can be imported again after a restart.
      *
-     * @param unit the time unit time is left in
-     * @param time the amount of time in the specified unit.
+     * Objects are serialized on the common fork join pool while the calling
+     * thread passes them to the store, see {@link #exportCacheAsync(CacheStore, Executor)}.
+     *
+     * @param store the store the objects are passed to
+     * @return the amount of objects exported
      */
-    public static void setDefaultLifetime(TimeUnit unit, long time) {
-        isNull(unit);
-        defaultLifetime = unit.toMillis(time);
+    public static int exportCache(CacheStore store) {
+        isNull(store);
+        return export(store, ForkJoinPool.commonPool());
     }
 
     /**
-     * Update time is optional and is not required to be used. Update Time can
-     * not be null but will be ignored in the code and can be re-enabled at any
-     * time.
+     * Exports the cache without blocking the calling thread. The export runs on
+     * a thread of its own and never holds up threads using the cache: the snapshot
+     * only copies references to the stored objects, serializing takes no locks
+     * except for objects stored off heap and writers are never waited on.
      *
-     * Note: When re-enabling the Update Time all objects will be effected.
-     * For example if you add an object before update time is re-enabled the update
-     * time inserted will be used.
+     * The snapshot is serialized in batches on the workers given, while the export
+     * thread passes the serialized objects to the store in snapshot order with their
+     * index and the total size of the snapshot. Only a few batches are serialized
+     * ahead of the store, so a slow store holds back serializing rather than
+     * filling the heap. The store is only ever called from the export thread.
      *
-     * <b>Warning! this function can cause lag depending if objects exist in the cache!
-     * It is only recommended to use this function before objects are stored!</b>
+     * Note objects stored while the export runs may or may not be exported, an
+     * object stored off heap that is replaced before it is serialized is skipped.
      *
-     * @param allow if update time is to be used.
+     * @param store the store the objects are passed to
+     * @param workers the executor objects are serialized on
+     * @return a future completed with the amount of objects exported
      */
-    public static void setAllowUpdateTime(boolean allow) {
-        if (allowUpdateTime == allow) {
-            return;
+    public static CompletableFuture<Integer> exportCacheAsync(final CacheStore store, final Executor workers) {
+        isNull(store, workers);
+        final CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    future.complete(export(store, workers));
+                } catch (Throwable throwable) {
+                    future.completeExceptionally(throwable);
+                }
+            }
+        }, "EasyCache-Export");
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    /**
+     * Exports the cache without blocking the calling thread, serializing
+     * on the common fork join pool.
+     *
+     * @param store the store the objects are passed to
+     * @return a future completed with the amount of objects exported
+     * @see #exportCacheAsync(CacheStore, Executor)
+     */
+    public static CompletableFuture<Integer> exportCacheAsync(CacheStore store) {
+        return exportCacheAsync(store, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Export does the work behind every export function, the calling thread
+     * passes the batches serialized by the workers to the store in order.
+     *
+     * @param store the store the objects are passed to
+     * @param workers the executor objects are serialized on
+     * @return the amount of objects exported
+     */
+    private static int export(CacheStore store, Executor workers) {
+        final CachedObject[] snapshot = cacheEntries.values().toArray(new CachedObject[0]);
+        int total = snapshot.length, index = 0, next = 0;
+        ArrayDeque<FutureTask<Exported[]>> pending = new ArrayDeque<FutureTask<Exported[]>>();
+        try {
+            while (next < total || !pending.isEmpty()) {
+                while (next < total && pending.size() < EXPORT_AHEAD) {
+                    final int from = next, to = Math.min(total, next + EXPORT_BATCH);
+                    FutureTask<Exported[]> task = new FutureTask<Exported[]>(new Callable<Exported[]>() {
+                        @Override
+                        public Exported[] call() {
+                            return serialize(snapshot, from, to);
+                        }
+                    });
+                    workers.execute(task);
+                    pending.addLast(task);
+                    next = to;
+                }
+                Exported[] batch;
+                try {
+                    batch = pending.pollFirst().get();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Export was interrupted!", exception);
+                } catch (ExecutionException exception) {
+                    if (exception.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) exception.getCause();
+                    }
+                    throw new RuntimeException("Export failed!", exception.getCause());
+                }
+                for (Exported exported : batch) {
+                    if (exported != null) {
+                        store.store(exported.key, exported.json, exported.rawValue,
+                                exported.lifetime, exported.updateTime, index++, total);
+                    }
+                }
+            }
+        } finally {
+            for (FutureTask<Exported[]> task : pending) {
+                task.cancel(false);
+            }
+            store.finish();
         }
-        allowUpdateTime = allow;
-        List<String> tempKeys = new ArrayList<String>();
-        List<CachedObject> tempValues = new ArrayList<CachedObject>();
-        int i = 0;
-        for (CachedObject object : cacheValues) {
-            object.setAllowUpdateTime(allowUpdateTime);
-            int index = Collections.binarySearch(tempValues, object);
-            if (index < 0) index = ~index;
-            tempValues.add(index, object);
-            tempKeys.add(index, cacheKeys.get(i));
-            i++;
-        }
-        cacheKeys = tempKeys;
-        cacheValues = tempValues;
-    }
-
-    /**
-     * Objects in cache are sorted using the mathematical log function
-     * and placing it in the correct index. This allows for a faster
-     * lifetime check. The process works as follows: The objects are iterated
-     * through in descending order. It then checks if the object is outdated and
-     * if so removes it from the cache. When a object past the current time is
-     * reached the code is terminated. The code can be terminated because an
-     * object is first sorted by whichever time is closer to the deadline, the
-     * order helps because any objects past the first object with a future time
-     * will also be future. The {@link #deleteEntryFromCache(String)} function
-     * is used to remove objects.
+        return index;
+    }
+
+    /**
+     * Serializes a range of the snapshot, objects that have expired or were
+     * removed are left null.
+     *
+     * @param snapshot the objects being exported
+     * @param from the first index of the range
+     * @param to the index after the range
+     * @return the serialized objects of the range
      */
-    protected static void checkLifetime() {
-        List<String> keysToRemove = new ArrayList<String>();
-        int index = 0;
-        for (CachedObject entry : cacheValues) {
-            if (entry.getLifeTime() <= -1) {
-                break;
+    private static Exported[] serialize(CachedObject[] snapshot, int from, int to) {
+        Exported[] batch = new Exported[to - from];
+        for (int i = from; i < to; i++) {
+            CachedObject object = snapshot[i];
+            long now = System.currentTimeMillis();
+            if (isExpired(object, now)) {
+                continue;
             }
-            if (entry.getLower() > System.currentTimeMillis()) {
-                break;
+            String json = toJson(object);
+            if (json == null) {
+                continue;
             }
-            keysToRemove.add(cacheKeys.get(index));
-            index++;
+            batch[i - from] = new Exported(object.key, json, object.codec == null ? object.getValue() : null,
+                    object.getLifeTime() > -1 ? object.getLifeTime() - now : -1, object.getUpdateTime());
         }
-        for (String key : keysToRemove) {
-            deleteEntryFromCache(key);
+        return batch;
+    }
+
+    /**
+     * Exported is a serialized object waiting to be passed to the store.
+     */
+    private static final class Exported {
+        final String key, json;
+        final Object rawValue;
+        final long lifetime, updateTime;
+
+        Exported(String key, String json, Object rawValue, long lifetime, long updateTime) {
+            this.key = key;
+            this.json = json;
+            this.rawValue = rawValue;
+            this.lifetime = lifetime;
+            this.updateTime = updateTime;
+        }
+    }
+
+    /**
+     * Import stores every object loaded by the cache loader given until it
+     * reports that no values remain. Objects are kept in their json form and
+     * only converted when they are read with {@link #getCachedObject(String, Class)},
+     * so the type of an object does not need to be known when it is imported.
+     * Objects whose lifetime has already run out are skipped.
+     *
+     * A {@link BulkCacheLoader} is imported in parallel on the common fork join
+     * pool, see {@link #importCache(BulkCacheLoader, ForkJoinPool)}.
+     *
+     * @param loader the loader the objects are read from
+     * @return the amount of objects imported
+     */
+    public static int importCache(CacheLoader loader) {
+        isNull(loader);
+        if (loader instanceof BulkCacheLoader) {
+            return importCache((BulkCacheLoader) loader, ForkJoinPool.commonPool());
         }
+        int count = 0;
+        CacheLoader.Result result;
+        do {
+            result = loader.load(new CacheLoader.Result());
+            if (result == null) {
+                break;
+            }
+            Pending pending = restore(result, System.currentTimeMillis());
+            if (pending != null) {
+                Segment segment = segmentFor(pending.key);
+                boolean inserted;
+                segment.lock();
+                try {
+                    inserted = pending.insert(segment);
+                } finally {
+                    unlockAndSpill(segment);
+                }
+                trim(segment);
+                if (inserted) {
+                    count++;
+                }
+            }
+        } while (result.isRemainingValues());
+        return count;
+    }
+
+    /**
+     * Imports a bulk loader in parallel. Chunks are loaded in order on the calling
+     * thread while the pool decodes the chunks already loaded and stores them in
+     * batches, taking the lock of every segment once per batch. Only a few chunks
+     * are held at a time, the loader waits for the pool once that many are queued.
+     *
+     * @param loader the loader the objects are read from
+     * @param pool the pool the objects are decoded and stored on
+     * @return the amount of objects imported
+     */
+    public static int importCache(final BulkCacheLoader loader, ForkJoinPool pool) {
+        isNull(loader, pool);
+        final int permits = Math.max(2, pool.getParallelism() * 2);
+        final Semaphore inFlight = new Semaphore(permits);
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+        boolean remaining;
+        try {
+            do {
+                List<CacheLoader.Result> chunk = new ArrayList<CacheLoader.Result>(IMPORT_CHUNK);
+                remaining = loader.loadChunk(chunk, IMPORT_CHUNK);
+                if (chunk.isEmpty()) {
+                    continue;
+                }
+                inFlight.acquireUninterruptibly();
+                if (failure.get() != null) {
+                    inFlight.release();
+                    break;
+                }
+                final ImportTask task = new ImportTask(loader, chunk, 0, chunk.size(), count);
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            task.invoke();
+                        } catch (RuntimeException exception) {
+                            failure.compareAndSet(null, exception);
+                        } finally {
+                            inFlight.release();
+                        }
+                    }
+                });
+            } while (remaining);
+        } finally {
+            inFlight.acquireUninterruptibly(permits);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return count.get();
+    }
+
+    /**
+     * Prepares a single imported object to be stored in its json form, off
+     * heap when that is the current storage mode.
+     *
+     * @param result the loaded object
+     * @param now the current time in milliseconds
+     * @return the object ready to be inserted or null if it is skipped
+     */
+    private static Pending restore(CacheLoader.Result result, long now) {
+        if (result.getKey() == null || (result.getValue() == null && result.getEncodedValue() == null)) {
+            return null;
+        }
+        long lifetime = result.getLifetime() != null ? result.getLifetime() : defaultLifetime;
+        long updateTime = result.getUpdateTime() != null ? result.getUpdateTime() : defaultUpdateTime;
+        if (lifetime == 0 || lifetime < -1) {
+            return null;
+        }
+        byte[] bytes = result.getEncodedValue() != null ? result.getEncodedValue() : result.getValue().getBytes(UTF_8);
+        StorageMode mode = storageMode == StorageMode.OFF_HEAP ? StorageMode.OFF_HEAP : StorageMode.VALUE;
+        int size = mode == StorageMode.OFF_HEAP ? SlabAllocator.capacityFor(bytes.length) : bytes.length;
+        if (!fits(size)) {
+            return null;
+        }
+        return new Pending(result.getKey(), bytes, size, JSON_CODEC, mode, lifetime == -1 ? -1 : now + lifetime, updateTime);
+    }
+
+    /**
+     * Import task decodes a range of a loaded chunk, splitting it in half
+     * until it is small enough. The objects of a range are grouped by segment
+     * and every segment is locked once to insert its whole group.
+     */
+    private static final class ImportTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 512;
+
+        private final BulkCacheLoader loader;
+        private final List<CacheLoader.Result> chunk;
+        private final int from, to;
+        private final AtomicInteger count;
+
+        ImportTask(BulkCacheLoader loader, List<CacheLoader.Result> chunk, int from, int to, AtomicInteger count) {
+            this.loader = loader;
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+            this.count = count;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ImportTask(loader, chunk, from, middle, count),
+                        new ImportTask(loader, chunk, middle, to, count));
+                return;
+            }
+            long now = System.currentTimeMillis();
+            List<Pending>[] groups = newGroups();
+            for (int i = from; i < to; i++) {
+                CacheLoader.Result result = chunk.get(i);
+                loader.decode(result);
+                Pending pending = restore(result, now);
+                if (pending != null) {
+                    group(groups, segmentIndex(pending.key), pending);
+                }
+            }
+            count.addAndGet(insertAll(groups, null));
+        }
+    }
+
+    /**
+     * Serializes a stored object to json. Objects stored by reference are
+     * serialized directly, encoded objects are converted by their codec.
+     *
+     * @param object the object to be serialized
+     * @return the json form or null if the object has been removed
+     */
+    private static String toJson(CachedObject object) {
+        Object value = object.getValue();
+        if (value instanceof SlabAllocator.Chunk) {
+            Segment segment = segmentFor(object.key);
+            segment.lock();
+            try {
+                if (cacheEntries.get(object.key) != object) {
+                    return null;
+                }
+                value = segment.slabs.read((SlabAllocator.Chunk) value);
+            } finally {
+                segment.unlock();
+            }
+        }
+        return toJson(value, object.codec);
+    }
+
+    /**
+     * Serializes an object or the bytes it was encoded to by a codec to json.
+     *
+     * @param value the object or its encoded bytes
+     * @param valueCodec the codec the bytes were encoded with or null for an object
+     * @return the json form
+     */
+    static String toJson(Object value, Codec valueCodec) {
+        if (valueCodec == null) {
+            return GSON.toJson(value);
+        }
+        if (valueCodec instanceof GsonCodec) {
+            return new String((byte[]) value, UTF_8);
+        }
+        return valueCodec.decode((byte[]) value, JsonElement.class).toString();
+    }
+
+    /**
+     * This function will clear all previously stored cache. This will free up additional
+     * memory depending on how many objects are stored.
+     */
+    public static void clearCache() {
+        for (Segment segment : segments) {
+            segment.lock();
+        }
+        try {
+            for (CachedObject object : cacheEntries.values()) {
+                if (object.getValue() instanceof SlabAllocator.Chunk) {
+                    segmentFor(object.key).slabs.free((SlabAllocator.Chunk) object.getValue());
+                }
+            }
+            cacheEntries.clear();
+            for (Segment segment : segments) {
+                segment.expiryWheel.clear();
+                segment.idleWheel.clear();
+                segment.reads.clear();
+                segment.policy = Policy.create(evictionPolicy, segmentCapacity());
+                segment.weight = 0;
+                segment.count = 0;
+                segment.slack = 0;
+                segment.spills.clear();
+                segment.spilling.clear();
+            }
+            usedSpace.reset();
+            DiskTier tier = diskTier;
+            if (tier != null) {
+                tier.clear();
+            }
+            WriteBehind mirror = writeBehind;
+            if (mirror != null) {
+                mirror.clear();
+            }
+        } finally {
+            for (Segment segment : segments) {
+                segment.unlock();
+            }
+        }
+    }
+
+    /**
+     * This function will delete a single entry from the cache. This also frees up
+     * space allowing for more objects to be stored. The delete function will
+     * throw an error if the key is return null and false if the key is not found.
+     *
+     * @param key the key to delete along with its associated value
+     * @return true if the object has been successfully found and removed
+     */
+    public static boolean deleteEntryFromCache(final String key) {
+        isNull(key);
+        Segment segment = segmentFor(key);
+        segment.lock();
+        try {
+            boolean removed = removeEntry(segment, key, null, RemovalCause.EXPLICIT);
+            WriteBehind mirror = writeBehind;
+            if (mirror != null) {
+                mirror.deleted(key);
+            }
+            boolean spilled = segment.spilling.remove(key) != null;
+            DiskTier tier = diskTier;
+            return (tier != null && tier.remove(key)) || removed || spilled;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * Finds an object and when it is not stored loads it with the loader given
+     * and stores it using the default lifetime, see
+     * {@link #getOrLoad(String, Class, java.util.concurrent.Callable, java.util.concurrent.TimeUnit, Long)}.
+     *
+     * @param key the id you used for store
+     * @param type the type you stored the object as
+     * @param loader loads the object when it is not stored
+     * @param <T> the return type you used in type
+     * @return the stored or loaded object, null if the loader returned null
+     */
+    public static <T> T getOrLoad(final String key, Class<T> type, Callable<? extends T> loader) {
+        return getOrLoad(key, type, loader, TimeUnit.MILLISECONDS, defaultLifetime);
+    }
+
+    /**
+     * Finds an object and when it is not stored loads it with the loader given.
+     * Only a single load per key is ever running, every other thread asking for
+     * the same key while it loads waits for that load and receives its result. This
+     * keeps an expired popular object from sending every request to the source of
+     * the object at the same moment.
+     *
+     * A loaded object is stored before it is handed out, unless the loader returned
+     * null. When the loader fails nothing is stored and every waiting thread receives
+     * the failure, the next call loads again.
+     *
+     * @param key the id you used for store
+     * @param type the type you stored the object as
+     * @param loader loads the object when it is not stored
+     * @param lifetimeUnit the unit in which the lifetime is measured
+     * @param lifetime set how long a loaded object lives for to be removed from cache.
+     * @param <T> the return type you used in type
+     * @return the stored or loaded object, null if the loader returned null
+     */
+    public static <T> T getOrLoad(final String key, Class<T> type, Callable<? extends T> loader, TimeUnit lifetimeUnit, Long lifetime) {
+        isNull(key, type, loader, lifetimeUnit, lifetime);
+        T value = lookup(key, type);
+        if (value != null) {
+            return value;
+        }
+        return join(key, type, load(key, loader, lifetimeUnit.toMillis(lifetime), null, null));
+    }
+
+    /**
+     * Waits for a load and casts the object loaded to the type asked for.
+     * A failed load is thrown as it is when it is a runtime exception.
+     *
+     * @param key the key being loaded
+     * @param type the type you stored the object as
+     * @param future the future of the load
+     * @param <T> the return type you used in type
+     * @return the loaded object, null if the loader returned null
+     */
+    private static <T> T join(String key, Class<T> type, CompletableFuture<Object> future) {
+        try {
+            return type.cast(future.join());
+        } catch (ClassCastException exception) {
+            throw new ClassCastException("Invalid type " + type.getName() + " for value!");
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+            throw new RuntimeException("Failed to load " + key + "!", exception.getCause());
+        }
+    }
+
+    /**
+     * Finds an object without waiting and when it is not stored loads it on the
+     * executor given. The same single load per key is shared with
+     * {@link #getOrLoad(String, Class, java.util.concurrent.Callable, java.util.concurrent.TimeUnit, Long)},
+     * callers asking for a key that is already loading receive the future of that load.
+     *
+     * @param key the id you used for store
+     * @param type the type you stored the object as
+     * @param loader loads the object when it is not stored
+     * @param lifetimeUnit the unit in which the lifetime is measured
+     * @param lifetime set how long a loaded object lives for to be removed from cache.
+     * @param executor the executor the loader runs on
+     * @param <T> the return type you used in type
+     * @return a future completed with the stored or loaded object
+     */
+    public static <T> CompletableFuture<T> getOrLoadAsync(final String key, final Class<T> type, Callable<? extends T> loader,
+                                                          TimeUnit lifetimeUnit, Long lifetime, Executor executor) {
+        isNull(key, type, loader, lifetimeUnit, lifetime, executor);
+        T value = lookup(key, type);
+        if (value != null) {
+            return CompletableFuture.completedFuture(value);
+        }
+        return load(key, loader, lifetimeUnit.toMillis(lifetime), executor, null).thenApply(new Function<Object, T>() {
+            @Override
+            public T apply(Object loaded) {
+                try {
+                    return type.cast(loaded);
+                } catch (ClassCastException exception) {
+                    throw new ClassCastException("Invalid type " + type.getName() + " for value!");
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts a background reload of an object once it has passed its refresh
+     * time. The object keeps being served until the reload replaces it, the reload
+     * is dropped when the object is replaced or deleted in the meantime. A failed
+     * reload leaves the object as it is to be refreshed again by a later read.
+     *
+     * @param key the key the object is stored under
+     * @param cachedObject the object that was read
+     * @param now the current time in milliseconds
+     */
+    private static void refreshIfDue(String key, CachedObject cachedObject, long now) {
+        long refreshTime = cachedObject.refreshTime;
+        if (refreshTime == 0 || refreshTime > now || loading.containsKey(key)) {
+            return;
+        }
+        load(key, cachedObject.loader, cachedObject.loadLifetime, refreshExecutor, cachedObject);
+    }
+
+    /**
+     * Starts loading a key unless a load of the key is already running, in
+     * which case the future of the running load is returned. The load is removed
+     * from the running loads once it has completed, whether or not it failed.
+     *
+     * @param key the key to be loaded
+     * @param loader loads the object
+     * @param lifetime the milliseconds a loaded object lives for
+     * @param executor the executor the loader runs on, or null to run it right away
+     * @param replaced the object being refreshed, or null when the key is not stored
+     * @return the future of the load
+     */
+    private static CompletableFuture<Object> load(final String key, final Callable<?> loader, final long lifetime,
+                                                  Executor executor, final CachedObject replaced) {
+        final CompletableFuture<Object> future = new CompletableFuture<Object>();
+        CompletableFuture<Object> running = loading.putIfAbsent(key, future);
+        if (running != null) {
+            return running;
+        }
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                long start = recordStats ? System.nanoTime() : 0;
+                try {
+                    Object value = loader.call();
+                    if (value != null) {
+                        storeLoaded(key, value, loader, lifetime, replaced);
+                    }
+                    // Recorded once the object is stored, a store that fails counts as a failed load instead.
+                    if (start != 0) {
+                        stats.recordLoad(value != null, System.nanoTime() - start);
+                    }
+                    future.complete(value);
+                } catch (Throwable throwable) {
+                    if (start != 0) {
+                        stats.recordLoad(false, System.nanoTime() - start);
+                    }
+                    future.completeExceptionally(throwable);
+                } finally {
+                    loading.remove(key, future);
+                }
+            }
+        };
+        if (executor == null) {
+            task.run();
+        } else {
+            try {
+                executor.execute(task);
+            } catch (RuntimeException exception) {
+                loading.remove(key, future);
+                future.completeExceptionally(exception);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Starts loading a key with a loader that completes on its own, unless a
+     * load of the key is already running, in which case the future of the running
+     * load is returned. No thread is held while the loader runs, the loaded object
+     * is stored by whichever thread completes the loader. Used by {@link AsyncEasyCache}.
+     *
+     * @param key the key to be loaded
+     * @param loader starts loading the object of a key
+     * @param lifetime the milliseconds a loaded object lives for
+     * @return the future of the load
+     */
+    static CompletableFuture<Object> loadAsync(final String key, final Function<String, ? extends CompletableFuture<?>> loader,
+                                               final long lifetime) {
+        final CompletableFuture<Object> future = new CompletableFuture<Object>();
+        CompletableFuture<Object> running = loading.putIfAbsent(key, future);
+        if (running != null) {
+            return running;
+        }
+        final Callable<Object> reload = new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return loader.apply(key).join();
+            }
+        };
+        final long start = recordStats ? System.nanoTime() : 0;
+        try {
+            loader.apply(key).whenComplete(new BiConsumer<Object, Throwable>() {
+                @Override
+                public void accept(Object value, Throwable throwable) {
+                    if (start != 0) {
+                        stats.recordLoad(throwable == null && value != null, System.nanoTime() - start);
+                    }
+                    try {
+                        if (throwable != null) {
+                            boolean wrapped = throwable instanceof CompletionException && throwable.getCause() != null;
+                            future.completeExceptionally(wrapped ? throwable.getCause() : throwable);
+                            return;
+                        }
+                        if (value != null) {
+                            storeLoaded(key, value, reload, lifetime, null);
+                        }
+                        future.complete(value);
+                    } catch (Throwable failure) {
+                        future.completeExceptionally(failure);
+                    } finally {
+                        loading.remove(key, future);
+                    }
+                }
+            });
+        } catch (RuntimeException exception) {
+            loading.remove(key, future);
+            future.completeExceptionally(exception);
+        }
+        return future;
+    }
+
+    /**
+     * Stores a loaded object along with its loader so it can be refreshed.
+     * When the object is a refresh it is only stored if the object refreshed is
+     * still stored, or has expired, so a refresh never brings back a deleted key.
+     *
+     * @param key the key that was loaded
+     * @param value the loaded object
+     * @param loader the loader that loaded the object
+     * @param lifetime the milliseconds a loaded object lives for
+     * @param replaced the object being refreshed, or null when the key is not stored
+     */
+    private static void storeLoaded(String key, Object value, Callable<?> loader, long lifetime, CachedObject replaced) {
+        long now = System.currentTimeMillis();
+        Pending pending = prepare(key, value, now + lifetime, defaultUpdateTime);
+        pending.loader = loader;
+        pending.loadLifetime = lifetime;
+        Segment segment = segmentFor(key);
+        segment.lock();
+        try {
+            CachedObject current = cacheEntries.get(key);
+            if (replaced == null || current == replaced || (current == null && isExpired(replaced, now))) {
+                pending.insert(segment);
+            }
+        } finally {
+            unlockAndSpill(segment);
+        }
+        trim(segment);
+    }
+
+    /**
+     * Stores every key-value pair of the map using the default lifetime and
+     * update time, see {@link #storeAll(java.util.Map, java.util.concurrent.TimeUnit, Long, java.util.concurrent.TimeUnit, Long)}.
+     *
+     * @param values the values to be stored mapped by their key
+     */
+    public static void storeAll(Map<String, ?> values) {
+        storeAll(values, TimeUnit.MILLISECONDS, defaultLifetime, TimeUnit.MILLISECONDS, defaultUpdateTime);
+    }
+
+    /**
+     * Stores every key-value pair of the map with the lifetime and update time
+     * given. Every value is encoded or weighed before any lock is taken, so when
+     * one value cannot be stored none of them are. The values are then grouped by
+     * segment and every segment is locked once to insert its whole group.
+     *
+     * @param values the values to be stored mapped by their key
+     * @param lifetimeUnit the unit in which the lifetime is measured
+     * @param lifetime set how long the objects live for to be removed from cache.
+     * @param updateUnit the unit in which the update time is measured
+     * @param updateTime how long the objects may go unused.
+     */
+    public static void storeAll(Map<String, ?> values, TimeUnit lifetimeUnit, Long lifetime, TimeUnit updateUnit, Long updateTime) {
+        isNull(values, lifetimeUnit, lifetime, updateUnit, updateTime);
+        long now = System.currentTimeMillis();
+        sweepIfDue(now);
+        long finalLifeTime = now + lifetimeUnit.toMillis(lifetime), update = updateUnit.toMillis(updateTime);
+        List<Pending>[] groups = newGroups();
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            isNull(entry.getKey(), entry.getValue());
+            group(groups, segmentIndex(entry.getKey()), prepare(entry.getKey(), entry.getValue(), finalLifeTime, update));
+        }
+        WriteBehind mirror = writeBehind;
+        insertAll(groups, mirror);
+        if (mirror != null) {
+            mirror.throttle();
+        }
+    }
+
+    /**
+     * Deletes every key given, locking every segment at most once.
+     *
+     * @param keys the keys to delete along with their associated values
+     * @return the amount of keys that were deleted
+     */
+    public static int deleteAll(Collection<String> keys) {
+        isNull(keys);
+        List<String>[] groups = newGroups();
+        for (String key : keys) {
+            isNull(key);
+            group(groups, segmentIndex(key), key);
+        }
+        DiskTier tier = diskTier;
+        WriteBehind mirror = writeBehind;
+        int deleted = 0;
+        for (int i = 0; i < segments.length; i++) {
+            if (groups[i] == null) {
+                continue;
+            }
+            Segment segment = segments[i];
+            segment.lock();
+            try {
+                for (String key : groups[i]) {
+                    boolean removed = removeEntry(segment, key, null, RemovalCause.EXPLICIT);
+                    if (mirror != null) {
+                        mirror.deleted(key);
+                    }
+                    removed |= segment.spilling.remove(key) != null;
+                    if ((tier != null && tier.remove(key)) || removed) {
+                        deleted++;
+                    }
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * This will limit the amount of space given to your cache
+     * MaxSize is not always accurate and may sometimes take more
+     * space the actually measured. Do not rely on MaxSize for amount
+     * of dedicated ram. Lowering the max size evicts objects right away
+     * until every segment fits within its share and the whole cache fits
+     * within the max size again.
+     *
+     * @param unit Unit of bytes given
+     * @param amount of bytes in the specified unit.
+     */
+    public static synchronized void setMaxSize(DiskUnit unit, int amount) {
+        isNull(unit);
+        maxSize = unit.toBytes(amount);
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                segment.policy.setCapacity(segmentCapacity());
+                evict(segment);
+            } finally {
+                unlockAndSpill(segment);
+            }
+        }
+        trim(null);
+    }
+
+    /**
+     * The weigher measures how many bytes an object takes up when it is stored,
+     * that weight is counted against the max size until the object is removed.
+     * Objects already stored keep the weight they were measured with.
+     *
+     * @param weigher the weigher to be used for objects stored from now on.
+     */
+    public static void setWeigher(Weigher weigher) {
+        isNull(weigher);
+        EasyCache.weigher = weigher;
+    }
+
+    /**
+     * Storage mode decides if objects are kept as they are or encoded to
+     * bytes by the codec. Storing by value keeps callers from changing
+     * cached objects and keeps the heap free of whole object graphs at the
+     * cost of encoding on every store and decoding on every read. Objects
+     * already stored keep the form they were stored in.
+     *
+     * @param mode the storage mode to be used for objects stored from now on.
+     */
+    public static void setStorageMode(StorageMode mode) {
+        isNull(mode);
+        storageMode = mode;
+    }
+
+    /**
+     * The codec encodes objects to bytes when they are stored by value.
+     * Objects already stored are decoded by the codec they were encoded with.
+     *
+     * @param codec the codec to be used for objects stored from now on.
+     */
+    public static void setCodec(Codec codec) {
+        isNull(codec);
+        EasyCache.codec = codec;
+    }
+
+    /**
+     * The disk tier keeps objects evicted from memory in memory mapped files
+     * within the directory given instead of dropping them. Reading an object
+     * from the disk tier moves it back into memory, objects read back are
+     * always copies of the object stored. Once the disk tier is full the
+     * objects that were spilled first are dropped.
+     *
+     * Note any data file left in the directory from an earlier run is deleted,
+     * objects on disk do not outlive the cache. Setting the disk tier again
+     * drops every object on the previous disk tier.
+     *
+     * @param directory the directory the data files are kept in
+     * @param unit Unit of bytes given
+     * @param amount of bytes in the specified unit the data files may take up.
+     */
+    public static synchronized void setDiskTier(File directory, DiskUnit unit, int amount) {
+        isNull(directory, unit);
+        DiskTier previous = diskTier;
+        diskTier = new DiskTier(directory, unit.toBytes(amount));
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Turns the disk tier off and deletes its data files along with every
+     * object on them. Evicted objects are dropped again from now on.
+     */
+    public static synchronized void disableDiskTier() {
+        DiskTier previous = diskTier;
+        diskTier = null;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Mirrors every object stored from now on to the cache store given in the
+     * background, see {@link #setWriteBehind(CacheStore, int, TimeUnit, long, long)}.
+     * Up to 512 objects are stored at a time, an object is stored a second after
+     * it was written and writers wait once an object went unstored for ten seconds.
+     *
+     * @param store the store the objects are passed to
+     */
+    public static void setWriteBehind(CacheStore store) {
+        setWriteBehind(store, 512, TimeUnit.SECONDS, 1L, 10L);
+    }
+
+    /**
+     * Mirrors every object stored from now on to the cache store given without
+     * making the storing thread wait for the store. Every {@link #storeCacheObject(String, Object)
+     * store} and {@link #storeAll(Map) storeAll} marks its keys dirty, a background
+     * thread passes the dirty keys to the store in batches of at most the flush size.
+     * A key that is stored again before it is flushed is only passed to the store
+     * once with its newest value, so a key updated many times in a row costs the store
+     * a single write. Objects that are loaded or imported are not mirrored.
+     *
+     * A key is flushed once it has been dirty for the flush interval, or right away
+     * once the flush size of keys are dirty. When the store falls behind so far that
+     * a key has been dirty for longer than the max lag, storing threads wait until the
+     * store catches up. Setting write behind again first flushes the previous store.
+     *
+     * @param store the store the objects are passed to
+     * @param flushSize the most objects passed to the store in a batch
+     * @param unit the unit of the flush interval and the max lag
+     * @param flushInterval how long a key may stay dirty before it is flushed
+     * @param maxLag how long a key may stay dirty before storing threads wait, at least the flush interval
+     */
+    public static synchronized void setWriteBehind(CacheStore store, int flushSize, TimeUnit unit, long flushInterval, long maxLag) {
+        isNull(store, unit);
+        WriteBehind previous = writeBehind;
+        writeBehind = new WriteBehind(store, flushSize, unit.toMillis(flushInterval), unit.toMillis(maxLag));
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Stops mirroring stored objects. Every key still dirty is passed to the store
+     * before {@link CacheStore#finish()} is called on it.
+     */
+    public static synchronized void disableWriteBehind() {
+        WriteBehind previous = writeBehind;
+        writeBehind = null;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Blocks until every key stored before the call has been passed to the write
+     * behind store. Does nothing when write behind is not set.
+     */
+    public static void flushWriteBehind() {
+        WriteBehind mirror = writeBehind;
+        if (mirror != null) {
+            mirror.flush();
+        }
+    }
+
+    /**
+     * Gets the amount of bytes taken up by objects on the disk tier, zero
+     * when there is no disk tier.
+     *
+     * @return the used disk space in bytes
+     */
+    public static long getDiskSpace() {
+        DiskTier tier = diskTier;
+        return tier == null ? 0 : tier.getLiveBytes();
+    }
+
+    /**
+     * Gets the amount of direct memory held for objects stored off heap.
+     * The slabs held by segments, including their free space, count towards
+     * the used space, the rest are the few empty slabs kept in a shared pool
+     * to be reused by the next objects stored.
+     *
+     * @return the reserved direct memory in bytes
+     */
+    public static long getOffHeapSpace() {
+        return SlabAllocator.getReserved();
+    }
+
+    /**
+     * Gets the total weight of every object currently stored in the cache
+     * as measured by the weigher. The used space is counted without locking
+     * so it may be slightly behind while other threads are storing objects.
+     *
+     * @return the used space in bytes
+     */
+    public static long getUsedSpace() {
+        return usedSpace.sum();
+    }
+
+    /**
+     * Eviction policy decides which objects are removed once storing a new
+     * object would take the cache past its max size. Changing the policy
+     * rebuilds the policy of every segment from the objects currently stored.
+     *
+     * <b>Warning! this function locks the whole cache while the objects are
+     * moved to the new policy. It is only recommended to use this function
+     * before objects are stored!</b>
+     *
+     * @param policy the eviction policy to be used.
+     */
+    public static synchronized void setEvictionPolicy(EvictionPolicy policy) {
+        isNull(policy);
+        for (Segment segment : segments) {
+            segment.lock();
+        }
+        try {
+            evictionPolicy = policy;
+            for (Segment segment : segments) {
+                segment.policy = Policy.create(policy, segmentCapacity());
+            }
+            for (CachedObject object : cacheEntries.values()) {
+                object.queue = null;
+                segmentFor(object.key).policy.add(object);
+            }
+        } finally {
+            for (Segment segment : segments) {
+                segment.unlock();
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of the statistics of the cache. Counters are summed
+     * up when the snapshot is taken, which is cheap enough to poll every few
+     * seconds but should not be done for every read.
+     *
+     * @return the current statistics
+     */
+    public static CacheStats getStats() {
+        return stats.snapshot(usedSpace.sum(), cacheEntries.size());
+    }
+
+    /**
+     * Sets every counter and latency of the statistics back to zero.
+     */
+    public static void resetStats() {
+        stats.reset();
+    }
+
+    /**
+     * Enables or disables recording of the statistics. Disabling recording
+     * removes all of its cost from reads and stores, the counters keep the
+     * values recorded so far.
+     *
+     * @param record true to record statistics
+     */
+    public static void setRecordStats(boolean record) {
+        recordStats = record;
+    }
+
+    /**
+     * Sets the fraction of its lifetime after which an object stored by
+     * {@link #getOrLoad(String, Class, java.util.concurrent.Callable, java.util.concurrent.TimeUnit, Long) getOrLoad}
+     * is refreshed. The first read past that point is still served the current
+     * object but also starts a reload on the refresh executor, which replaces the
+     * object once it is done. A popular object is therefore reloaded before it
+     * expires instead of every reader waiting on a load once it has expired.
+     *
+     * Note the fraction is applied when an object is loaded, objects already
+     * stored keep the fraction they were loaded with.
+     *
+     * @param fraction the fraction of the lifetime between zero and one, zero to disable
+     */
+    public static void setRefreshAhead(double fraction) {
+        if (!(fraction >= 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("Refresh ahead must be between 0 and 1!");
+        }
+        refreshAhead = fraction;
+    }
+
+    /**
+     * Loads every object the cache is asked for but does not hold with the
+     * loader given, see {@link ReadThroughLoader}. Loaded objects are weighed and
+     * stored with the default lifetime, the loader also refreshes them when
+     * {@link #setRefreshAhead(double) refresh ahead} is used. Keys asked for through
+     * {@link #getOrLoad(String, Class, java.util.concurrent.Callable) getOrLoad} are
+     * still loaded by the loader given there.
+     *
+     * @param loader the loader objects are loaded by
+     */
+    public static void setReadThrough(ReadThroughLoader loader) {
+        isNull(loader);
+        readThrough = loader;
+    }
+
+    /**
+     * Turns read through off, a miss is returned as null again.
+     */
+    public static void disableReadThrough() {
+        readThrough = null;
+    }
+
+    /**
+     * Sets the executor background refreshes are run on. By default a pool
+     * of daemon threads is used.
+     *
+     * @param executor the executor to run refreshes on
+     */
+    public static void setRefreshExecutor(Executor executor) {
+        isNull(executor);
+        refreshExecutor = executor;
+    }
+
+    /**
+     * Avoid redundant code by utilizing default update time. This will
+     * be substituted in storeCacheObject functions when left empty.
+     * When retrieving the default it will be in Milliseconds and can be
+     * converted back using the {@link java.util.concurrent.TimeUnit} class.
+     *
+     * @param unit the time unit time is left in
+     * @param time the amount of time in the specified unit.
+     */
+    public static void setDefaultUpdateTime(TimeUnit unit, long time) {
+        isNull(unit);
+        defaultUpdateTime = unit.toMillis(time);
+    }
+
+    /**
+     * Avoid redundant code by utilizing default lifetime. This will
+     * be substituted in thestoreCacheObject functions when left empty.
+     * When retrieving the default it will be in Milliseconds and can be
+     * converted back using the {@link java.util.concurrent.TimeUnit} class.
+     *
+     * @param unit the time unit time is left in
+     * @param time the amount of time in the specified unit.
+     */
+    public static void setDefaultLifetime(TimeUnit unit, long time) {
+        isNull(unit);
+        defaultLifetime = unit.toMillis(time);
+    }
+
+    /**
+     * Update time is optional and is not required to be used. Update Time can
+     * not be null but will be ignored in the code and can be re-enabled at any
+     * time.
+     *
+     * Note: When re-enabling the Update Time all objects will be effected.
+     * For example if you add an object before update time is re-enabled the update
+     * time inserted will be used.
+     *
+     * Update times are scheduled apart from lifetimes whether or not they are
+     * allowed, so switching update time on or off takes constant time no matter
+     * how many objects are stored. Objects that went unused while update time was
+     * disabled are removed by the next sweep once it is enabled again.
+     *
+     * @param allow if update time is to be used.
+     */
+    public static void setAllowUpdateTime(boolean allow) {
+        allowUpdateTime = allow;
+    }
+
+    /**
+     * Expiry mode decides which thread sweeps the cache for outdated objects.
+     * In {@link ExpiryMode#DAEMON daemon} mode a single daemon thread is started
+     * which sweeps once every sweep interval. In {@link ExpiryMode#CALLER caller}
+     * mode no thread is started and the thread storing or reading an object runs
+     * the sweep once the interval has passed.
+     *
+     * @param mode the thread outdated objects are removed on.
+     */
+    public static synchronized void setExpiryMode(ExpiryMode mode) {
+        isNull(mode);
+        expiryMode = mode;
+        if (sweepTask != null) {
+            sweepTask.cancel(false);
+            sweepTask = null;
+        }
+        if (mode != ExpiryMode.DAEMON) {
+            return;
+        }
+        if (sweeper == null) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "EasyCache-Sweeper");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        sweepTask = sweeper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                while (!sweep() && expiryMode == ExpiryMode.DAEMON) {
+                    Thread.yield();
+                }
+            }
+        }, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets the amount of time between two sweeps for outdated objects. A
+     * sweep that runs out of budget is continued right away in daemon mode,
+     * the interval is only waited once a sweep has caught up.
+     *
+     * @param unit the time unit interval is left in
+     * @param interval the amount of time in the specified unit.
+     */
+    public static synchronized void setSweepInterval(TimeUnit unit, long interval) {
+        isNull(unit);
+        sweepInterval = Math.max(1, unit.toMillis(interval));
+        setExpiryMode(expiryMode);
+    }
+
+    /**
+     * Bounds the work done by a single sweep so one sweep over a huge batch
+     * of expired objects never stalls the threads using the cache. The sweep
+     * stops once either budget is used and the next sweep continues where it
+     * left off. Use zero for either budget to leave it unbounded.
+     *
+     * @param entries the most objects visited by a single sweep.
+     * @param unit the time unit time is left in
+     * @param time the most time a single sweep may run for.
+     */
+    public static synchronized void setSweepBudget(int entries, TimeUnit unit, long time) {
+        isNull(unit);
+        sweepEntryBudget = entries;
+        sweepTimeBudget = unit.toNanos(time);
+    }
+
+    /**
+     * Objects in cache are scheduled in a {@link TimingWheel} by whichever
+     * time is closer to their deadline. This allows for a faster lifetime check.
+     * The process works as follows: The wheel is advanced to the current time
+     * and only the buckets whose time has passed are visited. Every object found
+     * is checked again as its update time may have moved since it was scheduled,
+     * objects that are still alive are scheduled again while outdated objects are
+     * removed from the cache. Outdated objects are removed under the lock of
+     * their segment by {@link #removeEntry(Segment, String, CachedObject, RemovalCause)},
+     * so an object stored again under the same key in the meantime is kept.
+     *
+     * Unlike the sweeps run by the cache this check is not bounded by the sweep
+     * budget and only returns once every outdated object has been removed.
+     */
+    protected static void checkLifetime() {
+        List<CachedObject> expired = new ArrayList<CachedObject>();
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                long now = System.currentTimeMillis();
+                segment.reads.drain(segment.policy);
+                segment.expiryWheel.advance(now, expired, 0);
+                if (allowUpdateTime) {
+                    segment.idleWheel.advance(now, expired, 0);
+                }
+                for (CachedObject object : expired) {
+                    removeEntry(segment, object.key, object, expiryCause(object));
+                }
+            } finally {
+                segment.unlock();
+            }
+            expired.clear();
+        }
+    }
+
+    /**
+     * Runs a sweep on the calling thread when the cache is in caller mode
+     * and the sweep interval has passed since the last sweep. Only the
+     * caller that moves the time of the last sweep forward runs it, the
+     * others carry on without waiting.
+     *
+     * @param now the current time in milliseconds
+     */
+    private static void sweepIfDue(long now) {
+        long last = lastSweep.get();
+        if (expiryMode == ExpiryMode.CALLER && now - last >= sweepInterval && lastSweep.compareAndSet(last, now)) {
+            sweep();
+        }
+    }
+
+    /**
+     * Sweep removes outdated objects in small chunks, one segment at a time.
+     * A segment lock is only held for a single chunk so the threads using the
+     * cache are only held up for a chunk at a time. The sweep stops once every
+     * segment has caught up or once its entry or time budget is used, the next
+     * sweep starts with the segment this one stopped at. Only the objects
+     * actually visited are charged to the entry budget, and a pass counts as
+     * caught up once the cursor has wrapped around, even when it took several
+     * sweeps. The time taken is recorded for the sweep statistics.
+     *
+     * @return true if every segment has caught up since the pass began.
+     */
+    private static boolean sweep() {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        List<CachedObject> expired = new ArrayList<CachedObject>();
+        int remaining = sweepEntryBudget;
+        int cursor = sweepCursor;
+        int caughtUp = sweepCaughtUp;
+        boolean outOfBudget = false;
+        while (caughtUp < segments.length && !outOfBudget) {
+            Segment segment = segments[cursor];
+            boolean done = false;
+            while (!done) {
+                int chunk = remaining > 0 ? Math.min(remaining, SWEEP_CHUNK) : SWEEP_CHUNK;
+                int visited;
+                segment.lock();
+                try {
+                    segment.reads.drain(segment.policy);
+                    done = segment.expiryWheel.advance(now, expired, chunk);
+                    visited = segment.expiryWheel.visited();
+                    if (done && allowUpdateTime) {
+                        // A limit of zero is unbounded, so a used up chunk leaves the idle wheel for the next one.
+                        done = false;
+                        if (visited < chunk) {
+                            done = segment.idleWheel.advance(now, expired, chunk - visited);
+                            visited += segment.idleWheel.visited();
+                        }
+                    }
+                    for (CachedObject object : expired) {
+                        removeEntry(segment, object.key, object, expiryCause(object));
+                    }
+                } finally {
+                    segment.unlock();
+                }
+                expired.clear();
+                if ((remaining > 0 && (remaining -= visited) <= 0)
+                        || (sweepTimeBudget > 0 && System.nanoTime() - start >= sweepTimeBudget)) {
+                    outOfBudget = true;
+                    break;
+                }
+            }
+            if (done) {
+                cursor = (cursor + 1) & (segments.length - 1);
+                caughtUp++;
+            }
+        }
+        boolean finished = caughtUp >= segments.length;
+        long duration = System.nanoTime() - start;
+        synchronized (EasyCache.class) {
+            sweepCursor = cursor;
+            sweepCaughtUp = finished ? 0 : caughtUp;
+            lastSweep.set(now);
+            lastSweepDuration = duration;
+            maxSweepDuration = Math.max(maxSweepDuration, duration);
+            sweepCount++;
+        }
+        return finished;
+    }
+
+    /**
+     * Schedule places an object into the expiry wheels of its segment, once
+     * under its lifetime and once under the time it must be used by. Objects
+     * with a negative lifetime never expire and are not scheduled. Both wheels
+     * are kept up to date whether or not update time is allowed, so allowing
+     * it never has to visit the stored objects.
+     * Must only be called while holding the segment lock.
+     *
+     * @param segment the segment the object belongs to
+     * @param object the cached object to be scheduled
+     */
+    private static void schedule(Segment segment, CachedObject object) {
+        if (object.getLifeTime() <= -1) {
+            return;
+        }
+        segment.expiryWheel.schedule(object);
+        segment.idleWheel.schedule(object);
+    }
+
+    /**
+     * Removes the object stored under a key and frees its space. When an
+     * expected object is given the key is only removed while it still maps
+     * to that object, this keeps a newer object stored under the same key
+     * from being removed by an outdated check. Must only be called while
+     * holding the segment lock.
+     *
+     * @param segment the segment the key belongs to
+     * @param key the key to be removed
+     * @param expected the object expected under the key or null for any object
+     * @param cause the cause the removal is counted under
+     * @return true if an object was removed
+     */
+    private static boolean removeEntry(Segment segment, String key, CachedObject expected, RemovalCause cause) {
+        CachedObject cachedObject = cacheEntries.get(key);
+        if (cachedObject == null || (expected != null && cachedObject != expected)) {
+            return false;
+        }
+        cacheEntries.remove(key);
+        segment.weight -= cachedObject.weight;
+        segment.count--;
+        usedSpace.add(-cachedObject.weight);
+        segment.policy.remove(cachedObject);
+        segment.expiryWheel.deschedule(cachedObject);
+        segment.idleWheel.deschedule(cachedObject);
+        if (cachedObject.getValue() instanceof SlabAllocator.Chunk) {
+            segment.slabs.free((SlabAllocator.Chunk) cachedObject.getValue());
+            chargeSlack(segment);
+        }
+        if (recordStats) {
+            stats.recordRemoval(cause);
+        }
+        WriteBehind mirror = writeBehind;
+        if (mirror != null && (cause == RemovalCause.LIFETIME || cause == RemovalCause.IDLE)) {
+            mirror.deleted(key);
+        }
+        return true;
+    }
+
+    /**
+     * Charges the free space of the partly used slabs of a segment to its
+     * weight, so the direct memory held off heap counts towards the max size
+     * and not only the chunks in use. Must only be called while holding the
+     * segment lock.
+     *
+     * @param segment the segment whose slabs changed
+     */
+    private static void chargeSlack(Segment segment) {
+        long slack = segment.slabs.slack();
+        long change = slack - segment.slack;
+        segment.slack = slack;
+        segment.weight += change;
+        usedSpace.add(change);
+    }
+
+    /**
+     * Tells if an outdated object went unused for too long or outlived its
+     * lifetime, whichever deadline came first.
+     *
+     * @param object the outdated object
+     * @return the cause of its removal
+     */
+    private static RemovalCause expiryCause(CachedObject object) {
+        return allowUpdateTime && object.getUpdateTimeExact() < object.getLifeTime()
+                ? RemovalCause.IDLE : RemovalCause.LIFETIME;
+    }
+
+    /**
+     * Tells if an object has outlived its lifetime or, while update time is
+     * allowed, went unused for longer than its update time. Objects with a
+     * negative lifetime never expire.
+     *
+     * @param object the object to be checked
+     * @param now the current time in milliseconds
+     * @return true if the object is outdated
+     */
+    private static boolean isExpired(CachedObject object, long now) {
+        long lifeTime = object.getLifeTime();
+        return lifeTime > -1 && (lifeTime <= now || (allowUpdateTime && object.getUpdateTimeExact() <= now));
+    }
+
+    /**
+     * Evicts the objects chosen by the eviction policy until the segment fits
+     * within its share of the max size. The last object of a segment is never
+     * evicted here so an object larger than the share can still be stored on
+     * its own, {@link #trim(Segment)} keeps the whole cache within the max size.
+     * Must only be called while holding the segment lock.
+     *
+     * @param segment the segment to be evicted from
+     */
+    private static void evict(Segment segment) {
+        long capacity = segmentCapacity();
+        DiskTier tier = diskTier;
+        if (segment.weight > capacity) {
+            segment.reads.drain(segment.policy);
+        }
+        while (segment.weight > capacity && segment.count > 1) {
+            CachedObject victim = segment.policy.victim();
+            if (tier != null) {
+                queueSpill(segment, tier, victim);
+            }
+            removeEntry(segment, victim.key, victim, RemovalCause.SIZE);
+        }
+    }
+
+    /**
+     * Evicts across segments while the whole cache is past its max size, which
+     * happens once segments hold objects larger than their share. Segments past
+     * their share are evicted from first, then any other segment and only then
+     * the segment stored into, so a large object pushes out others rather than
+     * itself. A single segment lock is held at a time, so it must be called once
+     * the lock of the segment stored into has been released.
+     *
+     * @param origin the segment that was stored into, or null for none
+     */
+    private static void trim(Segment origin) {
+        if (usedSpace.sum() <= maxSize) {
+            return;
+        }
+        long capacity = segmentCapacity();
+        for (Segment segment : segments) {
+            if (segment != origin && segment.weight > capacity && !trim(segment, capacity)) {
+                return;
+            }
+        }
+        for (Segment segment : segments) {
+            if (segment != origin && !trim(segment, 0)) {
+                return;
+            }
+        }
+        if (origin != null) {
+            trim(origin, 0);
+        }
+    }
+
+    /**
+     * Evicts the objects chosen by the eviction policy of a segment while the
+     * whole cache is past its max size and the segment is past the weight given.
+     *
+     * @param segment the segment to be evicted from
+     * @param limit the weight the segment is evicted down to at most
+     * @return true if the cache is still past its max size
+     */
+    private static boolean trim(Segment segment, long limit) {
+        DiskTier tier = diskTier;
+        segment.lock();
+        try {
+            segment.reads.drain(segment.policy);
+            while (segment.weight > limit && segment.count > 0 && usedSpace.sum() > maxSize) {
+                CachedObject victim = segment.policy.victim();
+                if (tier != null) {
+                    queueSpill(segment, tier, victim);
+                }
+                removeEntry(segment, victim.key, victim, RemovalCause.SIZE);
+            }
+        } finally {
+            unlockAndSpill(segment);
+        }
+        return usedSpace.sum() > maxSize;
+    }
+
+    /**
+     * Queues an evicted object in its encoded form to be written to the disk
+     * tier once the segment lock is released, see {@link #unlockAndSpill(Segment)}.
+     * Objects stored by reference are encoded with the current codec, objects that
+     * cannot be encoded or have already expired are simply dropped.
+     * Must only be called while holding the segment lock.
+     *
+     * @param segment the segment the object belongs to
+     * @param tier the disk tier to be written to
+     * @param victim the object being evicted
+     */
+    private static void queueSpill(Segment segment, DiskTier tier, CachedObject victim) {
+        if (isExpired(victim, System.currentTimeMillis())) {
+            return;
+        }
+        Object value = victim.getValue();
+        Codec valueCodec = victim.codec;
+        byte[] bytes;
+        if (value instanceof SlabAllocator.Chunk) {
+            bytes = segment.slabs.read((SlabAllocator.Chunk) value);
+        } else if (valueCodec != null) {
+            bytes = (byte[]) value;
+        } else {
+            valueCodec = codec;
+            try {
+                bytes = encode(valueCodec, value);
+            } catch (CodecException exception) {
+                return;
+            }
+        }
+        Segment.Spill spill = new Segment.Spill(tier, victim.key, bytes, valueCodec,
+                victim.getLifeTime(), victim.getUpdateTime());
+        segment.spills.add(spill);
+        segment.spilling.put(victim.key, spill);
+    }
+
+    /**
+     * Releases a segment lock that may have evicted objects to the disk tier
+     * and writes them once the lock is no longer held, so the disk tier, which
+     * every segment shares, never holds up a segment. The segment is locked once
+     * more afterwards to drop the records of keys that were stored, deleted or
+     * read back in the meantime.
+     *
+     * @param segment the segment to be unlocked
+     */
+    private static void unlockAndSpill(Segment segment) {
+        List<Segment.Spill> spills = null;
+        if (!segment.spills.isEmpty() && segment.getHoldCount() == 1) {
+            spills = new ArrayList<Segment.Spill>(segment.spills);
+            segment.spills.clear();
+        }
+        segment.unlock();
+        if (spills == null) {
+            return;
+        }
+        DiskTier.Record[] records = new DiskTier.Record[spills.size()];
+        for (int i = 0; i < records.length; i++) {
+            Segment.Spill spill = spills.get(i);
+            records[i] = spill.tier.put(spill.key, spill.value, spill.codec, spill.lifeTime, spill.updateTime);
+        }
+        segment.lock();
+        try {
+            for (int i = 0; i < records.length; i++) {
+                Segment.Spill spill = spills.get(i);
+                if (segment.spilling.get(spill.key) == spill) {
+                    segment.spilling.remove(spill.key);
+                } else if (records[i] != null) {
+                    spill.tier.remove(spill.key, records[i]);
+                }
+            }
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * Records a read in the read buffer of the segment, the object and its
+     * update time are left untouched until the buffer is drained. Once the ring
+     * of the reading thread is full the buffer is drained if the segment lock is
+     * free. Reads never wait for the lock, when it is busy the policy simply does
+     * not hear of the read, only the update time of the object is moved forward
+     * so update time stays accurate.
+     *
+     * @param key the key that was read
+     * @param object the object that was read
+     * @param now the current time in milliseconds
+     */
+    private static void recordAccess(String key, CachedObject object, long now) {
+        Segment segment = segmentFor(key);
+        if (segment.reads.offer(object, now)) {
+            return;
+        }
+        if (!segment.tryLock()) {
+            object.update(now);
+            return;
+        }
+        try {
+            segment.reads.drain(segment.policy);
+            object.update(now);
+            if (object.queue != null) {
+                segment.policy.access(object);
+            }
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * Gets the share of the max size every segment may hold.
+     *
+     * @return the capacity of a segment in bytes
+     */
+    private static long segmentCapacity() {
+        return maxSize / segments.length;
+    }
+
+    /**
+     * Encodes an object into a pooled buffer and copies out only the bytes
+     * written, so the buffer is reused by the next store on the same thread.
+     *
+     * @param codec the codec the object is encoded with
+     * @param value the object to be encoded
+     * @return the encoded bytes
+     */
+    private static byte[] encode(Codec codec, Object value) {
+        ByteOutput output = ByteOutput.acquire();
+        try {
+            codec.encode(value, output);
+            return output.toByteArray();
+        } finally {
+            output.release();
+        }
+    }
+
+    /**
+     * Creates an empty list for every segment, used to group the work of
+     * a batch so every segment is only locked once.
+     *
+     * @param <E> the type of work grouped
+     * @return an array holding a null group for every segment
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E> List<E>[] newGroups() {
+        return new List[segments.length];
+    }
+
+    private static <E> void group(List<E>[] groups, int index, E element) {
+        if (groups[index] == null) {
+            groups[index] = new ArrayList<E>();
+        }
+        groups[index].add(element);
+    }
+
+    /**
+     * Inserts grouped objects, locking every segment once for its group.
+     *
+     * @param groups the prepared objects grouped by segment
+     * @param mirror the write behind the objects are marked dirty with, or null for none
+     * @return the amount of objects inserted and not refused by the eviction policy
+     */
+    private static int insertAll(List<Pending>[] groups, WriteBehind mirror) {
+        int inserted = 0;
+        for (int i = 0; i < segments.length; i++) {
+            if (groups[i] == null) {
+                continue;
+            }
+            Segment segment = segments[i];
+            segment.lock();
+            try {
+                for (Pending pending : groups[i]) {
+                    if (pending.insert(segment)) {
+                        inserted++;
+                    }
+                    if (mirror != null) {
+                        mirror.written(pending.key, pending.value, pending.codec, pending.lifeTime, pending.updateTime);
+                    }
+                }
+            } finally {
+                unlockAndSpill(segment);
+            }
+        }
+        trim(null);
+        return inserted;
+    }
+
+    /**
+     * Finds the segment guarding a key. The hash is spread so keys whose
+     * hashes only differ in the upper bits still land in different segments.
+     *
+     * @param key the key to find the segment for
+     * @return the segment of the key
+     */
+    private static Segment segmentFor(String key) {
+        return segments[segmentIndex(key)];
+    }
+
+    /**
+     * Finds the index of the segment guarding a key.
+     *
+     * @param key the key to find the segment for
+     * @return the index of the segment within the segments
+     */
+    private static int segmentIndex(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return hash & (segments.length - 1);
     }
 
     /**
@@ -0,0 +1,27 @@
+package net.projectbarks.easycache;
+
+/**
+ * Eviction policy decides which objects are removed from the {@link EasyCache}
+ * once storing a new object would take the cache past its max size. Every
+ * segment of the cache evicts on its own so the max size is split evenly
+ * between them. Please refer to the documentation of each policy for how
+ * the least valuable object is chosen.
+ */
+public enum EvictionPolicy {
+
+    /**
+     * Least recently used evicts the object that has gone the longest
+     * without being stored or read. Cheap and well suited for workloads
+     * where recent objects are the most likely to be used again.
+     */
+    LRU,
+    /**
+     * Window TinyLFU keeps a small LRU window for new objects and a large
+     * main space for objects that have proven themselves. An object leaving
+     * the window is only admitted into the main space when it has been used
+     * more often than the object it would replace, the frequencies are
+     * estimated by a compact sketch that slowly forgets old history. This
+     * keeps popular objects cached through bursts and scans of one-off keys.
+     */
+    W_TINY_LFU
+}
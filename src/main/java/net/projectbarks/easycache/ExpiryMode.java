@@ -0,0 +1,21 @@
+package net.projectbarks.easycache;
+
+/**
+ * Expiry mode decides which thread removes outdated objects from the
+ * {@link EasyCache}. Either way the work is split into sweeps that are
+ * bounded by the budget set in {@link EasyCache#setSweepBudget(int, java.util.concurrent.TimeUnit, long)}
+ * so a large batch of expired objects never holds up the cache for long.
+ */
+public enum ExpiryMode {
+
+    /**
+     * Sweeps are run by a single daemon thread owned by the cache once
+     * every sweep interval.
+     */
+    DAEMON,
+    /**
+     * Sweeps are run on the thread storing or reading an object once the
+     * sweep interval has passed. No thread is started by the cache.
+     */
+    CALLER
+}
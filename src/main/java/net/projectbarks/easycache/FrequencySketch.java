@@ -0,0 +1,112 @@
+package net.projectbarks.easycache;
+
+/**
+ * Frequency sketch estimates how often a key has been used recently with a
+ * count-min sketch of 4-bit counters. Sixteen counters are packed into every
+ * long and each key is counted in four of them, the estimate is the smallest
+ * of the four. Once the amount of increments reaches ten times the capacity
+ * every counter is halved so old history fades and the counters never overflow.
+ *
+ * Note the sketch is not thread safe and is guarded by the owning segment.
+ */
+class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private long[] table;
+    private int sampleSize;
+    private int size;
+
+    /**
+     * Grows the sketch to fit the amount of keys given. The table only ever
+     * doubles, every word is copied into both halves of the new table so each
+     * key keeps the counters it had and no history is lost while the cache fills.
+     *
+     * @param capacity the amount of keys expected to be tracked
+     */
+    void ensureCapacity(int capacity) {
+        if (table == null) {
+            table = new long[16];
+            sampleSize = 10 * table.length;
+        }
+        int needed = Math.min(capacity, 1 << 29);
+        while (table.length < needed) {
+            long[] grown = new long[table.length << 1];
+            System.arraycopy(table, 0, grown, 0, table.length);
+            System.arraycopy(table, 0, grown, table.length, table.length);
+            table = grown;
+            sampleSize = 10 * table.length;
+        }
+    }
+
+    /**
+     * Estimates how often the key has been used.
+     *
+     * @param hashCode the hash of the key
+     * @return the estimated frequency from 0 to 15
+     */
+    int frequency(int hashCode) {
+        int hash = spread(hashCode);
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Counts a use of the key, halving every counter once the sample
+     * size has been reached.
+     *
+     * @param hashCode the hash of the key
+     */
+    void increment(int hashCode) {
+        int hash = spread(hashCode);
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) == mask) {
+            return false;
+        }
+        table[index] += 1L << offset;
+        return true;
+    }
+
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int hash, int depth) {
+        long index = (hash + SEEDS[depth]) * SEEDS[depth];
+        index += index >>> 32;
+        return ((int) index) & (table.length - 1);
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
@@ -0,0 +1,123 @@
+package net.projectbarks.easycache;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.Writer;
+
+/**
+ * Json weigher is the default {@link Weigher} of the {@link EasyCache} and
+ * measures an object by the amount of UTF-8 bytes of its json form. Strings,
+ * byte arrays, numbers and booleans are measured directly, strings counting
+ * the escapes Gson writes for quotes, backslashes, control characters and the
+ * html sensitive characters. Any other object is
+ * written by a single shared Gson instance into a writer that only counts bytes,
+ * so the json is never built as a string nor copied into a byte array.
+ */
+public class JsonWeigher implements Weigher {
+
+    private static final Gson GSON = new GsonBuilder().serializeNulls().create();
+
+    @Override
+    public int weigh(String key, Object value) {
+        if (value instanceof CharSequence) {
+            return jsonLength((CharSequence) value) + 2;
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString().length();
+        }
+        CountingWriter writer = new CountingWriter();
+        GSON.toJson(value, writer);
+        return writer.bytes;
+    }
+
+    /**
+     * Counts the amount of bytes a sequence of characters takes up within
+     * a json string written by Gson, encoded as UTF-8 and without its quotes.
+     *
+     * @param sequence the characters to be measured
+     * @return the amount of bytes
+     */
+    private static int jsonLength(CharSequence sequence) {
+        int bytes = 0;
+        for (int i = 0; i < sequence.length(); i++) {
+            char c = sequence.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                case '\t':
+                case '\b':
+                case '\n':
+                case '\r':
+                case '\f':
+                    bytes += 2;
+                    break;
+                case '<':
+                case '>':
+                case '&':
+                case '=':
+                case '\'':
+                case '\u2028':
+                case '\u2029':
+                    bytes += 6;
+                    break;
+                default:
+                    bytes += c < 0x20 ? 6 : utf8Length(c);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Counts the bytes of a single character, a surrogate pair counts two
+     * bytes for each half which adds up to the four bytes of the pair.
+     */
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        } else if (c < 0x800) {
+            return 2;
+        } else if (Character.isSurrogate(c)) {
+            return 2;
+        }
+        return 3;
+    }
+
+    /**
+     * Counting writer throws away everything written to it and only
+     * keeps the amount of UTF-8 bytes that would have been written.
+     */
+    private static final class CountingWriter extends Writer {
+        private int bytes;
+
+        @Override
+        public void write(int c) {
+            bytes += utf8Length((char) c);
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                bytes += utf8Length(buffer[i]);
+            }
+        }
+
+        @Override
+        public void write(String string, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                bytes += utf8Length(string.charAt(i));
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
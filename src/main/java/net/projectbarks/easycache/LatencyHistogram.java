@@ -0,0 +1,146 @@
+package net.projectbarks.easycache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram is a snapshot of the latencies recorded by the {@link EasyCache}
+ * for a single kind of operation. Latencies are counted in buckets laid out like an
+ * HdrHistogram, every power of two is split into sixteen buckets of equal width so
+ * a percentile is never more than about six percent above the real latency while
+ * the whole range from a nanosecond to half an hour takes only a few hundred buckets.
+ */
+public final class LatencyHistogram {
+
+    /** The number of bits used to split a power of two into buckets. */
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /** The highest power of two counted, longer latencies fall into the last bucket. */
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+    private final long[] counts;
+    private final long count;
+
+    LatencyHistogram(long[] counts) {
+        this.counts = counts;
+        long total = 0;
+        for (long bucket : counts) {
+            total += bucket;
+        }
+        this.count = total;
+    }
+
+    /**
+     * Gets the amount of latencies recorded.
+     *
+     * @return the amount of latencies
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the latency that the percentage of recorded latencies given
+     * were at or below. The upper bound of the bucket the percentile falls
+     * in is returned.
+     *
+     * @param percentile the percentile between 0 and 100
+     * @return the latency in nanoseconds, zero when nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+
+    /**
+     * Gets the average of the recorded latencies, measured with the upper
+     * bound of their buckets.
+     *
+     * @return the mean latency in nanoseconds
+     */
+    public double getMean() {
+        if (count == 0) {
+            return 0;
+        }
+        double total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += (double) counts[i] * upperBound(i);
+        }
+        return total / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, p50=%dns, p99=%dns, p99.9=%dns, max=%dns",
+                count, getPercentile(50), getPercentile(99), getPercentile(99.9), getPercentile(100));
+    }
+
+    /**
+     * Finds the bucket a latency is counted in.
+     *
+     * @param nanos the latency in nanoseconds
+     * @return the index of the bucket
+     */
+    static int bucketFor(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return nanos < 0 ? 0 : (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Recorder counts latencies into the buckets of a histogram. Every bucket
+     * is a {@link LongAdder} so threads recording at once do not contend.
+     */
+    static final class Recorder {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        Recorder() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            buckets[bucketFor(nanos)].increment();
+        }
+
+        LatencyHistogram snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return new LatencyHistogram(counts);
+        }
+
+        void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+        }
+    }
+}
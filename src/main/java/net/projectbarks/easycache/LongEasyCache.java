@@ -0,0 +1,471 @@
+package net.projectbarks.easycache;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Long easy cache is a variant of the {@link EasyCache} for objects stored under
+ * numeric ids. Keys are kept as primitive longs in an open addressing table and
+ * the deadlines of every object are kept in parallel primitive arrays, so neither
+ * a key object, a {@link CachedObject} nor a map entry is created per object. Reads
+ * and stores do not allocate at all, only the stored objects themselves live on
+ * the heap.
+ *
+ * Reads do not lock. A read looks at the parallel arrays optimistically and
+ * only keeps what it saw when no store changed the table meanwhile, otherwise
+ * it reads again under the lock of the table. A read only takes the lock to
+ * remove an outdated object, or to record its use when the clock has passed the
+ * object or its update deadline has fallen behind by more than a sixty fourth
+ * of its update time, so an object read often is read without locking.
+ *
+ * Objects expire like they do in the {@link EasyCache}, once their lifetime has
+ * passed or, while update time is allowed, once they went unused for longer than
+ * their update time. Outdated objects are removed when they are read, when their
+ * slot is needed by a new object or by {@link #cleanUp()}.
+ *
+ * Note eviction differs from the {@link EasyCache}. The cache is bounded by the
+ * amount of objects given when it is created rather than by a max size in bytes,
+ * objects are never weighed and there is no codec, objects are always stored by
+ * reference. The max entries are split evenly over the tables like the max size
+ * of the {@link EasyCache} is split over its segments. Once a table is full an
+ * object is evicted by a clock that sweeps over the table, which approximates
+ * least recently used eviction. The {@link EvictionPolicy} of the {@link EasyCache}
+ * does not apply.
+ */
+public class LongEasyCache {
+
+    /** The most tables are filled to, leaving room for short probe sequences. */
+    private static final float LOAD_FACTOR = 0.75f;
+    /** Reads record their use once the update deadline fell behind by this share of the update time. */
+    private static final int REFRESH_SHIFT = 6;
+
+    private final Table[] tables;
+    /**
+     * The most objects the cache holds before objects are evicted.
+     *
+     * @return the max amount of objects
+     */
+    @Getter private final int maxEntries;
+    /**
+     * The lifetime used when an object is stored without one, see
+     * {@link EasyCache#getDefaultLifetime()}.
+     *
+     * @return time in milliseconds
+     */
+    @Getter private volatile long defaultLifetime;
+    /**
+     * The update time used when an object is stored without one, see
+     * {@link EasyCache#getDefaultUpdateTime()}.
+     *
+     * @return time in milliseconds
+     */
+    @Getter private volatile long defaultUpdateTime;
+    /**
+     * If objects are removed once they went unused for longer than their
+     * update time. Changing it applies to every object right away.
+     *
+     * @return if update time is enabled
+     */
+    @Getter private volatile boolean allowUpdateTime;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxEntries the most objects the cache holds
+     */
+    public LongEasyCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be positive!");
+        }
+        this.maxEntries = maxEntries;
+        int count = Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 8 - 1) << 1);
+        while (count > 1 && maxEntries / count < 16) {
+            count >>= 1;
+        }
+        tables = new Table[count];
+        for (int i = 0; i < count; i++) {
+            int share = maxEntries / count + (i < maxEntries % count ? 1 : 0);
+            tables[i] = new Table(share);
+        }
+        defaultLifetime = TimeUnit.HOURS.toMillis(1);
+        defaultUpdateTime = TimeUnit.MINUTES.toMillis(5);
+    }
+
+    /**
+     * Stores an object using the default lifetime and update time.
+     *
+     * @param key the key to be used later
+     * @param value the value to be found for later
+     */
+    public void store(long key, Object value) {
+        put(key, value, defaultLifetime, defaultUpdateTime);
+    }
+
+    /**
+     * Stores an object using the default update time.
+     *
+     * @param key the key to be used later
+     * @param value the value to be found for later
+     * @param lifetimeUnit the unit in which the lifetime is measured
+     * @param lifetime set how long an object lives for, negative to live forever.
+     */
+    public void store(long key, Object value, TimeUnit lifetimeUnit, long lifetime) {
+        put(key, value, lifetimeUnit.toMillis(lifetime), defaultUpdateTime);
+    }
+
+    /**
+     * Stores an object, replacing any object stored under the same key.
+     *
+     * @param key the key to be used later
+     * @param value the value to be found for later
+     * @param lifetimeUnit the unit in which the lifetime is measured
+     * @param lifetime set how long an object lives for, negative to live forever.
+     * @param updateUnit the unit in which the update time is measured
+     * @param updateTime how long the object may go unused while update time is allowed.
+     */
+    public void store(long key, Object value, TimeUnit lifetimeUnit, long lifetime, TimeUnit updateUnit, long updateTime) {
+        put(key, value, lifetimeUnit.toMillis(lifetime), updateUnit.toMillis(updateTime));
+    }
+
+    private void put(long key, Object value, long lifetime, long updateTime) {
+        if (value == null) {
+            throw new NullPointerException("Null input!");
+        }
+        long now = System.currentTimeMillis();
+        long hash = mix(key);
+        Table table = tables[tableIndex(hash)];
+        long stamp = table.writeLock();
+        try {
+            table.put(key, hash, value, lifetime < 0 ? Long.MAX_VALUE : deadline(now, lifetime), updateTime, now, allowUpdateTime);
+        } finally {
+            table.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Finds an object stored under a key.
+     *
+     * @param key the id you used for store
+     * @param type the type you stored the object as
+     * @param <T> the return type you used in type
+     * @return the object or null if it is not stored or has expired
+     */
+    public <T> T get(long key, Class<T> type) {
+        long now = System.currentTimeMillis();
+        long hash = mix(key);
+        Object value = tables[tableIndex(hash)].read(key, hash, now, allowUpdateTime);
+        try {
+            return type.cast(value);
+        } catch (ClassCastException exception) {
+            throw new ClassCastException("Invalid type " + type.getName() + " for value!");
+        }
+    }
+
+    /**
+     * Deletes the object stored under a key.
+     *
+     * @param key the key to be deleted
+     * @return true if an object was stored under the key
+     */
+    public boolean delete(long key) {
+        long hash = mix(key);
+        Table table = tables[tableIndex(hash)];
+        long stamp = table.writeLock();
+        try {
+            int slot = table.find(key, hash);
+            if (slot < 0) {
+                return false;
+            }
+            table.removeAt(slot);
+            return true;
+        } finally {
+            table.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes every outdated object.
+     *
+     * @return the amount of objects removed
+     */
+    public int cleanUp() {
+        long now = System.currentTimeMillis();
+        boolean idle = allowUpdateTime;
+        int removed = 0;
+        for (Table table : tables) {
+            long stamp = table.writeLock();
+            try {
+                removed += table.removeExpired(now, idle);
+            } finally {
+                table.unlockWrite(stamp);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes every object.
+     */
+    public void clear() {
+        for (Table table : tables) {
+            long stamp = table.writeLock();
+            try {
+                table.clear();
+            } finally {
+                table.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of objects stored, including outdated objects that
+     * have not been removed yet.
+     *
+     * @return the amount of objects
+     */
+    public int size() {
+        int size = 0;
+        for (Table table : tables) {
+            long stamp = table.readLock();
+            try {
+                size += table.count;
+            } finally {
+                table.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Sets the lifetime used when an object is stored without one.
+     *
+     * @param unit the time unit time is left in
+     * @param time the amount of time in the specified unit.
+     */
+    public void setDefaultLifetime(TimeUnit unit, long time) {
+        defaultLifetime = unit.toMillis(time);
+    }
+
+    /**
+     * Sets the update time used when an object is stored without one.
+     *
+     * @param unit the time unit time is left in
+     * @param time the amount of time in the specified unit.
+     */
+    public void setDefaultUpdateTime(TimeUnit unit, long time) {
+        defaultUpdateTime = unit.toMillis(time);
+    }
+
+    /**
+     * Enables or disables update time. Deadlines are checked against the
+     * setting when an object is read, so no object has to be visited.
+     *
+     * @param allow true to remove objects that went unused
+     */
+    public void setAllowUpdateTime(boolean allow) {
+        allowUpdateTime = allow;
+    }
+
+    private int tableIndex(long hash) {
+        return (int) (hash >>> 32) & (tables.length - 1);
+    }
+
+    /**
+     * Adds a time to now, saturating instead of overflowing for times so
+     * large they would pass the end of time.
+     */
+    private static long deadline(long now, long time) {
+        return time > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + time;
+    }
+
+    /**
+     * Spreads the bits of a key so ids that only differ in their high bits
+     * still land in different slots.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Table is a linear probing hash table holding a share of the keys. The
+     * key, value and deadlines of an object are kept at the same index of the
+     * parallel arrays, an empty slot has no value. Removals shift the following
+     * objects back so no tombstones are ever left behind.
+     *
+     * Note the table is guarded by its own lock, which is only ever taken to
+     * write. Reads validate an optimistic stamp instead, see {@link #read}.
+     */
+    static final class Table extends StampedLock {
+        private static final long serialVersionUID = 1L;
+
+        final int capacity;
+        final long[] keys;
+        final Object[] values;
+        /** The time each object will be deleted. */
+        final long[] lifeTimes;
+        /** The milliseconds each object may go unused and the time it must be used by. */
+        final long[] updateTimes, updateDeadlines;
+        /** Set when an object is used, cleared by the clock as it passes. */
+        final boolean[] referenced;
+        final int mask;
+        int count, hand;
+
+        Table(int capacity) {
+            this.capacity = Math.max(1, capacity);
+            int slots = Integer.highestOneBit((int) (this.capacity / LOAD_FACTOR) + 1) << 1;
+            keys = new long[slots];
+            values = new Object[slots];
+            lifeTimes = new long[slots];
+            updateTimes = new long[slots];
+            updateDeadlines = new long[slots];
+            referenced = new boolean[slots];
+            mask = slots - 1;
+        }
+
+        /**
+         * Finds the slot of a key. The probes are bounded by the amount of
+         * slots, as an optimistic read may see a table being changed.
+         */
+        int find(long key, long hash) {
+            int slot = (int) hash & mask;
+            for (int probes = 0; probes <= mask && values[slot] != null; probes++, slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Reads an object without locking when the object is missing or its
+         * use is already recorded, otherwise reads it again under the lock.
+         */
+        Object read(long key, long hash, long now, boolean idle) {
+            long stamp = tryOptimisticRead();
+            if (stamp != 0) {
+                int slot = find(key, hash);
+                Object value = null;
+                boolean recorded = false;
+                if (slot >= 0) {
+                    value = values[slot];
+                    long updateTime = updateTimes[slot];
+                    recorded = referenced[slot] && !isExpired(slot, now, idle)
+                            && deadline(now, updateTime) - updateDeadlines[slot] <= updateTime >> REFRESH_SHIFT;
+                }
+                if (validate(stamp) && (slot < 0 || recorded)) {
+                    return value;
+                }
+            }
+            stamp = writeLock();
+            try {
+                return get(key, hash, now, idle);
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        Object get(long key, long hash, long now, boolean idle) {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                return null;
+            }
+            if (isExpired(slot, now, idle)) {
+                removeAt(slot);
+                return null;
+            }
+            updateDeadlines[slot] = deadline(now, updateTimes[slot]);
+            referenced[slot] = true;
+            return values[slot];
+        }
+
+        void put(long key, long hash, Object value, long lifeTime, long updateTime, long now, boolean idle) {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                if (count == capacity) {
+                    evict(now, idle);
+                }
+                slot = (int) hash & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                count++;
+            }
+            values[slot] = value;
+            lifeTimes[slot] = lifeTime;
+            updateTimes[slot] = updateTime;
+            updateDeadlines[slot] = deadline(now, updateTime);
+            referenced[slot] = false;
+        }
+
+        boolean isExpired(int slot, long now, boolean idle) {
+            return lifeTimes[slot] <= now || (idle && updateDeadlines[slot] <= now);
+        }
+
+        /**
+         * Moves the clock hand forward until it finds an object that is
+         * outdated or was not used since the hand last passed and removes it.
+         */
+        void evict(long now, boolean idle) {
+            while (true) {
+                int slot = hand;
+                hand = (hand + 1) & mask;
+                if (values[slot] == null) {
+                    continue;
+                }
+                if (referenced[slot] && !isExpired(slot, now, idle)) {
+                    referenced[slot] = false;
+                    continue;
+                }
+                removeAt(slot);
+                return;
+            }
+        }
+
+        int removeExpired(long now, boolean idle) {
+            int removed = 0;
+            for (int slot = 0; slot <= mask; slot++) {
+                while (values[slot] != null && isExpired(slot, now, idle)) {
+                    removeAt(slot);
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        /**
+         * Empties a slot and shifts every following object of the probe
+         * sequence that may not be found past the hole back into it.
+         */
+        void removeAt(int hole) {
+            count--;
+            for (int slot = (hole + 1) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+                int home = (int) mix(keys[slot]) & mask;
+                if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                    keys[hole] = keys[slot];
+                    values[hole] = values[slot];
+                    lifeTimes[hole] = lifeTimes[slot];
+                    updateTimes[hole] = updateTimes[slot];
+                    updateDeadlines[hole] = updateDeadlines[slot];
+                    referenced[hole] = referenced[slot];
+                    hole = slot;
+                }
+            }
+            values[hole] = null;
+        }
+
+        void clear() {
+            Arrays.fill(values, null);
+            count = 0;
+            hand = 0;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package net.projectbarks.easycache;
+
+/**
+ * Least recently used policy, evicts the object that has gone the
+ * longest without being stored or read.
+ */
+class LruPolicy extends Policy {
+
+    private final AccessQueue queue = new AccessQueue();
+
+    @Override
+    void setCapacity(long capacity) {
+    }
+
+    @Override
+    void add(CachedObject object) {
+        queue.addLast(object);
+    }
+
+    @Override
+    void access(CachedObject object) {
+        queue.moveToLast(object);
+    }
+
+    @Override
+    void remove(CachedObject object) {
+        queue.remove(object);
+    }
+
+    @Override
+    CachedObject victim() {
+        return queue.peekFirst();
+    }
+}
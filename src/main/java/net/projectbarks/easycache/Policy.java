@@ -0,0 +1,62 @@
+package net.projectbarks.easycache;
+
+/**
+ * Policy tracks the objects of a single {@link Segment} in the order they
+ * should be evicted for one {@link EvictionPolicy}. The segment tells the
+ * policy about every object added, read and removed and asks it for a
+ * victim while the segment is over its capacity.
+ *
+ * Note policies are not thread safe and are guarded by the owning segment.
+ */
+abstract class Policy {
+
+    /**
+     * Creates an empty policy of the type given.
+     *
+     * @param type the eviction policy to be created
+     * @param capacity the weight the segment may hold
+     * @return the new policy
+     */
+    static Policy create(EvictionPolicy type, long capacity) {
+        Policy policy = type == EvictionPolicy.LRU ? new LruPolicy() : new TinyLfuPolicy();
+        policy.setCapacity(capacity);
+        return policy;
+    }
+
+    /**
+     * Sets the weight the segment may hold, used to size the regions of
+     * policies that split their space.
+     *
+     * @param capacity the weight the segment may hold
+     */
+    abstract void setCapacity(long capacity);
+
+    /**
+     * Records a newly stored object.
+     *
+     * @param object the object that was stored
+     */
+    abstract void add(CachedObject object);
+
+    /**
+     * Records a read of an object that is tracked by this policy.
+     *
+     * @param object the object that was read
+     */
+    abstract void access(CachedObject object);
+
+    /**
+     * Stops tracking an object that has been removed from the cache.
+     *
+     * @param object the object that was removed
+     */
+    abstract void remove(CachedObject object);
+
+    /**
+     * Chooses the least valuable object, the object is not removed
+     * until {@link #remove(CachedObject)} is called.
+     *
+     * @return the object to be evicted or null if nothing is tracked
+     */
+    abstract CachedObject victim();
+}
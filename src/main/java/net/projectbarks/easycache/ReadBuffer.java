@@ -0,0 +1,134 @@
+package net.projectbarks.easycache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Read buffer collects the reads of a {@link Segment} so they can be applied to
+ * its eviction {@link Policy} and update times in batches. Readers never take the
+ * segment lock, every thread appends the object it read and the time it was read
+ * at to a small ring of its own stripe. The rings are emptied by whoever holds the
+ * segment lock, either once a ring is full or right before the segment decides
+ * which objects went unused or should be evicted.
+ *
+ * The buffer is lossy, when a ring is full or another reader of the same stripe
+ * won the slot the read is refused and it is up to the caller what to do with it.
+ * Counters of different stripes are kept on different cache lines so readers on
+ * different threads do not slow each other down.
+ *
+ * Note adding reads is thread safe, draining must only be done while holding
+ * the lock of the owning segment.
+ */
+class ReadBuffer {
+
+    /** The number of reads each ring holds, a power of two. */
+    private static final int SIZE = 16;
+    /** The distance in longs between the counters of two stripes, two cache lines. */
+    private static final int PAD = 16;
+    /** The most times an add retries after losing a slot to another reader. */
+    private static final int RETRIES = 3;
+
+    private final int mask;
+    private final AtomicReferenceArray<CachedObject> objects;
+    private final AtomicLongArray times;
+    /** The write counter of each stripe at its index and the read counter a cache line after it. */
+    private final AtomicLongArray counters;
+
+    /**
+     * Creates an empty buffer.
+     *
+     * @param stripes the number of rings, a power of two.
+     */
+    ReadBuffer(int stripes) {
+        mask = stripes - 1;
+        objects = new AtomicReferenceArray<CachedObject>(stripes * SIZE);
+        times = new AtomicLongArray(stripes * SIZE);
+        counters = new AtomicLongArray(stripes * PAD);
+    }
+
+    /**
+     * Adds a read to the ring of the calling thread.
+     *
+     * @param object the object that was read
+     * @param time the time it was read at in milliseconds
+     * @return false if the ring is full or busy and the read was not added
+     */
+    boolean offer(CachedObject object, long time) {
+        int stripe = stripe();
+        int write = stripe * PAD, read = write + PAD / 2;
+        for (int attempt = 0; attempt < RETRIES; attempt++) {
+            long tail = counters.get(write);
+            if (tail - counters.get(read) >= SIZE) {
+                return false;
+            }
+            if (counters.compareAndSet(write, tail, tail + 1)) {
+                int slot = stripe * SIZE + (int) (tail & (SIZE - 1));
+                times.lazySet(slot, time);
+                objects.lazySet(slot, object);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies every buffered read in one batch. The update time of each object
+     * is moved forward to the time it was read at and the policy is told about
+     * the objects it still tracks. Reads that are still being added are left
+     * for the next drain.
+     * Must only be called while holding the segment lock.
+     *
+     * @param policy the policy of the segment
+     */
+    void drain(Policy policy) {
+        for (int stripe = 0; stripe <= mask; stripe++) {
+            int read = stripe * PAD + PAD / 2;
+            long head = counters.get(read), tail = counters.get(stripe * PAD);
+            for (; head < tail; head++) {
+                int slot = stripe * SIZE + (int) (head & (SIZE - 1));
+                CachedObject object = objects.get(slot);
+                if (object == null) {
+                    break;
+                }
+                long time = times.get(slot);
+                // Rings are drained one after another, so reads may arrive out of order.
+                if (time + object.getUpdateTime() > object.getUpdateTimeExact()) {
+                    object.update(time);
+                }
+                if (object.queue != null) {
+                    policy.access(object);
+                }
+                objects.lazySet(slot, null);
+            }
+            counters.lazySet(read, head);
+        }
+    }
+
+    /**
+     * Drops every buffered read without applying it.
+     * Must only be called while holding the segment lock.
+     */
+    void clear() {
+        for (int stripe = 0; stripe <= mask; stripe++) {
+            int read = stripe * PAD + PAD / 2;
+            long head = counters.get(read), tail = counters.get(stripe * PAD);
+            for (; head < tail; head++) {
+                int slot = stripe * SIZE + (int) (head & (SIZE - 1));
+                if (objects.get(slot) == null) {
+                    break;
+                }
+                objects.lazySet(slot, null);
+            }
+            counters.lazySet(read, head);
+        }
+    }
+
+    /**
+     * Chooses the ring of the calling thread, a thread always uses the same
+     * ring so its reads stay in order.
+     */
+    private int stripe() {
+        long id = Thread.currentThread().getId() * 0x9e3779b97f4a7c15L;
+        return (int) (id >>> 32) & mask;
+    }
+}
@@ -0,0 +1,47 @@
+package net.projectbarks.easycache;
+
+/**
+ * Removal cause tells why an object left the {@link EasyCache}. Removals
+ * are counted by cause in the {@link CacheStats statistics} of the cache.
+ */
+public enum RemovalCause {
+
+    /**
+     * The object was deleted by a call such as
+     * {@link EasyCache#deleteEntryFromCache(String)}.
+     */
+    EXPLICIT(false),
+    /**
+     * The object was replaced by a newer object stored under the same key.
+     */
+    REPLACED(false),
+    /**
+     * The object was chosen by the eviction policy to keep the cache within
+     * its max size.
+     */
+    SIZE(true),
+    /**
+     * The object outlived its lifetime.
+     */
+    LIFETIME(true),
+    /**
+     * The object went unused for longer than its update time.
+     */
+    IDLE(true);
+
+    private final boolean eviction;
+
+    RemovalCause(boolean eviction) {
+        this.eviction = eviction;
+    }
+
+    /**
+     * Tells if the object was removed by the cache itself rather than by
+     * a user of the cache.
+     *
+     * @return true for size, lifetime and idle removals
+     */
+    public boolean isEviction() {
+        return eviction;
+    }
+}
@@ -0,0 +1,105 @@
+package net.projectbarks.easycache;
+
+import net.projectbarks.easycache.codec.Codec;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Segment guards a slice of the keys stored in the {@link EasyCache}. Every
+ * write takes the lock of the segment its key hashes to, so writes to keys of
+ * different segments never wait on each other. Reads do not take the lock at all,
+ * they are added to the {@link ReadBuffer} of the segment instead.
+ *
+ * Each segment owns the {@link TimingWheel timing wheels} and the eviction {@link Policy} of
+ * its keys, which keeps expiry and eviction consistent with the writes without
+ * a global lock. Every segment may hold an even share of the max size.
+ */
+class Segment extends ReentrantLock {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The expiry wheels the objects of this segment are scheduled in, one by
+     * their lifetime and one by the time they must be used by. The idle wheel is
+     * only advanced while update time is allowed.
+     * Must only be used while holding the segment lock.
+     */
+    final TimingWheel expiryWheel, idleWheel;
+    /**
+     * The eviction policy tracking the objects of this segment.
+     * Must only be used while holding the segment lock.
+     */
+    Policy policy;
+    /**
+     * The allocator holding the objects of this segment stored off heap.
+     * Must only be used while holding the segment lock.
+     */
+    final SlabAllocator slabs;
+    /**
+     * The reads of this segment not yet applied to its policy and update times.
+     * Reads may be added without the lock, draining requires the segment lock.
+     */
+    final ReadBuffer reads;
+    /**
+     * The total weight and amount of objects stored in this segment. The
+     * weight includes the slack of the slabs held for objects stored off heap.
+     * Must only be changed while holding the segment lock.
+     */
+    long weight;
+    int count;
+    /**
+     * The slack of the slabs of this segment last charged to its weight.
+     * Must only be changed while holding the segment lock.
+     */
+    long slack;
+    /**
+     * The objects evicted to the disk tier that are still to be written, in the
+     * order they were evicted. They are written once the segment lock has been
+     * released so the disk tier never holds up the segment.
+     * Must only be used while holding the segment lock.
+     */
+    final ArrayList<Spill> spills = new ArrayList<Spill>();
+    /**
+     * Every spill not yet written to the disk tier by its key. Storing, deleting
+     * or reading back a key cancels its spill by removing it from here.
+     * Must only be used while holding the segment lock.
+     */
+    final HashMap<String, Spill> spilling = new HashMap<String, Spill>();
+
+    /**
+     * Creates an empty segment.
+     *
+     * @param time the current time in milliseconds.
+     * @param policy the eviction policy of the segment.
+     */
+    Segment(long time, Policy policy) {
+        this.expiryWheel = new TimingWheel(time);
+        this.idleWheel = new TimingWheel(time, true);
+        this.policy = policy;
+        this.slabs = new SlabAllocator();
+        this.reads = new ReadBuffer(Math.min(8, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1)));
+    }
+
+    /**
+     * Spill is an object evicted from the segment on its way to the disk tier,
+     * already in its encoded form.
+     */
+    static final class Spill {
+        final DiskTier tier;
+        final String key;
+        final byte[] value;
+        final Codec codec;
+        final long lifeTime, updateTime;
+
+        Spill(DiskTier tier, String key, byte[] value, Codec codec, long lifeTime, long updateTime) {
+            this.tier = tier;
+            this.key = key;
+            this.value = value;
+            this.codec = codec;
+            this.lifeTime = lifeTime;
+            this.updateTime = updateTime;
+        }
+    }
+}
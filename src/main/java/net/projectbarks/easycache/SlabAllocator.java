@@ -0,0 +1,277 @@
+package net.projectbarks.easycache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Slab allocator keeps the bytes of objects stored {@link StorageMode#OFF_HEAP off heap}
+ * for the {@link EasyCache}. Memory is taken from the operating system in direct
+ * slabs of a fixed size and every slab is cut into equal chunks of one size class.
+ * An object is placed in a chunk of the smallest class it fits, so only a small
+ * {@link Chunk} handle stays on the heap no matter how large the object is.
+ *
+ * Freed chunks are linked into a free list kept inside the chunks themselves and
+ * are reused by the next object of their class. Once every chunk of a slab is
+ * free the slab is handed back to a shared pool where any class of any segment
+ * can take it, so freed space is reclaimed without ever moving live objects.
+ * Objects larger than a slab span as many whole slabs as they fill, with the
+ * rest placed in a chunk of its class, so every byte comes from pooled slabs.
+ *
+ * The allocator tracks the slab memory it holds beyond the chunks in use, see
+ * {@link #slack()}, so the owner can count partly used slabs towards its weight.
+ * Slabs are kept small so the memory a segment holds in partly used slabs, at
+ * most one slab for every class, stays well within its share of the max size.
+ *
+ * Note the allocator is not thread safe and is guarded by the owning {@link Segment},
+ * only the pool of empty slabs is shared.
+ */
+class SlabAllocator {
+
+    /** The size of every pooled slab in bytes. */
+    static final int SLAB_SIZE = 1 << 14;
+    /** The most empty slabs kept in the pool before they are left to be freed. */
+    private static final int IDLE_SLABS = 32;
+    /** The chunk sizes of each class, two classes for every power of two. */
+    private static final int[] CLASSES;
+    private static final ArrayDeque<ByteBuffer> idle = new ArrayDeque<ByteBuffer>();
+    private static final AtomicLong reserved = new AtomicLong();
+
+    static {
+        CLASSES = new int[2 * (Integer.numberOfTrailingZeros(SLAB_SIZE) - 6) + 1];
+        for (int i = 0; i < CLASSES.length; i++) {
+            int base = 64 << (i / 2);
+            CLASSES[i] = (i & 1) == 0 ? base : base + base / 2;
+        }
+    }
+
+    private final ArrayDeque<Slab>[] available;
+    /** The bytes of the slabs held and of the chunks in use. */
+    private long held, used;
+
+    SlabAllocator() {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ArrayDeque<Slab>[] classes = new ArrayDeque[CLASSES.length];
+        available = classes;
+        for (int i = 0; i < CLASSES.length; i++) {
+            available[i] = new ArrayDeque<Slab>();
+        }
+    }
+
+    /**
+     * Gets the amount of off heap bytes an object of the given length takes
+     * up, which is the size of the chunk it is placed in.
+     *
+     * @param length the length of the object in bytes
+     * @return the size of the chunk in bytes
+     */
+    static int capacityFor(int length) {
+        int spanned = length / SLAB_SIZE * SLAB_SIZE;
+        int rest = length - spanned;
+        if (spanned > 0 && rest == 0) {
+            return spanned;
+        }
+        return spanned + CLASSES[classFor(rest)];
+    }
+
+    /**
+     * Gets the amount of direct memory currently held by slabs, including
+     * the empty slabs kept in the pool.
+     *
+     * @return the reserved memory in bytes
+     */
+    static long getReserved() {
+        return reserved.get();
+    }
+
+    /**
+     * Gets the bytes of the slabs held by this allocator that no chunk in use
+     * takes up. This is the free space of partly used slabs, it drops back to
+     * zero once every chunk has been freed.
+     *
+     * @return the unused bytes of the slabs held
+     */
+    long slack() {
+        return held - used;
+    }
+
+    /**
+     * Copies the bytes into whole slabs for every full slab they fill and a
+     * free chunk of the smallest class the rest fits.
+     *
+     * @param bytes the bytes to be stored
+     * @return the chunk holding the bytes
+     */
+    Chunk store(byte[] bytes) {
+        int spans = bytes.length / SLAB_SIZE;
+        int rest = bytes.length - spans * SLAB_SIZE;
+        if (rest == 0 && spans > 0) {
+            spans--;
+            rest = SLAB_SIZE;
+        }
+        ByteBuffer[] spanned = spans == 0 ? null : new ByteBuffer[spans];
+        for (int i = 0; i < spans; i++) {
+            spanned[i] = acquire();
+            spanned[i].clear();
+            spanned[i].put(bytes, i * SLAB_SIZE, SLAB_SIZE);
+        }
+        held += (long) spans * SLAB_SIZE;
+        used += (long) spans * SLAB_SIZE;
+        int sizeClass = classFor(rest);
+        Slab slab = available[sizeClass].peekFirst();
+        if (slab == null) {
+            slab = new Slab(acquire(), CLASSES[sizeClass], sizeClass);
+            available[sizeClass].addFirst(slab);
+            held += SLAB_SIZE;
+        }
+        int offset = slab.allocate();
+        used += slab.chunkSize;
+        if (slab.isFull()) {
+            available[sizeClass].pollFirst();
+        }
+        ByteBuffer buffer = slab.buffer;
+        buffer.clear();
+        buffer.position(offset);
+        buffer.put(bytes, spans * SLAB_SIZE, rest);
+        return new Chunk(spanned, slab, offset, bytes.length);
+    }
+
+    /**
+     * Copies the bytes of a chunk back onto the heap.
+     *
+     * @param chunk the chunk to be read
+     * @return the stored bytes
+     */
+    byte[] read(Chunk chunk) {
+        byte[] bytes = new byte[chunk.length];
+        int position = 0;
+        if (chunk.spans != null) {
+            for (ByteBuffer span : chunk.spans) {
+                span.clear();
+                span.get(bytes, position, SLAB_SIZE);
+                position += SLAB_SIZE;
+            }
+        }
+        ByteBuffer buffer = chunk.slab.buffer;
+        buffer.clear();
+        buffer.position(chunk.offset);
+        buffer.get(bytes, position, bytes.length - position);
+        return bytes;
+    }
+
+    /**
+     * Frees a chunk so it can be reused. A slab left without any objects
+     * is handed back to the pool, along with every slab the chunk spans.
+     *
+     * @param chunk the chunk to be freed
+     */
+    void free(Chunk chunk) {
+        if (chunk.spans != null) {
+            for (ByteBuffer span : chunk.spans) {
+                release(span);
+            }
+            held -= (long) chunk.spans.length * SLAB_SIZE;
+            used -= (long) chunk.spans.length * SLAB_SIZE;
+        }
+        Slab slab = chunk.slab;
+        used -= slab.chunkSize;
+        boolean wasFull = slab.isFull();
+        slab.free(chunk.offset);
+        if (slab.used == 0) {
+            if (!wasFull) {
+                available[slab.sizeClass].remove(slab);
+            }
+            release(slab.buffer);
+            held -= SLAB_SIZE;
+        } else if (wasFull) {
+            available[slab.sizeClass].addLast(slab);
+        }
+    }
+
+    private static int classFor(int length) {
+        for (int i = 0; i < CLASSES.length; i++) {
+            if (length <= CLASSES[i]) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Length " + length + " is larger than a slab!");
+    }
+
+    private static synchronized ByteBuffer acquire() {
+        ByteBuffer buffer = idle.pollFirst();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(SLAB_SIZE);
+            reserved.addAndGet(SLAB_SIZE);
+        }
+        return buffer;
+    }
+
+    private static synchronized void release(ByteBuffer buffer) {
+        if (idle.size() < IDLE_SLABS) {
+            idle.addFirst(buffer);
+        } else {
+            reserved.addAndGet(-SLAB_SIZE);
+        }
+    }
+
+    /**
+     * Chunk is the on heap handle of an object stored off heap. The bytes of
+     * an object larger than a slab start in the slabs it spans and end in the
+     * chunk of its slab.
+     */
+    static final class Chunk {
+        final ByteBuffer[] spans;
+        final Slab slab;
+        final int offset;
+        final int length;
+
+        Chunk(ByteBuffer[] spans, Slab slab, int offset, int length) {
+            this.spans = spans;
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+        }
+
+    }
+
+    /**
+     * Slab is a direct buffer cut into chunks of a single size. Chunks are
+     * handed out in order until the slab has been used once, after that only
+     * freed chunks are reused. The offset of the next free chunk is written
+     * into the first bytes of every freed chunk.
+     */
+    static final class Slab {
+        final ByteBuffer buffer;
+        final int chunkSize;
+        final int sizeClass;
+        private final int chunks;
+        private int used, untouched, freeHead = -1;
+
+        Slab(ByteBuffer buffer, int chunkSize, int sizeClass) {
+            this.buffer = buffer;
+            this.chunkSize = chunkSize;
+            this.sizeClass = sizeClass;
+            this.chunks = buffer.capacity() / chunkSize;
+        }
+
+        boolean isFull() {
+            return used == chunks;
+        }
+
+        int allocate() {
+            used++;
+            if (freeHead >= 0) {
+                int offset = freeHead;
+                freeHead = buffer.getInt(offset);
+                return offset;
+            }
+            return untouched++ * chunkSize;
+        }
+
+        void free(int offset) {
+            used--;
+            buffer.putInt(offset, freeHead);
+            freeHead = offset;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package net.projectbarks.easycache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stats counter records the statistics of the {@link EasyCache} while it
+ * runs. Every counter is a {@link LongAdder} so threads recording at once
+ * never contend on a shared value, the counters are only summed up when a
+ * {@link CacheStats snapshot} is taken.
+ */
+class StatsCounter {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadTime = new LongAdder();
+    private final LongAdder[] removals = new LongAdder[RemovalCause.values().length];
+    private final LatencyHistogram.Recorder getLatency = new LatencyHistogram.Recorder();
+    private final LatencyHistogram.Recorder storeLatency = new LatencyHistogram.Recorder();
+
+    StatsCounter() {
+        for (int i = 0; i < removals.length; i++) {
+            removals[i] = new LongAdder();
+        }
+    }
+
+    void recordGet(boolean hit, long nanos) {
+        (hit ? hits : misses).increment();
+        getLatency.record(nanos);
+    }
+
+    void recordHits(int count) {
+        hits.add(count);
+    }
+
+    void recordMisses(int count) {
+        misses.add(count);
+    }
+
+    void recordStore(long nanos) {
+        storeLatency.record(nanos);
+    }
+
+    void recordLoad(boolean success, long nanos) {
+        (success ? loadSuccesses : loadFailures).increment();
+        loadTime.add(nanos);
+    }
+
+    void recordRemoval(RemovalCause cause) {
+        removals[cause.ordinal()].increment();
+    }
+
+    CacheStats snapshot(long weight, long entryCount) {
+        long[] removed = new long[removals.length];
+        for (int i = 0; i < removed.length; i++) {
+            removed[i] = removals[i].sum();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), loadSuccesses.sum(), loadFailures.sum(), loadTime.sum(),
+                removed, weight, entryCount, getLatency.snapshot(), storeLatency.snapshot());
+    }
+
+    void reset() {
+        hits.reset();
+        misses.reset();
+        loadSuccesses.reset();
+        loadFailures.reset();
+        loadTime.reset();
+        for (LongAdder removal : removals) {
+            removal.reset();
+        }
+        getLatency.reset();
+        storeLatency.reset();
+    }
+}
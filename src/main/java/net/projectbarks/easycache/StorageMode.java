@@ -0,0 +1,34 @@
+package net.projectbarks.easycache;
+
+/**
+ * Storage mode decides what the {@link EasyCache} keeps for every object
+ * stored. You can use {@link EasyCache#setStorageMode(StorageMode)} to change
+ * the mode, objects already stored keep the form they were stored in.
+ */
+public enum StorageMode {
+
+    /**
+     * The object itself is kept. Reads return the very same instance that
+     * was stored so changes made to it are seen by every later read.
+     */
+    REFERENCE,
+    /**
+     * The object is encoded to bytes by the codec set in
+     * {@link EasyCache#setCodec(net.projectbarks.easycache.codec.Codec)}
+     * and only the bytes are kept. Every read decodes a fresh copy, the
+     * weight of the object is the amount of bytes kept.
+     */
+    VALUE,
+    /**
+     * The object is encoded like {@link #VALUE} but the bytes are kept in
+     * direct memory outside of the java heap, only a small handle stays on
+     * the heap. The weight of the object is the amount of direct memory it
+     * takes up and the free space of partly used slabs is counted as well, so
+     * the max size limits the direct memory used. This keeps
+     * garbage collection pauses short even when the cache holds gigabytes.
+     *
+     * Note reads of objects stored off heap take the lock of their segment
+     * while the bytes are copied back onto the heap.
+     */
+    OFF_HEAP
+}
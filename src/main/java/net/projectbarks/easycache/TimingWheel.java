@@ -0,0 +1,262 @@
+package net.projectbarks.easycache;
+
+import java.util.List;
+
+/**
+ * Timing wheel is a hierarchical set of bucket rings used by {@link EasyCache}
+ * to find expired objects without sorting them. Each level of the wheel is a
+ * ring of buckets where every bucket covers a fixed span of time, the first level
+ * covers roughly a second per bucket and each higher level covers the full ring
+ * of the level below it. Objects are linked directly into a bucket so scheduling
+ * and removing an object are both constant time operations.
+ *
+ * When the wheel is advanced only the buckets whose time has passed are visited.
+ * Objects in those buckets are either expired or, when their deadline has moved
+ * forward or they were placed in a coarse bucket, cascaded into a lower bucket.
+ *
+ * A wheel either schedules objects by their {@link CachedObject#getLower() lower}
+ * deadline through their wheel links, or by the time they must be used by through
+ * their idle links. An object can therefore be scheduled in one wheel of each kind
+ * at once, which lets the {@link EasyCache} keep lifetimes and update times apart.
+ *
+ * Note the wheel is not thread safe and is guarded by the owner.
+ */
+class TimingWheel {
+
+    /** The number of buckets in each level of the wheel. */
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    /** The bit shift that turns a millisecond time into the ticks of each level. */
+    private static final int[] SHIFTS = {10, 16, 22, 27, 29};
+
+    private final CachedObject[][] wheel;
+    private final CachedObject pending;
+    /** True if objects are scheduled by the time they must be used by. */
+    private final boolean idle;
+    private long time;
+
+    /** The progress of an advance that ran out of budget. */
+    private boolean advancing;
+    private long previous;
+    private int level, step;
+    /** The objects visited by the last advance. */
+    private int visited;
+
+    /**
+     * Creates an empty wheel starting at the time given that schedules
+     * objects by their lower deadline.
+     *
+     * @param time the current time in milliseconds.
+     */
+    TimingWheel(long time) {
+        this(time, false);
+    }
+
+    /**
+     * Creates an empty wheel starting at the time given.
+     *
+     * @param time the current time in milliseconds.
+     * @param idle true to schedule objects by the time they must be used by.
+     */
+    TimingWheel(long time, boolean idle) {
+        this.time = time;
+        this.idle = idle;
+        pending = new Sentinel();
+        wheel = new CachedObject[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = new CachedObject[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                wheel[i][j] = new Sentinel();
+            }
+        }
+    }
+
+    /**
+     * Links the object into the bucket that covers its current deadline,
+     * removing it from any bucket it was in before. Deadlines that have
+     * already passed are placed in the bucket of the current time.
+     *
+     * @param object the object to be scheduled.
+     */
+    void schedule(CachedObject object) {
+        deschedule(object);
+        CachedObject sentinel = findBucket(Math.max(deadline(object), time));
+        if (idle) {
+            object.idlePrev = sentinel.idlePrev;
+            object.idleNext = sentinel;
+            sentinel.idlePrev.idleNext = object;
+            sentinel.idlePrev = object;
+        } else {
+            object.wheelPrev = sentinel.wheelPrev;
+            object.wheelNext = sentinel;
+            sentinel.wheelPrev.wheelNext = object;
+            sentinel.wheelPrev = object;
+        }
+    }
+
+    /**
+     * Unlinks the object from its bucket if it is scheduled.
+     *
+     * @param object the object to be removed from the wheel.
+     */
+    void deschedule(CachedObject object) {
+        if (idle) {
+            if (object.idleNext == null) {
+                return;
+            }
+            object.idlePrev.idleNext = object.idleNext;
+            object.idleNext.idlePrev = object.idlePrev;
+            object.idlePrev = null;
+            object.idleNext = null;
+        } else {
+            if (object.wheelNext == null) {
+                return;
+            }
+            object.wheelPrev.wheelNext = object.wheelNext;
+            object.wheelNext.wheelPrev = object.wheelPrev;
+            object.wheelPrev = null;
+            object.wheelNext = null;
+        }
+    }
+
+    /**
+     * Moves the wheel forward to the time given. Every bucket passed is
+     * emptied, objects whose deadline has been reached are added to the
+     * expired list and all others are scheduled again.
+     *
+     * The work done is bounded by the limit given, once that many objects
+     * have been visited the wheel stops and false is returned. The next call
+     * resumes where the last one stopped before moving on to a newer time.
+     * The amount of objects visited is left in {@link #visited()}.
+     *
+     * @param now the current time in milliseconds.
+     * @param expired the list expired objects are added to.
+     * @param limit the most objects to visit, zero or less for no limit.
+     * @return true if the wheel has fully caught up to its time.
+     */
+    boolean advance(long now, List<CachedObject> expired, int limit) {
+        visited = 0;
+        if (!advancing) {
+            if (now <= time) {
+                return true;
+            }
+            previous = time;
+            time = now;
+            level = 0;
+            step = 0;
+            advancing = true;
+        }
+        int budget = limit > 0 ? limit : Integer.MAX_VALUE;
+        while (true) {
+            while (next(pending) != pending) {
+                if (budget == 0) {
+                    return false;
+                }
+                budget--;
+                visited++;
+                CachedObject object = next(pending);
+                deschedule(object);
+                if (deadline(object) <= now) {
+                    expired.add(object);
+                } else {
+                    schedule(object);
+                }
+            }
+            if (level == BUCKETS.length) {
+                advancing = false;
+                return true;
+            }
+            long previousTicks = previous >>> SHIFTS[level];
+            long delta = (time >>> SHIFTS[level]) - previousTicks;
+            if (delta <= 0 || step == Math.min(1 + delta, BUCKETS[level])) {
+                level = delta <= 0 ? BUCKETS.length : level + 1;
+                step = 0;
+                continue;
+            }
+            transfer(wheel[level][(int) ((previousTicks + step) & (BUCKETS[level] - 1))]);
+            step++;
+        }
+    }
+
+    /**
+     * The amount of objects visited by the last advance, whether they
+     * expired or were scheduled again.
+     *
+     * @return the objects visited by the last advance.
+     */
+    int visited() {
+        return visited;
+    }
+
+    /**
+     * Removes every object from the wheel without visiting them.
+     */
+    void clear() {
+        for (CachedObject[] level : wheel) {
+            for (CachedObject sentinel : level) {
+                reset(sentinel);
+            }
+        }
+        reset(pending);
+        advancing = false;
+    }
+
+    /**
+     * Moves every object of a bucket onto the pending list in one step.
+     *
+     * @param sentinel the head of the bucket to be emptied.
+     */
+    private void transfer(CachedObject sentinel) {
+        if (next(sentinel) == sentinel) {
+            return;
+        }
+        if (idle) {
+            pending.idleNext = sentinel.idleNext;
+            pending.idlePrev = sentinel.idlePrev;
+            pending.idleNext.idlePrev = pending;
+            pending.idlePrev.idleNext = pending;
+        } else {
+            pending.wheelNext = sentinel.wheelNext;
+            pending.wheelPrev = sentinel.wheelPrev;
+            pending.wheelNext.wheelPrev = pending;
+            pending.wheelPrev.wheelNext = pending;
+        }
+        reset(sentinel);
+    }
+
+    private long deadline(CachedObject object) {
+        return idle ? object.getUpdateTimeExact() : object.getLower();
+    }
+
+    private CachedObject next(CachedObject object) {
+        return idle ? object.idleNext : object.wheelNext;
+    }
+
+    private static void reset(CachedObject sentinel) {
+        sentinel.wheelPrev = sentinel;
+        sentinel.wheelNext = sentinel;
+        sentinel.idlePrev = sentinel;
+        sentinel.idleNext = sentinel;
+    }
+
+    private CachedObject findBucket(long deadline) {
+        long duration = deadline - time;
+        int last = BUCKETS.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (duration < 1L << SHIFTS[i + 1]) {
+                long ticks = deadline >>> SHIFTS[i];
+                return wheel[i][(int) (ticks & (BUCKETS[i] - 1))];
+            }
+        }
+        return wheel[last][0];
+    }
+
+    /**
+     * Sentinel heads the circular list of objects in a bucket.
+     */
+    private static final class Sentinel extends CachedObject {
+        Sentinel() {
+            super(null, 0, 0, false);
+            reset(this);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package net.projectbarks.easycache;
+
+/**
+ * Window TinyLFU policy. New objects enter a small window queue taking one
+ * percent of the capacity, the newest object always stays in the window. Objects
+ * pushed out of the window become candidates for the main space, which is split into a probation and a protected queue as
+ * a segmented LRU. When the segment is over capacity the newest candidate is
+ * compared against the least recently used object on probation and whichever
+ * has been used less often according to the {@link FrequencySketch} is evicted.
+ * Objects read while on probation are promoted to the protected queue, which
+ * takes up to eighty percent of the main space.
+ */
+class TinyLfuPolicy extends Policy {
+
+    private final AccessQueue window = new AccessQueue();
+    private final AccessQueue probation = new AccessQueue();
+    private final AccessQueue protectedQueue = new AccessQueue();
+    private final FrequencySketch sketch = new FrequencySketch();
+    private CachedObject candidate;
+    private long windowCapacity, protectedCapacity;
+    private int count;
+
+    @Override
+    void setCapacity(long capacity) {
+        windowCapacity = Math.max(1, capacity / 100);
+        protectedCapacity = (capacity - windowCapacity) * 4 / 5;
+    }
+
+    @Override
+    void add(CachedObject object) {
+        sketch.ensureCapacity(++count);
+        sketch.increment(object.key.hashCode());
+        window.addLast(object);
+        while (window.weight() > windowCapacity && window.peekFirst() != object) {
+            candidate = window.peekFirst();
+            window.remove(candidate);
+            probation.addLast(candidate);
+        }
+    }
+
+    @Override
+    void access(CachedObject object) {
+        sketch.increment(object.key.hashCode());
+        if (object.queue == probation) {
+            probation.remove(object);
+            protectedQueue.addLast(object);
+            while (protectedQueue.weight() > protectedCapacity) {
+                CachedObject demoted = protectedQueue.peekFirst();
+                protectedQueue.remove(demoted);
+                probation.addLast(demoted);
+            }
+        } else {
+            object.queue.moveToLast(object);
+        }
+    }
+
+    @Override
+    void remove(CachedObject object) {
+        object.queue.remove(object);
+        if (object == candidate) {
+            candidate = null;
+        }
+        count--;
+    }
+
+    @Override
+    CachedObject victim() {
+        CachedObject victim = probation.peekFirst();
+        if (victim == null) {
+            victim = protectedQueue.isEmpty() ? window.peekFirst() : protectedQueue.peekFirst();
+            return victim;
+        }
+        if (candidate == null || candidate == victim || candidate.queue != probation) {
+            return victim;
+        }
+        int candidateFrequency = sketch.frequency(candidate.key.hashCode());
+        int victimFrequency = sketch.frequency(victim.key.hashCode());
+        return candidateFrequency > victimFrequency ? victim : candidate;
+    }
+}
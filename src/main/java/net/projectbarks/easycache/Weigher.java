@@ -0,0 +1,23 @@
+package net.projectbarks.easycache;
+
+/**
+ * Weigher measures how many bytes an object takes up in the {@link EasyCache}.
+ * The weight is measured once when the object is stored and that same weight
+ * is counted against the max size until the object is deleted, expires, is
+ * evicted or the cache is cleared. You can use
+ * {@link EasyCache#setWeigher(Weigher)} to supply a cheaper weigher, such as
+ * the length of an array or a size known ahead of time.
+ *
+ * Note weighers are called from many threads at once and must be thread safe.
+ */
+public interface Weigher {
+
+    /**
+     * Measures the weight of an object about to be stored.
+     *
+     * @param key the key the object is stored under
+     * @param value the object to be measured
+     * @return the weight in bytes, must not be negative
+     */
+    int weigh(String key, Object value);
+}
@@ -0,0 +1,350 @@
+package net.projectbarks.easycache;
+
+import net.projectbarks.easycache.codec.Codec;
+import net.projectbarks.easycache.datastore.CacheStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * Write behind mirrors the writes made to the {@link EasyCache} to a
+ * {@link CacheStore} without making the writer wait for the store. A write only
+ * marks its key dirty, a background thread later passes the dirty keys to the
+ * store in batches. A key written again while it is still dirty is merged into
+ * the pending write, so only its newest value reaches the store and a key that
+ * is updated many times in a row is written once.
+ *
+ * A key is flushed once it has been dirty for the flush interval, or earlier
+ * when the flush size is reached. When the store cannot keep up and a key has
+ * been dirty for longer than the max lag, writers wait for the flusher to catch
+ * up, which bounds how far the store may fall behind the cache.
+ *
+ * A key deleted from the cache while it is dirty is dropped, so its pending
+ * write never reaches the store. Values already passed to the store stay there,
+ * a cache store has no way to delete them.
+ *
+ * Note the store is only ever called from the flusher thread, or from the thread
+ * closing the write behind once the flusher has stopped. Writes are passed with
+ * their index within the batch and the size of the batch, {@link CacheStore#finish()}
+ * is only called once the write behind is closed.
+ */
+class WriteBehind {
+
+    private final CacheStore store;
+    private final int flushSize;
+    private final long flushInterval, maxLag;
+    private final ConcurrentHashMap<String, Dirty> dirty = new ConcurrentHashMap<String, Dirty>();
+    /** The dirty keys in the order they became dirty, dropped keys are skipped once taken. */
+    private final ConcurrentLinkedDeque<Dirty> queue = new ConcurrentLinkedDeque<Dirty>();
+    /** The writes of the batch being passed to the store. */
+    private final ConcurrentHashMap<String, Dirty> flushing = new ConcurrentHashMap<String, Dirty>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    /** Signalled every time the flusher finishes a batch. */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private final Thread flusher;
+    private volatile boolean running = true;
+    /** The newest sequence a caller of {@link #flush()} waits for. */
+    private volatile long flushTarget = -1;
+    /** The last error thrown by the store, kept until a flush reports it. */
+    private volatile RuntimeException failure;
+
+    /**
+     * Creates a write behind and starts its flusher.
+     *
+     * @param store the store writes are passed to
+     * @param flushSize the most keys passed to the store in a batch
+     * @param flushInterval the milliseconds a key stays dirty before it is flushed
+     * @param maxLag the most milliseconds a key may stay dirty before writers wait
+     */
+    WriteBehind(CacheStore store, int flushSize, long flushInterval, long maxLag) {
+        if (flushSize <= 0) {
+            throw new IllegalArgumentException("Flush size must be positive!");
+        }
+        if (flushInterval < 0 || maxLag < flushInterval) {
+            throw new IllegalArgumentException("Max lag must be at least the flush interval!");
+        }
+        this.store = store;
+        this.flushSize = flushSize;
+        this.flushInterval = flushInterval;
+        this.maxLag = maxLag;
+        flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runFlusher();
+            }
+        }, "EasyCache-WriteBehind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Marks a key dirty with the value just stored under it. When the key is
+     * already dirty the value replaces the one waiting to be flushed. Must be
+     * called while holding the lock of the segment of the key, so the writes of
+     * a key are marked in the order they were stored. Writers should call
+     * {@link #throttle()} once the lock is released.
+     *
+     * @param key the key that was written
+     * @param value the object or its encoded bytes
+     * @param codec the codec the bytes were encoded with or null for an object
+     * @param lifeTime the time the object will be deleted
+     * @param updateTime the amount of milliseconds the object may go unused
+     */
+    void written(String key, final Object value, final Codec codec, final long lifeTime, final long updateTime) {
+        final long now = System.currentTimeMillis();
+        final Dirty[] created = new Dirty[1];
+        dirty.compute(key, new BiFunction<String, Dirty, Dirty>() {
+            @Override
+            public Dirty apply(String key, Dirty current) {
+                if (current == null) {
+                    current = created[0] = new Dirty(key, now, sequence.getAndIncrement());
+                }
+                current.value = value;
+                current.codec = codec;
+                current.lifeTime = lifeTime;
+                current.updateTime = updateTime;
+                return current;
+            }
+        });
+        if (created[0] == null) {
+            return;
+        }
+        queue.add(created[0]);
+        if (count.incrementAndGet() == flushSize) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    /**
+     * Drops the pending write of a key deleted from the cache. A write of the
+     * key being passed to the store right now is not retried when the store fails.
+     *
+     * @param key the key that was deleted
+     */
+    void deleted(String key) {
+        dirty.compute(key, new BiFunction<String, Dirty, Dirty>() {
+            @Override
+            public Dirty apply(String key, Dirty current) {
+                Dirty flushed = flushing.get(key);
+                if (flushed != null) {
+                    flushed.cancelled = true;
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Drops the pending write of every key, used when the cache is cleared.
+     */
+    void clear() {
+        for (String key : dirty.keySet()) {
+            deleted(key);
+        }
+        for (String key : flushing.keySet()) {
+            deleted(key);
+        }
+    }
+
+    /**
+     * Makes the writer wait for the flusher while the oldest dirty key has
+     * been dirty for longer than the max lag. Called after every write, also
+     * those only replacing the value of a key that is already dirty.
+     */
+    void throttle() {
+        Dirty oldest = queue.peek();
+        if (oldest != null && System.currentTimeMillis() - oldest.time > maxLag) {
+            await(oldest.sequence);
+        }
+    }
+
+    /**
+     * Blocks until every key dirty when it is called has been passed to the store.
+     * When the store fails the keys are kept dirty and the error is thrown.
+     */
+    void flush() {
+        failure = null;
+        await(sequence.get() - 1);
+        RuntimeException error = failure;
+        if (error != null) {
+            failure = null;
+            throw new RuntimeException("Unable to flush to the store!", error);
+        }
+    }
+
+    /**
+     * Stops the flusher, passes every dirty key to the store and finishes it.
+     */
+    void close() {
+        running = false;
+        LockSupport.unpark(flusher);
+        boolean interrupted = false;
+        while (flusher.isAlive()) {
+            try {
+                flusher.join();
+            } catch (InterruptedException exception) {
+                interrupted = true;
+            }
+        }
+        try {
+            while (!queue.isEmpty()) {
+                flushBatch();
+            }
+        } finally {
+            store.finish();
+            lock.lock();
+            try {
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Waits until every key up to the sequence given has been flushed, the
+     * flusher is woken so it flushes them right away.
+     *
+     * @param target the sequence of the newest key waited for
+     */
+    private void await(long target) {
+        if (flushTarget < target) {
+            flushTarget = target;
+        }
+        lock.lock();
+        try {
+            Dirty oldest;
+            while (running && failure == null && (oldest = queue.peek()) != null && oldest.sequence <= target) {
+                LockSupport.unpark(flusher);
+                flushed.await(10, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        while (running) {
+            Dirty oldest = queue.peek();
+            long now = System.currentTimeMillis();
+            if (oldest == null) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushInterval)));
+                continue;
+            }
+            long due = oldest.time + flushInterval;
+            if (count.get() < flushSize && now < due && oldest.sequence > flushTarget) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(due - now));
+                continue;
+            }
+            try {
+                flushBatch();
+            } catch (RuntimeException exception) {
+                failure = exception;
+                // Give a failing store some time before trying again.
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushInterval)));
+            }
+            lock.lock();
+            try {
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Passes up to the flush size of the oldest dirty keys to the store. A key
+     * is clean again once it is taken, writes made while the batch is being
+     * stored mark it dirty again. When the store fails the keys not yet stored
+     * are marked dirty again at the head of the queue, unless they have been
+     * written or deleted since, so the queue stays in the order keys became dirty.
+     */
+    private void flushBatch() {
+        List<Dirty> batch = new ArrayList<Dirty>(Math.min(flushSize, count.get()));
+        Dirty next;
+        while (batch.size() < flushSize && (next = queue.peek()) != null) {
+            flushing.put(next.key, next);
+            if (dirty.remove(next.key, next)) {
+                batch.add(next);
+            } else {
+                flushing.remove(next.key, next);
+            }
+            queue.poll();
+            count.decrementAndGet();
+        }
+        int index = 0;
+        try {
+            for (; index < batch.size(); index++) {
+                Dirty write = batch.get(index);
+                long now = System.currentTimeMillis();
+                if (write.lifeTime > -1 && write.lifeTime <= now) {
+                    continue;
+                }
+                store.store(write.key, EasyCache.toJson(write.value, write.codec), write.codec == null ? write.value : null,
+                        write.lifeTime > -1 ? write.lifeTime - now : -1, write.updateTime, index, batch.size());
+            }
+        } catch (RuntimeException exception) {
+            for (int i = batch.size() - 1; i >= index; i--) {
+                final Dirty write = batch.get(i);
+                final boolean[] requeued = new boolean[1];
+                dirty.compute(write.key, new BiFunction<String, Dirty, Dirty>() {
+                    @Override
+                    public Dirty apply(String key, Dirty current) {
+                        if (current != null || write.cancelled) {
+                            return current;
+                        }
+                        requeued[0] = true;
+                        return write;
+                    }
+                });
+                if (requeued[0]) {
+                    queue.addFirst(write);
+                    count.incrementAndGet();
+                }
+            }
+            throw exception;
+        } finally {
+            for (Dirty write : batch) {
+                flushing.remove(write.key, write);
+            }
+        }
+    }
+
+    /**
+     * Dirty is the newest write of a key waiting to be flushed. Its fields are
+     * only changed while its key is locked in the dirty map.
+     */
+    private static final class Dirty {
+        final String key;
+        /** The time the key became dirty. */
+        final long time;
+        final long sequence;
+        Object value;
+        Codec codec;
+        long lifeTime, updateTime;
+        /** Set once the key is deleted while this write is being flushed. */
+        volatile boolean cancelled;
+
+        Dirty(String key, long time, long sequence) {
+            this.key = key;
+            this.time = time;
+            this.sequence = sequence;
+        }
+    }
+}
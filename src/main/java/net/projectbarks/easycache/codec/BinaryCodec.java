@@ -0,0 +1,269 @@
+package net.projectbarks.easycache.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary codec stores objects in a compact tagged binary form of their json
+ * structure. Gson walks the object exactly as it would for json, but instead
+ * of text every token is written as a single tag byte followed by its data:
+ * whole numbers are zig-zag variable length numbers, strings are length
+ * prefixed and every field name is only written once per object graph, any
+ * repeat refers back to the first by index. For lists of similar objects this
+ * is a fraction of the size of the json form.
+ *
+ * Byte arrays are stored as they are without going through gson.
+ */
+public class BinaryCodec implements Codec {
+
+    private static final int NULL = 0, TRUE = 1, FALSE = 2, INTEGER = 3, DOUBLE = 4, STRING = 5, NUMBER = 6;
+    private static final int BEGIN_ARRAY = 7, END_ARRAY = 8, BEGIN_OBJECT = 9, END_OBJECT = 10;
+    private static final int NAME = 11, NAME_REFERENCE = 12, BYTES = 13;
+
+    private final Gson gson;
+
+    public BinaryCodec() {
+        this(new GsonBuilder().serializeNulls().create());
+    }
+
+    /**
+     * Creates a codec using a configured gson instance, for example one
+     * with type adapters registered for your own classes.
+     *
+     * @param gson the gson instance used to walk objects
+     */
+    public BinaryCodec(Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public void encode(Object value, ByteOutput output) {
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            output.write(BYTES);
+            output.writeVarLong(bytes.length);
+            output.write(bytes, 0, bytes.length);
+            return;
+        }
+        try {
+            gson.toJson(value, value.getClass(), new BinaryWriter(output));
+        } catch (RuntimeException exception) {
+            throw new CodecException("Failed to encode " + value.getClass().getName() + "!", exception);
+        }
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        ByteInput input = new ByteInput(bytes, 0);
+        try {
+            if (bytes.length > 0 && bytes[0] == BYTES) {
+                input.readByte();
+                byte[] value = input.readBytes(input.readLength());
+                if (!type.isAssignableFrom(byte[].class)) {
+                    throw new CodecException("Stored bytes can not be read as " + type.getName() + "!");
+                }
+                return type.cast(value);
+            }
+            JsonElement tree = read(input, input.readByte(), new ArrayList<String>());
+            return gson.fromJson(tree, type);
+        } catch (CodecException exception) {
+            throw exception;
+        } catch (RuntimeException exception) {
+            throw new CodecException("Failed to decode " + type.getName() + "!", exception);
+        }
+    }
+
+    /**
+     * Reads a single value and everything nested within it.
+     *
+     * @param input the input to read from
+     * @param tag the tag of the value, already read
+     * @param names the field names read so far
+     * @return the value as a json tree
+     */
+    private static JsonElement read(ByteInput input, int tag, List<String> names) {
+        switch (tag) {
+            case NULL:
+                return JsonNull.INSTANCE;
+            case TRUE:
+                return new JsonPrimitive(true);
+            case FALSE:
+                return new JsonPrimitive(false);
+            case INTEGER:
+                return new JsonPrimitive(input.readZigZag());
+            case DOUBLE:
+                return new JsonPrimitive(Double.longBitsToDouble(input.readLong()));
+            case STRING:
+                return new JsonPrimitive(input.readString());
+            case NUMBER:
+                return new JsonPrimitive(new LazilyParsedNumber(input.readString()));
+            case BEGIN_ARRAY:
+                JsonArray array = new JsonArray();
+                for (int next = input.readByte(); next != END_ARRAY; next = input.readByte()) {
+                    array.add(read(input, next, names));
+                }
+                return array;
+            case BEGIN_OBJECT:
+                JsonObject object = new JsonObject();
+                for (int next = input.readByte(); next != END_OBJECT; next = input.readByte()) {
+                    String name;
+                    if (next == NAME) {
+                        name = input.readString();
+                        names.add(name);
+                    } else if (next == NAME_REFERENCE) {
+                        name = names.get((int) input.readVarLong());
+                    } else {
+                        throw new CodecException("Expected a field name but found tag " + next + "!");
+                    }
+                    object.add(name, read(input, input.readByte(), names));
+                }
+                return object;
+            default:
+                throw new CodecException("Unknown tag " + tag + "!");
+        }
+    }
+
+    /**
+     * Binary writer receives the tokens gson walks an object into and writes
+     * them as tags to the output instead of json text.
+     */
+    private static final class BinaryWriter extends JsonWriter {
+        private static final Writer DISCARD = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        private final ByteOutput output;
+        private final Map<String, Integer> names = new HashMap<String, Integer>();
+
+        BinaryWriter(ByteOutput output) {
+            super(DISCARD);
+            this.output = output;
+        }
+
+        @Override
+        public JsonWriter beginArray() {
+            output.write(BEGIN_ARRAY);
+            return this;
+        }
+
+        @Override
+        public JsonWriter endArray() {
+            output.write(END_ARRAY);
+            return this;
+        }
+
+        @Override
+        public JsonWriter beginObject() {
+            output.write(BEGIN_OBJECT);
+            return this;
+        }
+
+        @Override
+        public JsonWriter endObject() {
+            output.write(END_OBJECT);
+            return this;
+        }
+
+        @Override
+        public JsonWriter name(String name) {
+            Integer index = names.get(name);
+            if (index != null) {
+                output.write(NAME_REFERENCE);
+                output.writeVarLong(index);
+            } else {
+                names.put(name, names.size());
+                output.write(NAME);
+                output.writeString(name);
+            }
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(String value) {
+            if (value == null) {
+                return nullValue();
+            }
+            output.write(STRING);
+            output.writeString(value);
+            return this;
+        }
+
+        @Override
+        public JsonWriter nullValue() {
+            output.write(NULL);
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(boolean value) {
+            output.write(value ? TRUE : FALSE);
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(double value) {
+            if (value == (long) value && Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0d)) {
+                return value((long) value);
+            }
+            output.write(DOUBLE);
+            output.writeLong(Double.doubleToRawLongBits(value));
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(long value) {
+            output.write(INTEGER);
+            output.writeZigZag(value);
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(Number value) {
+            if (value == null) {
+                return nullValue();
+            }
+            if (value instanceof Double || value instanceof Float) {
+                return value(value.doubleValue());
+            }
+            if (value instanceof BigDecimal || value instanceof BigInteger || value instanceof LazilyParsedNumber) {
+                output.write(NUMBER);
+                output.writeString(value.toString());
+                return this;
+            }
+            return value(value.longValue());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
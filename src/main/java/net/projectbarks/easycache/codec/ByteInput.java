@@ -0,0 +1,95 @@
+package net.projectbarks.easycache.codec;
+
+import java.nio.charset.Charset;
+
+/**
+ * Byte input reads the numbers and strings written by {@link ByteOutput}
+ * back from a byte array.
+ */
+public class ByteInput {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final byte[] bytes;
+    private int position;
+
+    public ByteInput(byte[] bytes, int offset) {
+        this.bytes = bytes;
+        this.position = offset;
+    }
+
+    /**
+     * Gets if every byte has been read.
+     *
+     * @return true if there are no bytes left
+     */
+    public boolean isFinished() {
+        return position >= bytes.length;
+    }
+
+    public int readByte() {
+        check(1);
+        return bytes[position++] & 0xFF;
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new CodecException("Malformed variable length number!");
+    }
+
+    public long readZigZag() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public long readLong() {
+        check(8);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    public String readString() {
+        int length = readLength();
+        String value = new String(bytes, position, length, UTF_8);
+        position += length;
+        return value;
+    }
+
+    public byte[] readBytes(int length) {
+        check(length);
+        byte[] value = new byte[length];
+        System.arraycopy(bytes, position, value, 0, length);
+        position += length;
+        return value;
+    }
+
+    /**
+     * Reads a variable length number that is used as the length of
+     * the bytes that follow it.
+     *
+     * @return the length read
+     */
+    public int readLength() {
+        long length = readVarLong();
+        if (length < 0 || length > bytes.length - position) {
+            throw new CodecException("Length " + length + " runs past the end of the input!");
+        }
+        return (int) length;
+    }
+
+    private void check(int length) {
+        if (position + length > bytes.length) {
+            throw new CodecException("Unexpected end of input!");
+        }
+    }
+}
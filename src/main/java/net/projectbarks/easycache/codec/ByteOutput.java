@@ -0,0 +1,190 @@
+package net.projectbarks.easycache.codec;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Byte output is a growable byte buffer that codecs write their bytes to.
+ * Outputs are pooled per thread using {@link #acquire()} and {@link #release()}
+ * so encoding an object does not allocate a new buffer every time. Only the
+ * final copy made by {@link #toByteArray()} is allocated per object.
+ *
+ * Besides plain bytes the output can write variable length numbers and UTF-8
+ * strings for compact binary formats. It is also an {@link OutputStream} so
+ * it can be handed to writers and streams expecting one.
+ */
+public class ByteOutput extends OutputStream {
+
+    /** Buffers grown past this size are dropped instead of kept in the pool. */
+    private static final int POOLED_LIMIT = 1 << 20;
+    private static final ThreadLocal<ByteOutput> POOL = new ThreadLocal<ByteOutput>();
+
+    private byte[] buffer;
+    private int size;
+    private boolean inUse;
+
+    public ByteOutput(int capacity) {
+        buffer = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * Takes the empty output pooled for the current thread. When the pooled
+     * output is already in use, for example by a codec wrapping another codec,
+     * a new output is returned instead.
+     *
+     * @return an empty output
+     */
+    public static ByteOutput acquire() {
+        ByteOutput output = POOL.get();
+        if (output == null || output.inUse) {
+            output = new ByteOutput(1024);
+            if (POOL.get() == null) {
+                POOL.set(output);
+            }
+        }
+        output.inUse = true;
+        output.size = 0;
+        return output;
+    }
+
+    /**
+     * Hands the output back to the pool of the current thread. Outputs that
+     * grew too large are dropped so a single huge object does not keep its
+     * buffer alive for the life of the thread.
+     */
+    public void release() {
+        inUse = false;
+        if (buffer.length > POOLED_LIMIT && POOL.get() == this) {
+            POOL.remove();
+        }
+    }
+
+    /**
+     * Gets the amount of bytes written.
+     *
+     * @return the size of the output
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the buffer backing the output, only the first {@link #size()}
+     * bytes are valid. The buffer is reused and must not be kept.
+     *
+     * @return the backing buffer
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Forgets every byte written so the output can be written again.
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * Copies the bytes written into a new array of the exact size.
+     *
+     * @return a copy of the bytes written
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    @Override
+    public void write(int b) {
+        ensure(1);
+        buffer[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+    }
+
+    /**
+     * Writes an unsigned number in as few bytes as it needs, seven bits
+     * per byte with the high bit set on every byte but the last.
+     *
+     * @param value the number to be written
+     */
+    public void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    /**
+     * Writes a signed number with zig-zag encoding so small negative
+     * numbers take as few bytes as small positive ones.
+     *
+     * @param value the number to be written
+     */
+    public void writeZigZag(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes a number as eight big endian bytes.
+     *
+     * @param value the number to be written
+     */
+    public void writeLong(long value) {
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Writes a string as its UTF-8 length followed by its UTF-8 bytes.
+     *
+     * @param value the string to be written
+     */
+    public void writeString(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c < 0x80 ? 1 : c < 0x800 ? 2 : Character.isSurrogate(c) ? 2 : 3;
+        }
+        writeVarLong(length);
+        ensure(length);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[size++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[size++] = (byte) (0xC0 | (c >> 6));
+                buffer[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int point = Character.toCodePoint(c, value.charAt(++i));
+                buffer[size++] = (byte) (0xF0 | (point >> 18));
+                buffer[size++] = (byte) (0x80 | ((point >> 12) & 0x3F));
+                buffer[size++] = (byte) (0x80 | ((point >> 6) & 0x3F));
+                buffer[size++] = (byte) (0x80 | (point & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[size++] = (byte) '?';
+                buffer[size++] = (byte) '?';
+            } else {
+                buffer[size++] = (byte) (0xE0 | (c >> 12));
+                buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, size + extra));
+        }
+    }
+}
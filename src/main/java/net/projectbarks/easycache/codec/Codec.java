@@ -0,0 +1,35 @@
+package net.projectbarks.easycache.codec;
+
+/**
+ * Codec turns objects into bytes and back again. Codecs are used by the
+ * {@link net.projectbarks.easycache.EasyCache} when objects are stored by value,
+ * the bytes written by the codec are what is kept in the cache and every read
+ * decodes a fresh copy of the object. Please refer to {@link GsonCodec} and
+ * {@link BinaryCodec} for the codecs shipped with easy cache.
+ *
+ * Note codecs are called from many threads at once and must be thread safe.
+ */
+public interface Codec {
+
+    /**
+     * Writes the object to the output. The output is pooled and must not
+     * be kept after this call returns.
+     *
+     * @param value the object to be encoded
+     * @param output the output the bytes are written to
+     * @throws CodecException if the object cannot be encoded
+     */
+    void encode(Object value, ByteOutput output);
+
+    /**
+     * Reads an object of the given type back from bytes written by
+     * {@link #encode(Object, ByteOutput)}.
+     *
+     * @param bytes the encoded bytes
+     * @param type the type the object is to be read as
+     * @param <T> the type the object is to be read as
+     * @return the decoded object
+     * @throws CodecException if the bytes cannot be read as the type
+     */
+    <T> T decode(byte[] bytes, Class<T> type);
+}
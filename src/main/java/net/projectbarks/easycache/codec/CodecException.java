@@ -0,0 +1,18 @@
+package net.projectbarks.easycache.codec;
+
+/**
+ * Codec exception is thrown when a {@link Codec} fails to encode an object
+ * or fails to decode bytes into the type requested.
+ */
+public class CodecException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CodecException(String message) {
+        super(message);
+    }
+
+    public CodecException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
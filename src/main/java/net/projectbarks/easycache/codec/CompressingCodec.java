@@ -0,0 +1,212 @@
+package net.projectbarks.easycache.codec;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compressing codec compresses the bytes written by another codec. Used as the
+ * codec of the {@link net.projectbarks.easycache.EasyCache} together with the
+ * {@link net.projectbarks.easycache.StorageMode#VALUE value} or off heap storage
+ * mode, objects are weighed by their compressed size so more of them fit within
+ * the max size. Objects spilled to the disk tier stay compressed as well, and a
+ * {@link net.projectbarks.easycache.datastore.BinarySnapshotStore} given the codec
+ * compresses the snapshot it writes.
+ *
+ * Values smaller than the threshold are kept as they are, compressing a few bytes
+ * costs time and rarely saves space. Values that do not get smaller are kept as
+ * they are too. Every value starts with a variable length number, zero for a value
+ * kept as it is or otherwise the length of the value before it was compressed.
+ *
+ * The codec counts the bytes of every value encoded before and after compressing,
+ * see {@link #getRatio()}.
+ *
+ * Every thread keeps its own scratch outputs for the bytes of the wrapped codec
+ * and the compressed bytes, so encoding only allocates the final value. A value
+ * claiming to be more than {@link #MAX_RATIO} times larger than its compressed
+ * bytes is refused as corrupt before anything is allocated for it.
+ */
+public class CompressingCodec implements Codec {
+
+    /**
+     * The most times larger a value may be than its compressed bytes, deflate
+     * can not shrink anything further than this and the lz compressor not nearly as far.
+     */
+    public static final int MAX_RATIO = 1032;
+    /** Scratch outputs grown past this size are dropped instead of kept for the thread. */
+    private static final int SCRATCH_LIMIT = 1 << 20;
+
+    private final Codec codec;
+    private final Compressor compressor;
+    private final int threshold;
+    private final LongAdder rawBytes = new LongAdder(), storedBytes = new LongAdder();
+    private final ThreadLocal<ByteOutput> raws = new ThreadLocal<ByteOutput>();
+    private final ThreadLocal<ByteOutput> compressed = new ThreadLocal<ByteOutput>();
+
+    /**
+     * Creates a codec compressing values of at least 128 bytes written
+     * by the codec given with a {@link LzCompressor}.
+     *
+     * @param codec the codec writing the values to be compressed
+     */
+    public CompressingCodec(Codec codec) {
+        this(codec, new LzCompressor(), 128);
+    }
+
+    /**
+     * Creates a codec compressing the values written by another codec.
+     *
+     * @param codec the codec writing the values to be compressed
+     * @param compressor the compressor the values are compressed with
+     * @param threshold the amount of bytes below which values are kept as they are
+     */
+    public CompressingCodec(Codec codec, Compressor compressor, int threshold) {
+        if (codec == null || compressor == null) {
+            throw new NullPointerException("Null input!");
+        }
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative!");
+        }
+        this.codec = codec;
+        this.compressor = compressor;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void encode(Object value, ByteOutput output) {
+        ByteOutput raw = take(raws);
+        try {
+            codec.encode(value, raw);
+            pack(raw.buffer(), 0, raw.size(), output);
+        } finally {
+            give(raws, raw);
+        }
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        return codec.decode(unpack(bytes), type);
+    }
+
+    /**
+     * Compresses bytes that were not written by the wrapped codec, used to
+     * compress the values of snapshots.
+     *
+     * @param bytes the bytes to be compressed
+     * @return the bytes in the form written by this codec
+     */
+    public byte[] pack(byte[] bytes) {
+        ByteOutput output = ByteOutput.acquire();
+        try {
+            pack(bytes, 0, bytes.length, output);
+            return output.toByteArray();
+        } finally {
+            output.release();
+        }
+    }
+
+    /**
+     * Restores bytes compressed by this codec.
+     *
+     * @param bytes the bytes in the form written by this codec
+     * @return the bytes before they were compressed
+     * @throws CodecException if the bytes were not written by this codec or claim a length
+     * more than {@link #MAX_RATIO} times their own
+     */
+    public byte[] unpack(byte[] bytes) {
+        int position = 0;
+        long length = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (position == bytes.length || shift > 28) {
+                throw new CodecException("Corrupt compressed value!");
+            }
+            int b = bytes[position++];
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (length == 0) {
+            byte[] raw = new byte[bytes.length - position];
+            System.arraycopy(bytes, position, raw, 0, raw.length);
+            return raw;
+        }
+        if (length > Integer.MAX_VALUE || length > (long) (bytes.length - position) * MAX_RATIO) {
+            throw new CodecException("Corrupt compressed value!");
+        }
+        byte[] raw = new byte[(int) length];
+        compressor.decompress(bytes, position, bytes.length - position, raw);
+        return raw;
+    }
+
+    /**
+     * Gets how many times smaller the values encoded so far have become,
+     * counting the values kept as they are. One when nothing was encoded.
+     *
+     * @return the bytes before compressing divided by the bytes after
+     */
+    public double getRatio() {
+        long stored = storedBytes.sum();
+        return stored == 0 ? 1 : (double) rawBytes.sum() / stored;
+    }
+
+    /**
+     * Gets the amount of bytes of the values encoded so far before they
+     * were compressed.
+     *
+     * @return the bytes before compressing
+     */
+    public long getRawBytes() {
+        return rawBytes.sum();
+    }
+
+    /**
+     * Gets the amount of bytes of the values encoded so far as they are
+     * stored, including the length written before each value.
+     *
+     * @return the bytes after compressing
+     */
+    public long getStoredBytes() {
+        return storedBytes.sum();
+    }
+
+    private void pack(byte[] bytes, int offset, int length, ByteOutput output) {
+        int start = output.size();
+        if (length > 0 && length >= threshold) {
+            ByteOutput packed = take(compressed);
+            try {
+                compressor.compress(bytes, offset, length, packed);
+                if (packed.size() < length) {
+                    output.writeVarLong(length);
+                    output.write(packed.buffer(), 0, packed.size());
+                }
+            } finally {
+                give(compressed, packed);
+            }
+        }
+        if (output.size() == start) {
+            output.writeVarLong(0);
+            output.write(bytes, offset, length);
+        }
+        rawBytes.add(length);
+        storedBytes.add(output.size() - start);
+    }
+
+    /**
+     * Takes the scratch output of the current thread. A codec wrapping this
+     * codec again finds the output taken and is given a new one instead.
+     */
+    private static ByteOutput take(ThreadLocal<ByteOutput> scratch) {
+        ByteOutput output = scratch.get();
+        if (output == null) {
+            return new ByteOutput(1024);
+        }
+        scratch.set(null);
+        output.reset();
+        return output;
+    }
+
+    private static void give(ThreadLocal<ByteOutput> scratch, ByteOutput output) {
+        if (output.buffer().length <= SCRATCH_LIMIT) {
+            scratch.set(output);
+        }
+    }
+}
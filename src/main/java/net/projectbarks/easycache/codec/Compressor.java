@@ -0,0 +1,35 @@
+package net.projectbarks.easycache.codec;
+
+/**
+ * Compressor shrinks the bytes written by a codec and restores them again. A
+ * compressor is used through the {@link CompressingCodec}, which decides which
+ * values are worth compressing and keeps the length of the original bytes, so
+ * a compressor only ever has to handle whole blocks. Please refer to
+ * {@link DeflateCompressor} and {@link LzCompressor} for the compressors shipped
+ * with easy cache.
+ *
+ * Note compressors are called from many threads at once and must be thread safe.
+ */
+public interface Compressor {
+
+    /**
+     * Writes the compressed form of a range of bytes to the output.
+     *
+     * @param input the bytes to be compressed
+     * @param offset the index of the first byte to be compressed
+     * @param length the amount of bytes to be compressed
+     * @param output the output the compressed bytes are written to
+     */
+    void compress(byte[] input, int offset, int length, ByteOutput output);
+
+    /**
+     * Restores bytes written by {@link #compress(byte[], int, int, ByteOutput)}.
+     *
+     * @param input the compressed bytes
+     * @param offset the index of the first compressed byte
+     * @param length the amount of compressed bytes
+     * @param output the array the original bytes are written to, exactly their length
+     * @throws CodecException if the bytes are not a compressed block of the output length
+     */
+    void decompress(byte[] input, int offset, int length, byte[] output);
+}
@@ -0,0 +1,103 @@
+package net.projectbarks.easycache.codec;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate compressor compresses with the {@link Deflater} that ships with the
+ * JDK. Deflate finds repeats like the {@link LzCompressor} does and then also
+ * encodes them with huffman codes, which makes it the smaller but slower choice.
+ * Blocks are written without the zlib header and checksum, as the cache already
+ * knows the length of every value.
+ *
+ * Small values rarely repeat within themselves. When many small values look
+ * alike, for example json objects of the same class, a dictionary holding a
+ * typical value lets every value refer back to the dictionary instead. The same
+ * dictionary must be used to decompress the values again.
+ *
+ * Every thread keeps its own deflater, inflater and output chunk, so they are
+ * reused without any locking or allocating.
+ */
+public class DeflateCompressor implements Compressor {
+
+    private final int level;
+    private final byte[] dictionary;
+    private final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>();
+    private final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>();
+    private final ThreadLocal<byte[]> chunks = new ThreadLocal<byte[]>();
+
+    /**
+     * Creates a compressor favouring speed over size without a dictionary.
+     */
+    public DeflateCompressor() {
+        this(Deflater.BEST_SPEED, null);
+    }
+
+    /**
+     * Creates a compressor.
+     *
+     * @param level the deflate level from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     * @param dictionary bytes typical for the values compressed, or null for none
+     */
+    public DeflateCompressor(int level, byte[] dictionary) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Level must be between 1 and 9!");
+        }
+        this.level = level;
+        this.dictionary = dictionary != null ? dictionary.clone() : null;
+    }
+
+    @Override
+    public void compress(byte[] input, int offset, int length, ByteOutput output) {
+        Deflater deflater = deflaters.get();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+            deflaters.set(deflater);
+        }
+        deflater.reset();
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+        deflater.setInput(input, offset, length);
+        deflater.finish();
+        byte[] chunk = chunks.get();
+        if (chunk == null) {
+            chunk = new byte[8192];
+            chunks.set(chunk);
+        }
+        while (!deflater.finished()) {
+            int written = deflater.deflate(chunk);
+            output.write(chunk, 0, written);
+        }
+    }
+
+    @Override
+    public void decompress(byte[] input, int offset, int length, byte[] output) {
+        Inflater inflater = inflaters.get();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+            inflaters.set(inflater);
+        }
+        inflater.reset();
+        if (dictionary != null) {
+            inflater.setDictionary(dictionary);
+        }
+        inflater.setInput(input, offset, length);
+        int read = 0;
+        try {
+            while (read < output.length) {
+                int inflated = inflater.inflate(output, read, output.length - read);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                read += inflated;
+            }
+        } catch (DataFormatException exception) {
+            throw new CodecException("Corrupt compressed value!", exception);
+        }
+        if (read != output.length) {
+            throw new CodecException("Corrupt compressed value!");
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package net.projectbarks.easycache.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Gson codec stores objects as their UTF-8 json form. The json is written
+ * straight into the pooled {@link ByteOutput} without building a string first.
+ * Json is larger than the {@link BinaryCodec} but stays human readable, which
+ * makes it a good fit when stored bytes are also exported or inspected.
+ */
+public class GsonCodec implements Codec {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Gson gson;
+
+    public GsonCodec() {
+        this(new GsonBuilder().serializeNulls().create());
+    }
+
+    /**
+     * Creates a codec using a configured gson instance, for example one
+     * with type adapters registered for your own classes.
+     *
+     * @param gson the gson instance used to write and read json
+     */
+    public GsonCodec(Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public void encode(Object value, ByteOutput output) {
+        try {
+            gson.toJson(value, new Utf8Writer(output));
+        } catch (JsonParseException exception) {
+            throw new CodecException("Failed to encode " + value.getClass().getName() + "!", exception);
+        }
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        try {
+            return gson.fromJson(new String(bytes, UTF_8), type);
+        } catch (RuntimeException exception) {
+            throw new CodecException("Failed to decode " + type.getName() + "!", exception);
+        }
+    }
+
+    /**
+     * Utf8 writer encodes the characters handed to it as UTF-8 directly
+     * into a byte output, surrogate pairs split over two writes are kept
+     * until the second half arrives.
+     */
+    private static final class Utf8Writer extends Writer {
+        private final ByteOutput output;
+        private char highSurrogate;
+
+        Utf8Writer(ByteOutput output) {
+            this.output = output;
+        }
+
+        @Override
+        public void write(int c) {
+            char ch = (char) c;
+            if (highSurrogate != 0) {
+                char high = highSurrogate;
+                highSurrogate = 0;
+                if (Character.isLowSurrogate(ch)) {
+                    int point = Character.toCodePoint(high, ch);
+                    output.write(0xF0 | (point >> 18));
+                    output.write(0x80 | ((point >> 12) & 0x3F));
+                    output.write(0x80 | ((point >> 6) & 0x3F));
+                    output.write(0x80 | (point & 0x3F));
+                    return;
+                }
+                output.write('?');
+            }
+            if (ch < 0x80) {
+                output.write(ch);
+            } else if (ch < 0x800) {
+                output.write(0xC0 | (ch >> 6));
+                output.write(0x80 | (ch & 0x3F));
+            } else if (Character.isHighSurrogate(ch)) {
+                highSurrogate = ch;
+            } else if (Character.isLowSurrogate(ch)) {
+                output.write('?');
+            } else {
+                output.write(0xE0 | (ch >> 12));
+                output.write(0x80 | ((ch >> 6) & 0x3F));
+                output.write(0x80 | (ch & 0x3F));
+            }
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(buffer[i]);
+            }
+        }
+
+        @Override
+        public void write(String string, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(string.charAt(i));
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package net.projectbarks.easycache.codec;
+
+import java.util.Arrays;
+
+/**
+ * Lz compressor is a fast pure java compressor in the spirit of LZ4. The input
+ * is scanned once, every four bytes are hashed into a table holding the last
+ * position they were seen at, and a repeat of at least four bytes is written as
+ * a reference back to the earlier bytes instead of the bytes themselves. Nothing
+ * is entropy coded, which keeps compressing and especially decompressing far
+ * faster than the {@link DeflateCompressor} at the cost of a lower ratio.
+ *
+ * The compressed block is a series of sequences. Each sequence starts with a
+ * token byte holding the amount of literal bytes in its high four bits and the
+ * match length less four in its low four bits, fifteen meaning more bytes of 255
+ * follow until a smaller byte ends the count. The literals follow the token, then
+ * the two byte little endian distance back to the match and any extra match length.
+ * The last sequence only holds literals.
+ *
+ * A dictionary holding a typical value is treated as if it came right before
+ * every value, so even small values can refer back to it. The same dictionary
+ * must be used to decompress the values again.
+ *
+ * Every thread keeps its own hash table, along with a buffer already holding
+ * the dictionary when there is one, so compressing a value allocates nothing.
+ * Rather than clearing the table for every value, positions are stored offset
+ * by a base that moves past every value compressed, so positions of earlier
+ * values are below the base and simply ignored.
+ */
+public class LzCompressor implements Compressor {
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int MAX_HASH_BITS = 14;
+    /** Dictionary buffers grown past this size are dropped instead of kept for the thread. */
+    private static final int SCRATCH_LIMIT = 1 << 20;
+
+    private final byte[] dictionary;
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>();
+
+    /**
+     * Creates a compressor without a dictionary.
+     */
+    public LzCompressor() {
+        this(null);
+    }
+
+    /**
+     * Creates a compressor using a dictionary, only the last 64 KB of the
+     * dictionary can be referred to.
+     *
+     * @param dictionary bytes typical for the values compressed, or null for none
+     */
+    public LzCompressor(byte[] dictionary) {
+        if (dictionary != null && dictionary.length > MAX_DISTANCE) {
+            dictionary = Arrays.copyOfRange(dictionary, dictionary.length - MAX_DISTANCE, dictionary.length);
+        }
+        this.dictionary = dictionary != null ? dictionary.clone() : new byte[0];
+    }
+
+    @Override
+    public void compress(byte[] input, int offset, int length, ByteOutput output) {
+        Scratch state = scratch();
+        byte[] source = input;
+        int start = offset;
+        if (dictionary.length > 0) {
+            source = state.withDictionary(dictionary, length);
+            System.arraycopy(input, offset, source, dictionary.length, length);
+            start = dictionary.length;
+        }
+        int end = start + length;
+        int from = source == input ? offset : 0;
+        int bits = Math.max(8, Math.min(MAX_HASH_BITS, 32 - Integer.numberOfLeadingZeros(end - from)));
+        int[] table = state.table;
+        // Positions are kept above the base so anything at or below it marks an empty slot.
+        int base = state.next(end - from + 1) - from;
+        for (int i = from; i + MIN_MATCH <= start; i++) {
+            table[hash(source, i, bits)] = base + i + 1;
+        }
+        int anchor = start, i = start, limit = end - MIN_MATCH;
+        int floor = base + from;
+        while (i <= limit) {
+            int slot = hash(source, i, bits);
+            int stored = table[slot];
+            int candidate = stored - base - 1;
+            table[slot] = base + i + 1;
+            if (stored <= floor || i - candidate > MAX_DISTANCE || readInt(source, candidate) != readInt(source, i)) {
+                i++;
+                continue;
+            }
+            int matchLength = MIN_MATCH;
+            while (i + matchLength < end && source[candidate + matchLength] == source[i + matchLength]) {
+                matchLength++;
+            }
+            writeSequence(output, source, anchor, i - anchor, i - candidate, matchLength);
+            i += matchLength;
+            anchor = i;
+        }
+        writeSequence(output, source, anchor, end - anchor, 0, 0);
+    }
+
+    @Override
+    public void decompress(byte[] input, int offset, int length, byte[] output) {
+        int prefix = dictionary.length;
+        byte[] target = output;
+        if (prefix > 0) {
+            target = scratch().withDictionary(dictionary, output.length);
+        }
+        int position = offset, end = offset + length, written = prefix, limit = prefix + output.length;
+        try {
+            while (true) {
+                int token = input[position++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int more;
+                    do {
+                        more = input[position++] & 0xFF;
+                        literals += more;
+                    } while (more == 255);
+                }
+                if (literals > limit - written || literals > end - position) {
+                    throw new CodecException("Corrupt compressed value!");
+                }
+                System.arraycopy(input, position, target, written, literals);
+                position += literals;
+                written += literals;
+                if (written == limit) {
+                    break;
+                }
+                int distance = (input[position++] & 0xFF) | (input[position++] & 0xFF) << 8;
+                int matchLength = token & 0x0F;
+                if (matchLength == 15) {
+                    int more;
+                    do {
+                        more = input[position++] & 0xFF;
+                        matchLength += more;
+                    } while (more == 255);
+                }
+                matchLength += MIN_MATCH;
+                int match = written - distance;
+                if (distance == 0 || match < 0 || matchLength > limit - written) {
+                    throw new CodecException("Corrupt compressed value!");
+                }
+                // Byte by byte as a match may overlap the bytes it produces.
+                for (int j = 0; j < matchLength; j++) {
+                    target[written++] = target[match++];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException exception) {
+            throw new CodecException("Corrupt compressed value!", exception);
+        }
+        if (position != end) {
+            throw new CodecException("Corrupt compressed value!");
+        }
+        if (target != output) {
+            System.arraycopy(target, prefix, output, 0, output.length);
+        }
+    }
+
+    private Scratch scratch() {
+        Scratch state = scratch.get();
+        if (state == null) {
+            state = new Scratch();
+            scratch.set(state);
+        }
+        return state;
+    }
+
+    private static void writeSequence(ByteOutput output, byte[] source, int literalStart, int literals, int distance, int matchLength) {
+        int extraMatch = matchLength - MIN_MATCH;
+        int token = Math.min(literals, 15) << 4 | (distance == 0 ? 0 : Math.min(extraMatch, 15));
+        output.write(token);
+        if (literals >= 15) {
+            writeCount(output, literals - 15);
+        }
+        output.write(source, literalStart, literals);
+        if (distance == 0) {
+            return;
+        }
+        output.write(distance & 0xFF);
+        output.write(distance >>> 8);
+        if (extraMatch >= 15) {
+            writeCount(output, extraMatch - 15);
+        }
+    }
+
+    private static void writeCount(ByteOutput output, int count) {
+        while (count >= 255) {
+            output.write(255);
+            count -= 255;
+        }
+        output.write(count);
+    }
+
+    private static int hash(byte[] bytes, int index, int bits) {
+        return (readInt(bytes, index) * -1640531535) >>> (32 - bits);
+    }
+
+    private static int readInt(byte[] bytes, int index) {
+        return (bytes[index] & 0xFF) | (bytes[index + 1] & 0xFF) << 8
+                | (bytes[index + 2] & 0xFF) << 16 | (bytes[index + 3] & 0xFF) << 24;
+    }
+
+    /**
+     * Scratch holds the hash table and dictionary buffer of a single thread.
+     */
+    private static final class Scratch {
+        final int[] table = new int[1 << MAX_HASH_BITS];
+        /** Every position stored so far is at or below the base. */
+        int base;
+        byte[] buffer;
+
+        /**
+         * Moves the base past the positions of the value being compressed,
+         * clearing the table once the base would overflow.
+         *
+         * @param positions the amount of positions the value may store
+         * @return the base the positions of the value are stored above
+         */
+        int next(int positions) {
+            if (base > Integer.MAX_VALUE - positions) {
+                Arrays.fill(table, 0);
+                base = 0;
+            }
+            int current = base;
+            base += positions;
+            return current;
+        }
+
+        /**
+         * Gets a buffer starting with the dictionary with room for a value
+         * after it. Buffers too large to keep are handed out once.
+         */
+        byte[] withDictionary(byte[] dictionary, int length) {
+            int size = dictionary.length + length;
+            if (buffer != null && buffer.length >= size) {
+                return buffer;
+            }
+            byte[] bytes = new byte[Math.max(size, Math.min(SCRATCH_LIMIT, size * 2))];
+            System.arraycopy(dictionary, 0, bytes, 0, dictionary.length);
+            if (bytes.length <= SCRATCH_LIMIT) {
+                buffer = bytes;
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package net.projectbarks.easycache.datastore;
+
+import net.projectbarks.easycache.codec.CompressingCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Binary snapshot loader reads back a file written by the {@link BinarySnapshotStore}.
+ * The file is memory mapped in large windows and records are read straight from the
+ * mapping, so the file is streamed without being copied through intermediate buffers
+ * and without loading all of it at once. Values are handed on as their raw bytes
+ * so they are never turned into strings.
+ *
+ * A compressed snapshot can only be read by a loader given the codec it was
+ * written with, its values are restored by {@link #decode(CacheLoader.Result)}
+ * so that work is spread over the importing threads.
+ */
+public class BinarySnapshotLoader extends BulkCacheLoader {
+
+    private static final int WINDOW_SIZE = 1 << 26;
+
+    private final FileChannel channel;
+    private final long size;
+    private final CompressingCodec codec;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    /**
+     * Creates a loader reading the snapshot file given.
+     *
+     * @param file the snapshot file
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public BinarySnapshotLoader(File file) throws IOException {
+        this(file, null);
+    }
+
+    /**
+     * Creates a loader reading the snapshot file given, which may have been
+     * compressed with the codec given.
+     *
+     * @param file the snapshot file
+     * @param codec the codec the snapshot was compressed with, or null if it was not
+     * @throws IOException if the file cannot be read, is not a snapshot or is compressed without a codec given
+     */
+    public BinarySnapshotLoader(File file, CompressingCodec codec) throws IOException {
+        channel = new RandomAccessFile(file, "r").getChannel();
+        size = channel.size();
+        map(0, 4);
+        int magic = size < 4 ? 0 : window.getInt();
+        if (magic != BinarySnapshotStore.MAGIC && magic != BinarySnapshotStore.COMPRESSED_MAGIC) {
+            channel.close();
+            throw new IOException(file + " is not a snapshot!");
+        }
+        if (magic == BinarySnapshotStore.COMPRESSED_MAGIC && codec == null) {
+            channel.close();
+            throw new IOException(file + " is compressed but no codec was given!");
+        }
+        this.codec = magic == BinarySnapshotStore.COMPRESSED_MAGIC ? codec : null;
+    }
+
+    @Override
+    public boolean loadChunk(List<Result> chunk, int max) {
+        try {
+            for (int i = 0; i < max; i++) {
+                if (windowStart + window.position() >= size) {
+                    break;
+                }
+                ensure(4);
+                int keyLength = window.getInt();
+                ensure(keyLength + 20);
+                byte[] key = new byte[keyLength];
+                window.get(key);
+                Result result = new Result();
+                result.setKey(new String(key, BinarySnapshotStore.UTF_8));
+                result.setLifetime(window.getLong());
+                result.setUpdateTime(window.getLong());
+                int valueLength = window.getInt();
+                ensure(valueLength);
+                byte[] value = new byte[valueLength];
+                window.get(value);
+                result.setEncodedValue(value);
+                chunk.add(result);
+            }
+            if (windowStart + window.position() < size) {
+                return true;
+            }
+            channel.close();
+            return false;
+        } catch (IOException exception) {
+            throw new RuntimeException("Failed to read snapshot!", exception);
+        }
+    }
+
+    @Override
+    public void decode(Result result) {
+        if (codec != null) {
+            result.setEncodedValue(codec.unpack(result.getEncodedValue()));
+        }
+    }
+
+    /**
+     * Makes sure the next bytes are within the mapped window, mapping a new
+     * window from the current position when they are not.
+     */
+    private void ensure(int bytes) throws IOException {
+        if (window.remaining() >= bytes) {
+            return;
+        }
+        long position = windowStart + window.position();
+        if (position + bytes > size) {
+            throw new IOException("Snapshot is truncated!");
+        }
+        map(position, bytes);
+    }
+
+    private void map(long position, int bytes) throws IOException {
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, Math.max(bytes, WINDOW_SIZE)));
+    }
+}
@@ -0,0 +1,123 @@
+package net.projectbarks.easycache.datastore;
+
+import net.projectbarks.easycache.codec.CompressingCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Binary snapshot store writes the cache to a single file that can be read back
+ * by the {@link BinarySnapshotLoader}. Every object is written as a length prefixed
+ * record holding its key, its json value, the time it has left to live and the
+ * time it may go unused. Records are gathered in a large direct buffer and written
+ * to the file channel in one sequential write whenever the buffer fills up.
+ *
+ * A store given a {@link CompressingCodec} compresses every value with it and
+ * marks the file as compressed, the loader must then be given the same codec.
+ *
+ * Note a store writes a single snapshot, use a new store for every export.
+ */
+public class BinarySnapshotStore extends CacheStore {
+
+    /** The first bytes of every snapshot file, "ECS1". */
+    static final int MAGIC = 0x45435331;
+    /** The first bytes of every compressed snapshot file, "ECS2". */
+    static final int COMPRESSED_MAGIC = 0x45435332;
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CompressingCodec codec;
+
+    /**
+     * Creates a store writing to the file given, any existing file is replaced.
+     *
+     * @param file the snapshot file
+     * @throws IOException if the file cannot be opened for writing
+     */
+    public BinarySnapshotStore(File file) throws IOException {
+        this(file, null);
+    }
+
+    /**
+     * Creates a store writing a compressed snapshot to the file given, any
+     * existing file is replaced.
+     *
+     * @param file the snapshot file
+     * @param codec the codec the values are compressed with, or null to not compress
+     * @throws IOException if the file cannot be opened for writing
+     */
+    public BinarySnapshotStore(File file, CompressingCodec codec) throws IOException {
+        RandomAccessFile access = new RandomAccessFile(file, "rw");
+        access.setLength(0);
+        channel = access.getChannel();
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.putInt(codec != null ? COMPRESSED_MAGIC : MAGIC);
+        this.codec = codec;
+    }
+
+    @Override
+    public void store(String key, String value, Object rawValue, int index, int total) {
+        store(key, value, rawValue, -1, 0, index, total);
+    }
+
+    @Override
+    public void store(String key, String value, Object rawValue, long lifetime, long updateTime, int index, int total) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        byte[] valueBytes = value.getBytes(UTF_8);
+        if (codec != null) {
+            valueBytes = codec.pack(valueBytes);
+        }
+        int length = 24 + keyBytes.length + valueBytes.length;
+        try {
+            if (buffer.remaining() < length) {
+                flush();
+            }
+            if (buffer.remaining() < length) {
+                ByteBuffer large = ByteBuffer.allocate(length);
+                write(large, keyBytes, valueBytes, lifetime, updateTime);
+                large.flip();
+                while (large.hasRemaining()) {
+                    channel.write(large);
+                }
+                return;
+            }
+            write(buffer, keyBytes, valueBytes, lifetime, updateTime);
+        } catch (IOException exception) {
+            throw new RuntimeException("Failed to write snapshot!", exception);
+        }
+    }
+
+    @Override
+    public void finish() {
+        try {
+            flush();
+            channel.force(false);
+            channel.close();
+        } catch (IOException exception) {
+            throw new RuntimeException("Failed to write snapshot!", exception);
+        }
+    }
+
+    private static void write(ByteBuffer buffer, byte[] key, byte[] value, long lifetime, long updateTime) {
+        buffer.putInt(key.length);
+        buffer.put(key);
+        buffer.putLong(lifetime);
+        buffer.putLong(updateTime);
+        buffer.putInt(value.length);
+        buffer.put(value);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,70 @@
+package net.projectbarks.easycache.datastore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk cache loader loads objects in chunks rather than one at a time. When a
+ * bulk loader is imported with {@link net.projectbarks.easycache.EasyCache#importCache(CacheLoader)}
+ * chunks are read one after another on the importing thread, while the chunks
+ * already read are decoded and stored in the cache by a fork join pool. Objects are
+ * stored in batches that take the lock of each segment only once, so warming
+ * the cache scales with the amount of cores rather than running on one thread.
+ *
+ * Refer to {@link #loadChunk(java.util.List, int)} and {@link #decode(CacheLoader.Result)}
+ * for the methods to implement. Bulk loaders can still be used where a plain
+ * {@link CacheLoader} is expected.
+ */
+public abstract class BulkCacheLoader extends CacheLoader {
+
+    private final List<Result> pending = new ArrayList<Result>();
+    private int pendingIndex;
+    private boolean remainingChunks = true;
+
+    /**
+     * Load chunk adds the next objects from the database/storage to the chunk
+     * given, for example the rows of a single query page. Chunks are always loaded
+     * from one thread at a time and in order, so a cursor can be kept between calls.
+     * Results with a null key or value are ignored.
+     *
+     * @param chunk the list the loaded objects are added to
+     * @param max the most objects to add to the chunk
+     * @return true if there are objects remaining after this chunk
+     */
+    public abstract boolean loadChunk(List<Result> chunk, int max);
+
+    /**
+     * Decode is called for every loaded object before it is stored and may
+     * be used for expensive work such as turning a raw database value into
+     * json. Unlike {@link #loadChunk(java.util.List, int)} decode runs on many
+     * threads at once and must be thread safe. By default nothing is done.
+     *
+     * @param result the loaded object to be decoded
+     */
+    public void decode(Result result) {
+    }
+
+    /**
+     * Passes the loaded chunks on one object at a time, so a bulk loader
+     * still follows the protocol of {@link CacheLoader}.
+     *
+     * @param result the result of the function.
+     * @return the next loaded object
+     */
+    @Override
+    public Result load(Result result) {
+        while (pendingIndex == pending.size() && remainingChunks) {
+            pending.clear();
+            pendingIndex = 0;
+            remainingChunks = loadChunk(pending, 1024);
+        }
+        if (pendingIndex == pending.size()) {
+            return result;
+        }
+        Result next = pending.get(pendingIndex);
+        pending.set(pendingIndex++, null);
+        decode(next);
+        next.setRemainingValues(pendingIndex < pending.size() || remainingChunks);
+        return next;
+    }
+}
@@ -50,6 +50,33 @@ public abstract class CacheLoader {
          * @return the key associated with the value.
          */
         @Getter @Setter private String key = null;
+        /**
+         * Lifetime is the amount of milliseconds the object has left to
+         * live, -1 if it never expires. When left null the default lifetime
+         * of {@link net.projectbarks.easycache.EasyCache} is used.
+         *
+         * @param l the milliseconds the object has left to live
+         * @return the milliseconds the object has left to live
+         */
+        @Getter @Setter private Long lifetime = null;
+        /**
+         * Update time is the amount of milliseconds the object may go unused.
+         * When left null the default update time of
+         * {@link net.projectbarks.easycache.EasyCache} is used.
+         *
+         * @param u the milliseconds the object may go unused
+         * @return the milliseconds the object may go unused
+         */
+        @Getter @Setter private Long updateTime = null;
+        /**
+         * The UTF-8 bytes of the json value. Loaders that read the value as
+         * bytes can set this instead of value to skip converting it to a
+         * string and back, when set it is used in place of value.
+         *
+         * @param b the UTF-8 bytes of the json value
+         * @return the UTF-8 bytes of the json value
+         */
+        @Getter @Setter private byte[] encodedValue = null;
     }
 
     /**
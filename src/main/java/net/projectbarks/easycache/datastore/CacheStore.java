@@ -27,4 +27,29 @@ public abstract class CacheStore {
      * @param total the total objects being stored.
      */
     public abstract void store(String key, String value, Object rawValue, int index, int total);
+
+    /**
+     * Store along with the time the object has left to live and the amount of time it
+     * may go unused. Both are needed to restore the object exactly as it was, by default
+     * they are ignored and {@link #store(String, String, Object, int, int)} is called.
+     *
+     * @param key the key of the object that was set in the Easy cache store functions.
+     * @param value The serialized value associated with the key
+     * @param rawValue the raw/non-serialized value associated with the key
+     * @param lifetime the milliseconds the object has left to live or -1 if it never expires
+     * @param updateTime the milliseconds the object may go unused
+     * @param index the index within the cache
+     * @param total the total objects being stored.
+     */
+    public void store(String key, String value, Object rawValue, long lifetime, long updateTime, int index, int total) {
+        store(key, value, rawValue, index, total);
+    }
+
+    /**
+     * Finish is called once every object of the snapshot has been passed to store,
+     * even when the export stopped early because of an error. Stores writing to a
+     * file or connection should flush and close it here.
+     */
+    public void finish() {
+    }
 }
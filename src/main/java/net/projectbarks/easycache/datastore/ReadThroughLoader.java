@@ -0,0 +1,52 @@
+package net.projectbarks.easycache.datastore;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read through loader loads the objects the cache is asked for but does not
+ * hold. Once set with {@link net.projectbarks.easycache.EasyCache#setReadThrough(ReadThroughLoader)}
+ * every miss of {@link net.projectbarks.easycache.EasyCache#getCachedObject(String, Class) getCachedObject}
+ * is passed to {@link #load(String)} and the misses of
+ * {@link net.projectbarks.easycache.EasyCache#getAll(java.util.Collection, Class) getAll}
+ * are passed to {@link #loadAll(java.util.Collection)} together. Loaded objects are
+ * stored with the default lifetime before they are handed out.
+ *
+ * Only a single load per key is ever running, threads missing a key that is
+ * already being loaded wait for that load. The loader is therefore called at most
+ * once per key at a time no matter how many threads miss it, which bounds the load
+ * put on the source behind it.
+ */
+public abstract class ReadThroughLoader {
+
+    /**
+     * Loads the object of a key from the database/storage.
+     *
+     * @param key the key the cache was asked for
+     * @return the object or null if there is none, null is not stored
+     * @throws Exception when the object cannot be loaded, the exception is passed to every waiting caller
+     */
+    public abstract Object load(String key) throws Exception;
+
+    /**
+     * Loads the objects of several keys at once, for example with a single query.
+     * Keys without an object are left out of the map returned. By default every
+     * key is loaded one after another with {@link #load(String)}, override it when
+     * the source can look up many keys faster than one at a time.
+     *
+     * @param keys the keys the cache was asked for and does not hold
+     * @return the objects found mapped by their key
+     * @throws Exception when the objects cannot be loaded, nothing is stored
+     */
+    public Map<String, Object> loadAll(Collection<String> keys) throws Exception {
+        Map<String, Object> values = new HashMap<String, Object>(keys.size() * 2);
+        for (String key : keys) {
+            Object value = load(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+}
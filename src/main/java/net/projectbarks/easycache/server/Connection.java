@@ -0,0 +1,377 @@
+package net.projectbarks.easycache.server;
+
+import net.projectbarks.easycache.EasyCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection reads the commands of a single client of the {@link MemcachedServer}
+ * and queues the replies. Every complete command in the read buffer is run
+ * before anything is written, so pipelined commands are answered by a single
+ * gathering write. A set waiting for the rest of its value leaves its command
+ * line in the buffer and is parsed again once more bytes arrived, the buffer
+ * grows to fit the value when needed.
+ *
+ * Replies are queued as buffers, the bytes of a value found are wrapped rather
+ * than copied so only the short lines around them are written to new buffers.
+ * A value set is read straight into the array stored in the cache, after the
+ * header of its {@link Item}.
+ */
+final class Connection {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final int BUFFER_SIZE = 1 << 14;
+    private static final int MAX_KEY_LENGTH = 250;
+    private static final int MAX_LINE_LENGTH = 1 << 16;
+    /** The most reply bytes queued before the client is no longer read from. */
+    private static final long MAX_QUEUED = 1 << 22;
+    /** Expiry times past thirty days are unix times rather than seconds from now. */
+    private static final long MAX_RELATIVE_EXPIRY = TimeUnit.DAYS.toSeconds(30);
+
+    private final MemcachedServer server;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ArrayDeque<ByteBuffer> replies = new ArrayDeque<ByteBuffer>();
+    private ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+    private ByteBuffer text;
+    private long queued;
+    /** The bytes of a refused value still to be skipped. */
+    private long skip;
+    /** The index of the command line being run within the buffer. */
+    private int lineStart;
+    /** The bytes a set waiting for its value needs in the buffer. */
+    private int needed;
+    private boolean closing;
+
+    Connection(MemcachedServer server, SocketChannel channel, SelectionKey key) {
+        this.server = server;
+        this.channel = channel;
+        this.key = key;
+    }
+
+    /**
+     * Reads what the client sent, runs every complete command and writes
+     * as many of the replies as the socket takes.
+     */
+    void read() throws IOException {
+        if (channel.read(input) < 0) {
+            close();
+            return;
+        }
+        process();
+        write();
+    }
+
+    /**
+     * Writes the queued replies, only waiting for the socket to become
+     * writable again when some are left.
+     */
+    void write() throws IOException {
+        endText();
+        while (!replies.isEmpty()) {
+            long written = channel.write(replies.toArray(new ByteBuffer[replies.size()]));
+            queued -= written;
+            while (!replies.isEmpty() && !replies.peek().hasRemaining()) {
+                replies.poll();
+            }
+            if (written == 0) {
+                break;
+            }
+        }
+        if (replies.isEmpty() && closing) {
+            close();
+            return;
+        }
+        int ops = replies.isEmpty() ? 0 : SelectionKey.OP_WRITE;
+        if (!closing && queued < MAX_QUEUED) {
+            ops |= SelectionKey.OP_READ;
+        }
+        key.interestOps(ops);
+    }
+
+    private void process() {
+        input.flip();
+        needed = 0;
+        while (!closing && input.hasRemaining()) {
+            if (skip > 0) {
+                int skipped = (int) Math.min(skip, input.remaining());
+                input.position(input.position() + skipped);
+                skip -= skipped;
+                continue;
+            }
+            int start = lineStart = input.position();
+            int end = indexOf(input, start, '\n');
+            if (end < 0) {
+                if (input.remaining() > MAX_LINE_LENGTH) {
+                    reply("CLIENT_ERROR line too long\r\n");
+                    closing = true;
+                }
+                break;
+            }
+            input.position(end + 1);
+            if (end > start && input.get(end - 1) == '\r') {
+                end--;
+            }
+            if (!run(tokens(input.array(), start, end))) {
+                input.position(start);
+                break;
+            }
+        }
+        input.compact();
+        if (needed > input.capacity() || !input.hasRemaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(needed, input.capacity() * 2));
+            input.flip();
+            larger.put(input);
+            input = larger;
+        } else if (input.position() == 0 && input.capacity() > BUFFER_SIZE) {
+            input = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Runs a single command.
+     *
+     * @return false if the command needs more bytes than were read so far
+     */
+    private boolean run(String[] tokens) {
+        if (tokens.length == 0) {
+            reply("ERROR\r\n");
+            return true;
+        }
+        String command = tokens[0];
+        try {
+            if (command.equals("get") || command.equals("gets")) {
+                get(tokens, command.equals("gets"));
+            } else if (command.equals("set") || command.equals("cas")) {
+                return set(tokens, command.equals("cas"));
+            } else if (command.equals("delete")) {
+                delete(tokens);
+            } else if (command.equals("touch")) {
+                touch(tokens);
+            } else if (command.equals("version")) {
+                reply("VERSION easycache\r\n");
+            } else if (command.equals("quit")) {
+                closing = true;
+            } else {
+                reply("ERROR\r\n");
+            }
+        } catch (NumberFormatException exception) {
+            reply("CLIENT_ERROR bad command line format\r\n");
+        } catch (IllegalArgumentException exception) {
+            reply("CLIENT_ERROR " + exception.getMessage() + "\r\n");
+        } catch (RuntimeException exception) {
+            reply("SERVER_ERROR " + exception.getMessage() + "\r\n");
+        }
+        return true;
+    }
+
+    private void get(String[] tokens, boolean withCas) {
+        if (tokens.length < 2) {
+            reply("ERROR\r\n");
+            return;
+        }
+        for (int i = 1; i < tokens.length; i++) {
+            String key = checkKey(tokens[i]);
+            Item item = find(key);
+            if (item == null) {
+                continue;
+            }
+            reply("VALUE " + key + " " + (item.flags() & 0xFFFFFFFFL) + " " + item.length()
+                    + (withCas ? " " + item.cas() : "") + "\r\n");
+            reply(item.data());
+            reply("\r\n");
+        }
+        reply("END\r\n");
+    }
+
+    private boolean set(String[] tokens, boolean compare) {
+        int arguments = compare ? 6 : 5;
+        if (tokens.length != arguments && !(tokens.length == arguments + 1 && tokens[arguments].equals("noreply"))) {
+            reply("ERROR\r\n");
+            return true;
+        }
+        boolean noReply = tokens.length > arguments;
+        int length = Integer.parseInt(tokens[4]);
+        if (length < 0) {
+            throw new NumberFormatException();
+        }
+        String key;
+        long flags, expiry, expected;
+        try {
+            key = checkKey(tokens[1]);
+            flags = Long.parseLong(tokens[2]);
+            expiry = Long.parseLong(tokens[3]);
+            expected = compare ? Long.parseLong(tokens[5]) : 0;
+            if (flags < 0 || flags > 0xFFFFFFFFL) {
+                throw new NumberFormatException();
+            }
+        } catch (IllegalArgumentException exception) {
+            // The value still follows a refused command line, it is skipped so it is never run as a command.
+            skip = length + 2L;
+            throw exception;
+        }
+        if (length > server.getMaxItemSize()) {
+            skip = length + 2L;
+            if (!noReply) {
+                reply("SERVER_ERROR object too large for cache\r\n");
+            }
+            return true;
+        }
+        if (input.remaining() < length + 2) {
+            needed = input.position() - lineStart + length + 2;
+            return false;
+        }
+        Item item = Item.create((int) flags, server.nextCas(), length);
+        input.get(item.bytes, Item.HEADER, length);
+        if (input.get() != '\r' || input.get() != '\n') {
+            reply("CLIENT_ERROR bad data chunk\r\n");
+            return true;
+        }
+        String result;
+        Item current = compare ? find(key) : null;
+        if (compare && current == null) {
+            result = "NOT_FOUND";
+        } else if (compare && current.cas() != expected) {
+            result = "EXISTS";
+        } else {
+            store(key, item, expiry);
+            result = "STORED";
+        }
+        if (!noReply) {
+            reply(result + "\r\n");
+        }
+        return true;
+    }
+
+    private void delete(String[] tokens) {
+        if (tokens.length < 2 || tokens.length > 3 || (tokens.length == 3 && !tokens[2].equals("noreply"))) {
+            reply("ERROR\r\n");
+            return;
+        }
+        String key = checkKey(tokens[1]);
+        boolean deleted = find(key) != null && EasyCache.deleteEntryFromCache(key);
+        if (tokens.length == 2) {
+            reply(deleted ? "DELETED\r\n" : "NOT_FOUND\r\n");
+        }
+    }
+
+    private void touch(String[] tokens) {
+        if (tokens.length < 3 || tokens.length > 4 || (tokens.length == 4 && !tokens[3].equals("noreply"))) {
+            reply("ERROR\r\n");
+            return;
+        }
+        String key = checkKey(tokens[1]);
+        long expiry = Long.parseLong(tokens[2]);
+        Item item = find(key);
+        if (item != null) {
+            store(key, item, expiry);
+        }
+        if (tokens.length == 3) {
+            reply(item != null ? "TOUCHED\r\n" : "NOT_FOUND\r\n");
+        }
+    }
+
+    /**
+     * Finds the item of a key, objects that were not stored through the
+     * server are treated as missing.
+     */
+    private static Item find(String key) {
+        try {
+            return Item.of(EasyCache.getCachedObject(key, byte[].class));
+        } catch (ClassCastException exception) {
+            return null;
+        }
+    }
+
+    private static void store(String key, Item item, long expiry) {
+        long lifetime;
+        if (expiry == 0) {
+            lifetime = EasyCache.getDefaultLifetime();
+        } else if (expiry > MAX_RELATIVE_EXPIRY) {
+            lifetime = TimeUnit.SECONDS.toMillis(expiry) - System.currentTimeMillis();
+        } else {
+            lifetime = TimeUnit.SECONDS.toMillis(expiry);
+        }
+        if (lifetime <= 0) {
+            EasyCache.deleteEntryFromCache(key);
+            return;
+        }
+        EasyCache.storeCacheObject(key, item.bytes, TimeUnit.MILLISECONDS, lifetime);
+    }
+
+    private static String checkKey(String key) {
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("key too long");
+        }
+        return key;
+    }
+
+    private void reply(String line) {
+        int length = line.length();
+        if (text == null || text.remaining() < length) {
+            endText();
+            text = ByteBuffer.allocate(Math.max(length, 1 << 10));
+        }
+        for (int i = 0; i < length; i++) {
+            text.put((byte) line.charAt(i));
+        }
+    }
+
+    private void reply(ByteBuffer bytes) {
+        endText();
+        replies.add(bytes);
+        queued += bytes.remaining();
+    }
+
+    private void endText() {
+        if (text != null && text.position() > 0) {
+            text.flip();
+            replies.add(text);
+            queued += text.remaining();
+        }
+        text = null;
+    }
+
+    private void close() throws IOException {
+        key.cancel();
+        channel.close();
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, char b) {
+        for (int i = from, limit = buffer.limit(); i < limit; i++) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Splits a command line on spaces.
+     */
+    private static String[] tokens(byte[] line, int start, int end) {
+        List<String> tokens = new ArrayList<String>();
+        int i = start;
+        while (i < end) {
+            while (i < end && line[i] == ' ') {
+                i++;
+            }
+            int from = i;
+            while (i < end && line[i] != ' ') {
+                i++;
+            }
+            if (i > from) {
+                tokens.add(new String(line, from, i - from, ASCII));
+            }
+        }
+        return tokens.toArray(new String[tokens.size()]);
+    }
+}
@@ -0,0 +1,72 @@
+package net.projectbarks.easycache.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Item is a value the {@link MemcachedServer} stores in the cache for a key
+ * set by a client. The value is kept as a single byte array, a short header
+ * holding the opaque flags of the client and the unique number compared by
+ * the cas command followed by the bytes exactly as the client sent them. Kept
+ * as a byte array the value is weighed by its length and the binary codec
+ * writes it as it is rather than as a json array of numbers.
+ */
+final class Item {
+
+    /** The first bytes of every item, "ECM1", telling items apart from other byte arrays. */
+    private static final int MAGIC = 0x45434D31;
+    static final int HEADER = 16;
+
+    final byte[] bytes;
+
+    private Item(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Creates an item with room for the bytes of the client after its header.
+     *
+     * @param flags the flags of the client
+     * @param cas the unique number of the item
+     * @param length the amount of bytes sent by the client
+     * @return the item, its bytes still to be filled in from {@link #HEADER}
+     */
+    static Item create(int flags, long cas, int length) {
+        ByteBuffer bytes = ByteBuffer.allocate(HEADER + length);
+        bytes.putInt(MAGIC).putInt(flags).putLong(cas);
+        return new Item(bytes.array());
+    }
+
+    /**
+     * Reads an item from a value found in the cache.
+     *
+     * @param value the value found
+     * @return the item or null when the value was not stored by the server
+     */
+    static Item of(byte[] value) {
+        if (value == null || value.length < HEADER || ByteBuffer.wrap(value).getInt() != MAGIC) {
+            return null;
+        }
+        return new Item(value);
+    }
+
+    int flags() {
+        return ByteBuffer.wrap(bytes).getInt(4);
+    }
+
+    long cas() {
+        return ByteBuffer.wrap(bytes).getLong(8);
+    }
+
+    int length() {
+        return bytes.length - HEADER;
+    }
+
+    /**
+     * Wraps the bytes of the client without copying them.
+     *
+     * @return a buffer holding the bytes of the client
+     */
+    ByteBuffer data() {
+        return ByteBuffer.wrap(bytes, HEADER, length());
+    }
+}
@@ -0,0 +1,230 @@
+package net.projectbarks.easycache.server;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * Memcached server shares the {@link net.projectbarks.easycache.EasyCache} of
+ * this process over tcp using the memcached text protocol, so other processes
+ * and services written in any language can use the same cache through a
+ * standard memcached client. The get, gets, set, cas, delete, touch, version and
+ * quit commands are supported.
+ *
+ * Every connection is served by a single thread with a non blocking selector.
+ * Each command only takes a segment lock of the cache for a moment, so one thread
+ * keeps up with many connections without a thread per client. Clients may send
+ * many commands without waiting for the replies, every command read is answered
+ * in order and the replies are written together. Once a client stops reading its
+ * replies the server stops reading its commands until the replies have been
+ * written.
+ *
+ * Values set through the server are kept as a byte array, a short header with
+ * the flags of the client and the cas number followed by the bytes sent. Keys
+ * holding other objects stored by this process through the cache itself are
+ * treated as missing. A value set without an expiry lives for the default
+ * lifetime of the cache.
+ *
+ * How a value is handed back depends on the storage mode of the cache. Stored by
+ * reference the array kept in the cache is written to the socket as it is. Stored
+ * by value or off heap the binary codec keeps the array as raw bytes, so a value
+ * takes up little more than its length but every get copies it out of the cache
+ * once. Other codecs, such as the gson codec, write byte arrays as a list of
+ * numbers taking up several times the length of the value.
+ *
+ * Note a read through loader or a write behind waiting for its store blocks
+ * the server thread along with every connection while it runs.
+ */
+public class MemcachedServer implements Closeable {
+
+    /**
+     * The most bytes a value may take up, larger values are refused.
+     *
+     * @return the max item size in bytes
+     */
+    @Getter private final int maxItemSize;
+    private final ServerSocketChannel channel;
+    private final Selector selector;
+    private final Thread thread;
+    private volatile boolean running = true;
+    /** The last unique number given to an item, only used by the server thread. */
+    private long cas;
+
+    /**
+     * Creates a server accepting values of up to a megabyte and starts it.
+     *
+     * @param address the address to listen on, port zero picks a free port
+     * @throws IOException if the address cannot be bound
+     */
+    public MemcachedServer(InetSocketAddress address) throws IOException {
+        this(address, 1 << 20);
+    }
+
+    /**
+     * Creates a server and starts it.
+     *
+     * @param address the address to listen on, port zero picks a free port
+     * @param maxItemSize the most bytes a value may take up
+     * @throws IOException if the address cannot be bound
+     */
+    public MemcachedServer(InetSocketAddress address, int maxItemSize) throws IOException {
+        if (address == null) {
+            throw new NullPointerException("Null input!");
+        }
+        if (maxItemSize <= 0) {
+            throw new IllegalArgumentException("Max item size must be positive!");
+        }
+        this.maxItemSize = maxItemSize;
+        selector = Selector.open();
+        channel = ServerSocketChannel.open();
+        try {
+            channel.socket().setReuseAddress(true);
+            channel.socket().bind(address);
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException exception) {
+            channel.close();
+            selector.close();
+            throw exception;
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runLoop();
+            }
+        }, "EasyCache-Memcached");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return the local port
+     */
+    public int getPort() {
+        return channel.socket().getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections and closes every open connection. Replies
+     * not yet written are dropped.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gives out the next unique number for an item being stored.
+     *
+     * @return a number not given to any earlier item
+     */
+    long nextCas() {
+        return ++cas;
+    }
+
+    private void runLoop() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            }
+        } catch (IOException exception) {
+            throw new RuntimeException("Memcached server failed!", exception);
+        } catch (ClosedSelectorException ignored) {
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Serves a key that is ready. A connection failing for any reason is
+     * closed on its own so the other connections are still served.
+     */
+    private void handle(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        try {
+            Connection connection = (Connection) key.attachment();
+            if (key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.write();
+            }
+        } catch (IOException exception) {
+            closeQuietly(key);
+        } catch (RuntimeException exception) {
+            closeQuietly(key);
+        }
+    }
+
+    /**
+     * Accepts every pending connection. A connection that cannot be set up is
+     * closed while the server keeps listening.
+     */
+    private void accept() {
+        while (true) {
+            SocketChannel client;
+            try {
+                client = channel.accept();
+            } catch (IOException exception) {
+                return;
+            }
+            if (client == null) {
+                return;
+            }
+            try {
+                client.configureBlocking(false);
+                client.socket().setTcpNoDelay(true);
+                SelectionKey key = client.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(this, client, key));
+            } catch (IOException exception) {
+                closeQuietly(client);
+            }
+        }
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        closeQuietly(key.channel());
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package net.projectbarks.easycache;
+
+import net.projectbarks.easycache.datastore.ReadThroughLoader;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class AsyncCacheTest {
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Test
+    @UnitInfo(description = "Stores, finds and deletes through futures")
+    public void testRoundTrip() throws Exception {
+        EasyCache.clearCache();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            AsyncEasyCache cache = new AsyncEasyCache(executor);
+            Map<String, Integer> values = new HashMap<String, Integer>();
+            values.put("Victor-1", 1);
+            values.put("Victor-2", 2);
+            cache.store("Victor", 0).get();
+            cache.storeAll(values).get();
+            Assert.assertEquals(Integer.valueOf(0), cache.get("Victor", Integer.class).get());
+            Assert.assertEquals(3, cache.getAll(Arrays.asList("Victor", "Victor-1", "Victor-2"), Integer.class).get().size());
+            Assert.assertTrue(cache.delete("Victor").get());
+            Assert.assertEquals(Integer.valueOf(2), cache.deleteAll(values.keySet()).get());
+            Assert.assertNull(cache.get("Victor-1", Integer.class).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "Callers of a key that is loading share the future of the load")
+    public void testSharedLoad() throws Exception {
+        EasyCache.clearCache();
+        final AtomicInteger loads = new AtomicInteger();
+        final CompletableFuture<String> backend = new CompletableFuture<String>();
+        Function<String, CompletableFuture<String>> loader = new Function<String, CompletableFuture<String>>() {
+            @Override
+            public CompletableFuture<String> apply(String key) {
+                loads.incrementAndGet();
+                return backend;
+            }
+        };
+        AsyncEasyCache cache = new AsyncEasyCache();
+        CompletableFuture<String> first = cache.getOrLoad("Uniform", String.class, loader, TimeUnit.MINUTES, 1L);
+        CompletableFuture<String> second = cache.getOrLoad("Uniform", String.class, loader, TimeUnit.MINUTES, 1L);
+        Thread.sleep(100L);
+        Assert.assertFalse(first.isDone());
+        Assert.assertFalse(second.isDone());
+        backend.complete("Loaded");
+        Assert.assertEquals("Loaded", first.get());
+        Assert.assertEquals("Loaded", second.get());
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals("Loaded", EasyCache.getCachedObject("Uniform", String.class));
+
+        Function<String, CompletableFuture<String>> failing = new Function<String, CompletableFuture<String>>() {
+            @Override
+            public CompletableFuture<String> apply(String key) {
+                CompletableFuture<String> future = new CompletableFuture<String>();
+                future.completeExceptionally(new IllegalStateException("Unavailable"));
+                return future;
+            }
+        };
+        try {
+            cache.getOrLoad("Tango", String.class, failing).get();
+            Assert.fail();
+        } catch (ExecutionException exception) {
+            Assert.assertTrue(exception.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertNull(EasyCache.getCachedObject("Tango", String.class));
+    }
+
+    @Test
+    @UnitInfo(description = "A key missed by getOrLoad is loaded by the loader given rather than read through")
+    public void testLoaderOverReadThrough() throws Exception {
+        EasyCache.clearCache();
+        final AtomicInteger readThroughs = new AtomicInteger();
+        EasyCache.setReadThrough(new ReadThroughLoader() {
+            @Override
+            public Object load(String key) {
+                readThroughs.incrementAndGet();
+                return "Read through";
+            }
+        });
+        try {
+            AsyncEasyCache cache = new AsyncEasyCache();
+            String value = cache.getOrLoad("Whiskey", String.class, new Function<String, CompletableFuture<String>>() {
+                @Override
+                public CompletableFuture<String> apply(String key) {
+                    return CompletableFuture.completedFuture("Loaded");
+                }
+            }).get();
+            Assert.assertEquals("Loaded", value);
+            Assert.assertEquals(0, readThroughs.get());
+        } finally {
+            EasyCache.disableReadThrough();
+            EasyCache.clearCache();
+        }
+    }
+}
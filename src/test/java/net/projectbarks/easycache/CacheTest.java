@@ -5,12 +5,21 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestRule;
 
-import java.lang.reflect.Field;
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by brandon on 10/4/14.
@@ -104,33 +113,479 @@ public class CacheTest {
 
     @Test
     @UnitInfo(description = "Ensuring enabling update time works")
-    @SuppressWarnings(value = "unchecked")
     public void testEnablingUpdateTime() {
         EasyCache.clearCache();
         EasyCache.setAllowUpdateTime(false);
+        String[] keys = {"Delta", "Echo", "Foxtrot"};
+        for (String key : keys) {
+            EasyCache.storeCacheObject(key, key, TimeUnit.HOURS, 1L, TimeUnit.MILLISECONDS, 1L);
+        }
         try {
-            ArrayList<String> before = getCacheKeys();
-            before = (ArrayList<String>) before.clone();
-            EasyCache.setAllowUpdateTime(true);
-            List<String> after = getCacheKeys();
-            for (int i = 0; i < 3; i++) {
-                System.out.println("Before: " + before.get(i) + " and After: " + after.get(i));
-                if (!before.get(i).equals(after.get(i))) {
-                    continue;
-                }
-                Assert.fail("Before: " + before.get(i) + " == After: " + after.get(i));
-            }
-        } catch (Exception e) {
+            Thread.sleep(5L);
+        } catch (InterruptedException e) {
             e.printStackTrace();
         }
+        EasyCache.checkLifetime();
+        for (String key : keys) {
+            Assert.assertNotNull(EasyCache.getCachedObject(key, String.class));
+        }
 
         EasyCache.setAllowUpdateTime(true);
+        try {
+            Thread.sleep(5L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        EasyCache.checkLifetime();
+        for (String key : keys) {
+            Assert.assertNull(EasyCache.getCachedObject(key, String.class));
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "Replacing and deleting entries by key")
+    public void testReplaceAndDelete() {
+        EasyCache.storeCacheObject("Golf", "First");
+        EasyCache.storeCacheObject("Golf", "Second");
+        Assert.assertEquals("Second", EasyCache.getCachedObject("Golf", String.class));
+        Assert.assertTrue(EasyCache.deleteEntryFromCache("Golf"));
+        Assert.assertNull(EasyCache.getCachedObject("Golf", String.class));
+        Assert.assertFalse(EasyCache.deleteEntryFromCache("Golf"));
+    }
+
+    @Test
+    @UnitInfo(description = "Caller mode sweeps on the thread using the cache")
+    public void testCallerSweep() throws InterruptedException {
+        EasyCache.setExpiryMode(ExpiryMode.CALLER);
+        EasyCache.setSweepInterval(TimeUnit.MILLISECONDS, 1);
+        try {
+            long sweeps = EasyCache.getSweepCount();
+            EasyCache.storeCacheObject("Hotel", "Expiring", TimeUnit.MILLISECONDS, 1L);
+            Thread.sleep(1100L);
+            EasyCache.getCachedObject("India", String.class);
+            Assert.assertTrue(EasyCache.getSweepCount() > sweeps);
+            Assert.assertTrue(EasyCache.getLastSweepDuration() > 0);
+            Assert.assertTrue(EasyCache.getMaxSweepDuration() >= EasyCache.getLastSweepDuration());
+            Assert.assertFalse(EasyCache.deleteEntryFromCache("Hotel"));
+        } finally {
+            EasyCache.setSweepInterval(TimeUnit.SECONDS, 1);
+            EasyCache.setExpiryMode(ExpiryMode.DAEMON);
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "A daemon with a tiny sweep budget goes idle once it has caught up")
+    public void testSweepBudgetIdle() throws InterruptedException {
+        EasyCache.clearCache();
+        EasyCache.setSweepBudget(1, TimeUnit.NANOSECONDS, 1L);
+        EasyCache.setSweepInterval(TimeUnit.MILLISECONDS, 20);
+        try {
+            Thread.sleep(100L);
+            long sweeps = EasyCache.getSweepCount();
+            Thread.sleep(500L);
+            // A pass takes at most a sweep per segment, there are at most 64 segments.
+            Assert.assertTrue(EasyCache.getSweepCount() - sweeps < 30 * 64);
+        } finally {
+            EasyCache.setSweepBudget(10000, TimeUnit.MILLISECONDS, 1L);
+            EasyCache.setSweepInterval(TimeUnit.SECONDS, 1);
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "Storing, reading and deleting from many threads at once")
+    public void testConcurrentAccess() throws InterruptedException {
+        final int threads = 8, keys = 500;
+        final CountDownLatch finished = new CountDownLatch(threads);
+        final AtomicInteger failures = new AtomicInteger();
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < keys; i++) {
+                        String key = "Juliett-" + id + "-" + i;
+                        EasyCache.storeCacheObject(key, i);
+                        if (!Integer.valueOf(i).equals(EasyCache.getCachedObject(key, Integer.class))) {
+                            failures.incrementAndGet();
+                        }
+                        if (i % 2 == 0 && !EasyCache.deleteEntryFromCache(key)) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    finished.countDown();
+                }
+            }).start();
+        }
+        finished.await();
+        Assert.assertEquals(0, failures.get());
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < keys; i++) {
+                Object value = EasyCache.getCachedObject("Juliett-" + t + "-" + i, Integer.class);
+                Assert.assertEquals(i % 2 == 0 ? null : i, value);
+            }
+        }
     }
 
-    @SuppressWarnings(value = "unchecked")
-    private ArrayList<String> getCacheKeys() throws NoSuchFieldException, IllegalAccessException {
-        Field cacheKeys = EasyCache.class.getDeclaredField("cacheKeys");
-        cacheKeys.setAccessible(true);
-        return (ArrayList<String>) cacheKeys.get(null);
+    @Test
+    @UnitInfo(description = "Storing past the max size evicts instead of failing")
+    public void testEviction() {
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Kilobyte, 8);
+        try {
+            int stored = 2000, found = 0, weight = 0;
+            for (int i = 0; i < stored; i++) {
+                EasyCache.storeCacheObject("Kilo-" + i, "Value-" + i);
+            }
+            for (int i = 0; i < stored; i++) {
+                String value = EasyCache.getCachedObject("Kilo-" + i, String.class);
+                if (value != null) {
+                    found++;
+                    weight += value.length() + 2;
+                }
+            }
+            Assert.assertTrue(found > 0 && found < stored);
+            Assert.assertTrue(weight <= DiskUnit.Kilobyte.toBytes(8));
+        } finally {
+            EasyCache.setMaxSize(DiskUnit.Megabyte, 100);
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "Objects larger than a segment share are kept without taking the cache past its max size")
+    public void testMaxSizeBound() {
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Kilobyte, 64);
+        try {
+            char[] chars = new char[30000];
+            Arrays.fill(chars, 'l');
+            String large = new String(chars);
+            for (int i = 0; i < 100; i++) {
+                EasyCache.storeCacheObject("Lima-" + i, large);
+                Assert.assertEquals(large, EasyCache.getCachedObject("Lima-" + i, String.class));
+                Assert.assertTrue(EasyCache.getUsedSpace() <= DiskUnit.Kilobyte.toBytes(64));
+            }
+            try {
+                EasyCache.storeCacheObject("Lima-Large", large + large + large);
+                Assert.fail("Object larger than the max size was stored!");
+            } catch (RuntimeException refused) {
+                Assert.assertTrue(refused.getMessage().contains("max size"));
+            }
+        } finally {
+            EasyCache.setMaxSize(DiskUnit.Megabyte, 100);
+            EasyCache.clearCache();
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "Used space stays exact across store, replace, delete, expiry and clear")
+    public void testWeigher() throws InterruptedException {
+        EasyCache.clearCache();
+        EasyCache.setWeigher(new Weigher() {
+            @Override
+            public int weigh(String key, Object value) {
+                return ((int[]) value).length;
+            }
+        });
+        try {
+            EasyCache.storeCacheObject("Lima", new int[10]);
+            EasyCache.storeCacheObject("Mike", new int[20]);
+            EasyCache.storeCacheObject("November", new int[30], TimeUnit.MILLISECONDS, 1L);
+            Assert.assertEquals(60, EasyCache.getUsedSpace());
+            EasyCache.storeCacheObject("Lima", new int[5]);
+            Assert.assertEquals(55, EasyCache.getUsedSpace());
+            EasyCache.deleteEntryFromCache("Mike");
+            Assert.assertEquals(35, EasyCache.getUsedSpace());
+            Thread.sleep(1100L);
+            EasyCache.checkLifetime();
+            Assert.assertEquals(5, EasyCache.getUsedSpace());
+            EasyCache.clearCache();
+            Assert.assertEquals(0, EasyCache.getUsedSpace());
+        } finally {
+            EasyCache.setWeigher(new JsonWeigher());
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "Objects stored by value are copies of the object stored")
+    public void testStoreByValue() {
+        EasyCache.clearCache();
+        EasyCache.setStorageMode(StorageMode.VALUE);
+        try {
+            List<String> list = new ArrayList<String>(Arrays.asList("One", "Two"));
+            EasyCache.storeCacheObject("Oscar", list);
+            list.add("Three");
+            List<?> first = EasyCache.getCachedObject("Oscar", List.class);
+            Assert.assertEquals(Arrays.asList("One", "Two"), first);
+            Assert.assertNotSame(first, EasyCache.getCachedObject("Oscar", List.class));
+            Assert.assertTrue(EasyCache.getUsedSpace() > 0);
+            try {
+                EasyCache.getCachedObject("Oscar", Integer.class);
+                Assert.fail("Expected a class cast exception!");
+            } catch (ClassCastException exception) {
+                Assert.assertTrue(exception.getMessage().startsWith("Invalid type"));
+            }
+        } finally {
+            EasyCache.setStorageMode(StorageMode.REFERENCE);
+            EasyCache.clearCache();
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "Objects stored off heap are weighed by the direct memory they use")
+    public void testOffHeap() {
+        EasyCache.clearCache();
+        EasyCache.setStorageMode(StorageMode.OFF_HEAP);
+        try {
+            char[] large = new char[SlabAllocator.SLAB_SIZE + 1];
+            Arrays.fill(large, 'x');
+            EasyCache.storeCacheObject("Papa", Arrays.asList("One", "Two"));
+            EasyCache.storeCacheObject("Quebec", new String(large));
+            EasyCache.storeCacheObject("Romeo", 1);
+            EasyCache.storeCacheObject("Romeo", 2);
+            Assert.assertEquals(Arrays.asList("One", "Two"), EasyCache.getCachedObject("Papa", List.class));
+            Assert.assertEquals(new String(large), EasyCache.getCachedObject("Quebec", String.class));
+            Assert.assertEquals(Integer.valueOf(2), EasyCache.getCachedObject("Romeo", Integer.class));
+            // Whole slabs are held, the free space of the slabs counts towards the used space.
+            long used = EasyCache.getUsedSpace();
+            Assert.assertEquals(0, used % SlabAllocator.SLAB_SIZE);
+            Assert.assertTrue(used >= 2L * SlabAllocator.SLAB_SIZE && used <= 4L * SlabAllocator.SLAB_SIZE);
+            Assert.assertTrue(EasyCache.getOffHeapSpace() >= used);
+            EasyCache.deleteEntryFromCache("Quebec");
+            Assert.assertNull(EasyCache.getCachedObject("Quebec", String.class));
+            used = EasyCache.getUsedSpace();
+            Assert.assertTrue(used == SlabAllocator.SLAB_SIZE || used == 2L * SlabAllocator.SLAB_SIZE);
+            EasyCache.deleteEntryFromCache("Papa");
+            EasyCache.deleteEntryFromCache("Romeo");
+            Assert.assertEquals(0, EasyCache.getUsedSpace());
+        } finally {
+            EasyCache.setStorageMode(StorageMode.REFERENCE);
+            EasyCache.clearCache();
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "Slabs held off heap never take the cache past its max size")
+    public void testOffHeapBound() {
+        EasyCache.clearCache();
+        EasyCache.setStorageMode(StorageMode.OFF_HEAP);
+        EasyCache.setMaxSize(DiskUnit.Kilobyte, 512);
+        try {
+            Random random = new Random(7);
+            for (int i = 0; i < 5000; i++) {
+                char[] chars = new char[random.nextInt(20000)];
+                Arrays.fill(chars, 's');
+                EasyCache.storeCacheObject("Sierra-" + i, new String(chars));
+                Assert.assertTrue(EasyCache.getUsedSpace() <= DiskUnit.Kilobyte.toBytes(512));
+            }
+            EasyCache.clearCache();
+            Assert.assertEquals(0, EasyCache.getUsedSpace());
+        } finally {
+            EasyCache.setMaxSize(DiskUnit.Megabyte, 100);
+            EasyCache.setStorageMode(StorageMode.REFERENCE);
+            EasyCache.clearCache();
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "Evicted objects spill to disk and are promoted when read")
+    public void testDiskTier() throws Exception {
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Kilobyte, 8);
+        File directory = File.createTempFile("easycache", "");
+        directory.delete();
+        EasyCache.setDiskTier(directory, DiskUnit.Megabyte, 4);
+        try {
+            int stored = 2000;
+            for (int i = 0; i < stored; i++) {
+                EasyCache.storeCacheObject("Sierra-" + i, "Value-" + i);
+            }
+            Assert.assertTrue(EasyCache.getDiskSpace() > 0);
+            for (int i = 0; i < stored; i++) {
+                Assert.assertEquals("Value-" + i, EasyCache.getCachedObject("Sierra-" + i, String.class));
+            }
+            EasyCache.storeCacheObject("Sierra-0", "Replaced");
+            Assert.assertEquals("Replaced", EasyCache.getCachedObject("Sierra-0", String.class));
+            Assert.assertTrue(EasyCache.deleteEntryFromCache("Sierra-1"));
+            Assert.assertNull(EasyCache.getCachedObject("Sierra-1", String.class));
+        } finally {
+            EasyCache.disableDiskTier();
+            EasyCache.setMaxSize(DiskUnit.Megabyte, 100);
+            EasyCache.clearCache();
+            directory.delete();
+        }
+        Assert.assertEquals(0, EasyCache.getDiskSpace());
+    }
+
+    @Test
+    @UnitInfo(description = "Keys stored and deleted while others spill leave nothing behind on disk")
+    public void testConcurrentSpills() throws Exception {
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Kilobyte, 8);
+        File directory = File.createTempFile("easycache", "");
+        directory.delete();
+        EasyCache.setDiskTier(directory, DiskUnit.Megabyte, 4);
+        try {
+            final int threads = 4, stored = 2000;
+            final CountDownLatch done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < stored; i++) {
+                            String key = "Tango-" + thread + "-" + i;
+                            EasyCache.storeCacheObject(key, "Value-" + i);
+                            EasyCache.storeCacheObject(key, "Again-" + i);
+                            if (i % 2 == 0) {
+                                EasyCache.deleteEntryFromCache(key);
+                            }
+                        }
+                        done.countDown();
+                    }
+                }).start();
+            }
+            Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+            for (int t = 0; t < threads; t++) {
+                for (int i = 0; i < stored; i++) {
+                    String key = "Tango-" + t + "-" + i;
+                    Assert.assertEquals(i % 2 == 0 ? null : "Again-" + i, EasyCache.getCachedObject(key, String.class));
+                    EasyCache.deleteEntryFromCache(key);
+                }
+            }
+            Assert.assertEquals(0, EasyCache.getDiskSpace());
+        } finally {
+            EasyCache.disableDiskTier();
+            EasyCache.setMaxSize(DiskUnit.Megabyte, 100);
+            EasyCache.clearCache();
+            directory.delete();
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "Batches store, find and delete many keys at once")
+    public void testBatchOperations() throws InterruptedException {
+        EasyCache.clearCache();
+        Map<String, Integer> values = new HashMap<String, Integer>();
+        for (int i = 0; i < 500; i++) {
+            values.put("Zulu-" + i, i);
+        }
+        EasyCache.storeAll(values);
+        EasyCache.storeCacheObject("Short", 1, TimeUnit.MILLISECONDS, 1L);
+        EasyCache.setStorageMode(StorageMode.OFF_HEAP);
+        try {
+            EasyCache.storeCacheObject("Zulu-0", -1);
+        } finally {
+            EasyCache.setStorageMode(StorageMode.REFERENCE);
+        }
+        Thread.sleep(5L);
+
+        List<String> keys = new ArrayList<String>(values.keySet());
+        keys.add("Short");
+        keys.add("Missing");
+        Map<String, Integer> found = EasyCache.getAll(keys, Integer.class);
+        Assert.assertEquals(500, found.size());
+        Assert.assertEquals(Integer.valueOf(-1), found.get("Zulu-0"));
+        Assert.assertEquals(Integer.valueOf(499), found.get("Zulu-499"));
+        Assert.assertFalse(found.containsKey("Short"));
+
+        Assert.assertEquals(500, EasyCache.deleteAll(keys));
+        Assert.assertTrue(EasyCache.getAll(keys, Integer.class).isEmpty());
+        Assert.assertEquals(0, EasyCache.getUsedSpace());
+    }
+
+    @Test
+    @UnitInfo(description = "Loads a missing key once no matter how many threads ask for it")
+    public void testSingleFlightLoad() throws InterruptedException {
+        EasyCache.clearCache();
+        final AtomicInteger loads = new AtomicInteger();
+        final Callable<String> loader = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                loads.incrementAndGet();
+                Thread.sleep(100L);
+                return "Loaded";
+            }
+        };
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                    results.add(EasyCache.getOrLoad("Yankee", String.class, loader));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(Collections.nCopies(8, "Loaded"), results);
+        Assert.assertEquals("Loaded", EasyCache.getCachedObject("Yankee", String.class));
+
+        final AtomicInteger failures = new AtomicInteger();
+        Callable<String> failing = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                failures.incrementAndGet();
+                throw new IOException("Unavailable");
+            }
+        };
+        for (int i = 0; i < 2; i++) {
+            try {
+                EasyCache.getOrLoad("Xray", String.class, failing);
+                Assert.fail();
+            } catch (RuntimeException exception) {
+                Assert.assertTrue(exception.getCause() instanceof IOException);
+            }
+        }
+        Assert.assertEquals(2, failures.get());
+        Assert.assertNull(EasyCache.getCachedObject("Xray", String.class));
+    }
+
+    @Test
+    @UnitInfo(description = "Reloads a loaded object in the background before it expires")
+    public void testRefreshAhead() throws InterruptedException {
+        EasyCache.clearCache();
+        final AtomicInteger loads = new AtomicInteger();
+        Callable<Integer> loader = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return loads.incrementAndGet();
+            }
+        };
+        Executor previous = EasyCache.getRefreshExecutor();
+        EasyCache.setRefreshExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        EasyCache.setRefreshAhead(0.5);
+        try {
+            Assert.assertEquals(Integer.valueOf(1), EasyCache.getOrLoad("Whiskey", Integer.class, loader, TimeUnit.MILLISECONDS, 400L));
+            Assert.assertEquals(Integer.valueOf(1), EasyCache.getCachedObject("Whiskey", Integer.class));
+            Assert.assertEquals(1, loads.get());
+            Thread.sleep(250L);
+            Assert.assertEquals(Integer.valueOf(1), EasyCache.getCachedObject("Whiskey", Integer.class));
+            Assert.assertEquals(2, loads.get());
+            Assert.assertEquals(Integer.valueOf(2), EasyCache.getCachedObject("Whiskey", Integer.class));
+            Thread.sleep(250L);
+            Assert.assertEquals(Integer.valueOf(2), EasyCache.getCachedObject("Whiskey", Integer.class));
+
+            EasyCache.deleteEntryFromCache("Whiskey");
+            Assert.assertNull(EasyCache.getCachedObject("Whiskey", Integer.class));
+        } finally {
+            EasyCache.setRefreshAhead(0);
+            EasyCache.setRefreshExecutor(previous);
+        }
     }
 }
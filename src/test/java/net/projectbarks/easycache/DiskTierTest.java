@@ -0,0 +1,99 @@
+package net.projectbarks.easycache;
+
+import net.projectbarks.easycache.codec.BinaryCodec;
+import net.projectbarks.easycache.codec.Codec;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestRule;
+
+import java.io.File;
+
+public class DiskTierTest {
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Codec codec = new BinaryCodec();
+
+    @Test
+    @UnitInfo(description = "Mostly dead data files are compacted without losing live records")
+    public void testCompaction() throws Exception {
+        DiskTier tier = new DiskTier(folder.getRoot(), 4 << 20);
+        byte[] value = new byte[1000];
+        for (int i = 0; i < 2000; i++) {
+            value[0] = (byte) i;
+            Assert.assertNotNull(tier.put("key-" + i, value, codec, -1, 0));
+        }
+        Assert.assertEquals(2, folder.getRoot().list().length);
+        for (int i = 0; i < 1000; i++) {
+            if (i % 10 != 0) {
+                tier.remove("key-" + i);
+            }
+        }
+        File first = new File(folder.getRoot(), "easycache-0.seg");
+        for (int i = 0; i < 100 && first.exists(); i++) {
+            Thread.sleep(50L);
+        }
+        Assert.assertFalse(first.exists());
+        for (int i = 0; i < 2000; i++) {
+            DiskTier.Record record = tier.take("key-" + i);
+            if (i < 1000 && i % 10 != 0) {
+                Assert.assertNull(record);
+            } else {
+                Assert.assertEquals((byte) i, record.value[0]);
+                Assert.assertEquals(1000, record.value.length);
+            }
+        }
+        Assert.assertEquals(0, tier.getLiveBytes());
+        tier.close();
+    }
+
+    @Test
+    @UnitInfo(description = "Compaction in a full tier never drops another data file")
+    public void testCompactionWhenFull() throws Exception {
+        DiskTier tier = new DiskTier(folder.getRoot(), 3 << 20);
+        byte[] value = new byte[1000];
+        // Every record takes 1016 bytes, so three data files are filled up to the last record.
+        int perFile = (1 << 20) / 1016, total = perFile * 3;
+        for (int i = 0; i < total; i++) {
+            value[0] = (byte) i;
+            Assert.assertNotNull(tier.put(String.format("key-%04d", i), value, codec, -1, 0));
+        }
+        Assert.assertEquals(3, folder.getRoot().list().length);
+        for (int i = perFile; i < perFile * 2; i++) {
+            if (i % 10 != 0) {
+                tier.remove(String.format("key-%04d", i));
+            }
+        }
+        Thread.sleep(200L);
+        for (int i = 0; i < total; i++) {
+            DiskTier.Record record = tier.take(String.format("key-%04d", i));
+            if (i >= perFile && i < perFile * 2 && i % 10 != 0) {
+                Assert.assertNull(record);
+            } else {
+                Assert.assertEquals((byte) i, record.value[0]);
+            }
+        }
+        tier.close();
+    }
+
+    @Test
+    @UnitInfo(description = "The oldest data file is dropped once the tier is full")
+    public void testDropOldest() {
+        DiskTier tier = new DiskTier(folder.getRoot(), 2 << 20);
+        byte[] value = new byte[1 << 10];
+        for (int i = 0; i < 3000; i++) {
+            tier.put("key-" + i, value, codec, -1, 0);
+        }
+        Assert.assertEquals(2, folder.getRoot().list().length);
+        Assert.assertNull(tier.take("key-0"));
+        Assert.assertNotNull(tier.take("key-2999"));
+        tier.close();
+        Assert.assertEquals(0, folder.getRoot().list().length);
+    }
+}
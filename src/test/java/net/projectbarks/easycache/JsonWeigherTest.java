@@ -0,0 +1,34 @@
+package net.projectbarks.easycache;
+
+import com.google.gson.GsonBuilder;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class JsonWeigherTest {
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Test
+    @UnitInfo(description = "Json weigher matches the size of the serialized json")
+    public void testMatchesJson() throws Exception {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("name", "Ω value");
+        map.put("list", Arrays.asList(1, 2, 3));
+        map.put("nothing", null);
+        Object[] values = {"plain", "ünïcødé €", "\"quoted\" \\ back\\slash", "line\nbreak\ttab\u0001",
+                "<b>a & b = 'c'</b>", "\u2028 separator", 12345, 1.5d, true, Arrays.asList("One", "Two"), map};
+        JsonWeigher weigher = new JsonWeigher();
+        for (Object value : values) {
+            String json = new GsonBuilder().serializeNulls().create().toJson(value);
+            Assert.assertEquals(json, json.getBytes("UTF-8").length, weigher.weigh("key", value));
+        }
+        Assert.assertEquals(16, weigher.weigh("key", new byte[16]));
+    }
+}
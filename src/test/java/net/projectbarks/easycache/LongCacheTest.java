@@ -0,0 +1,122 @@
+package net.projectbarks.easycache;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class LongCacheTest {
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Test
+    @UnitInfo(description = "Stores, finds and deletes like a map while below its max entries")
+    public void testMatchesMap() {
+        LongEasyCache cache = new LongEasyCache(10000);
+        Map<Long, Integer> expected = new HashMap<Long, Integer>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            long key = random.nextInt(5000) * 0x100000001L;
+            switch (random.nextInt(3)) {
+                case 0:
+                    cache.store(key, i);
+                    expected.put(key, i);
+                    break;
+                case 1:
+                    Assert.assertEquals(expected.remove(key) != null, cache.delete(key));
+                    break;
+                default:
+                    Assert.assertEquals(expected.get(key), cache.get(key, Integer.class));
+            }
+        }
+        Assert.assertEquals(expected.size(), cache.size());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            Assert.assertEquals(entry.getValue(), cache.get(entry.getKey(), Integer.class));
+        }
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    @UnitInfo(description = "Evicts objects that were not used once it is full")
+    public void testEviction() {
+        LongEasyCache cache = new LongEasyCache(100);
+        cache.store(-1L, "Hot");
+        for (long key = 0; key < 1000; key++) {
+            cache.store(key, "Cold");
+            Assert.assertEquals("Hot", cache.get(-1L, String.class));
+            Assert.assertTrue(cache.size() <= 100);
+        }
+        Assert.assertEquals(100, cache.size());
+        Assert.assertEquals("Cold", cache.get(999L, String.class));
+    }
+
+    @Test
+    @UnitInfo(description = "Expires objects by lifetime and by update time once it is allowed")
+    public void testExpiry() throws InterruptedException {
+        LongEasyCache cache = new LongEasyCache(100);
+        cache.store(1L, "Short", TimeUnit.MILLISECONDS, 1L);
+        cache.store(2L, "Idle", TimeUnit.HOURS, 1L, TimeUnit.MILLISECONDS, 1L);
+        cache.store(3L, "Forever", TimeUnit.MILLISECONDS, -1L);
+        Thread.sleep(5L);
+        Assert.assertNull(cache.get(1L, String.class));
+        Assert.assertEquals("Idle", cache.get(2L, String.class));
+        Thread.sleep(5L);
+        cache.setAllowUpdateTime(true);
+        Assert.assertEquals(1, cache.cleanUp());
+        Assert.assertNull(cache.get(2L, String.class));
+        Assert.assertEquals("Forever", cache.get(3L, String.class));
+    }
+
+    @Test
+    @UnitInfo(description = "Lifetimes too large to add to the clock live forever instead of expiring")
+    public void testLargeLifetime() {
+        LongEasyCache cache = new LongEasyCache(100);
+        cache.store(1L, "Days", TimeUnit.DAYS, Long.MAX_VALUE / 2);
+        cache.store(2L, "Millis", TimeUnit.MILLISECONDS, Long.MAX_VALUE, TimeUnit.MILLISECONDS, Long.MAX_VALUE);
+        cache.setAllowUpdateTime(true);
+        Assert.assertEquals("Days", cache.get(1L, String.class));
+        Assert.assertEquals("Millis", cache.get(2L, String.class));
+        Assert.assertEquals(0, cache.cleanUp());
+    }
+
+    @Test
+    @UnitInfo(description = "Reads without locking never see the value of another key while keys are replaced")
+    public void testConcurrentReads() throws Exception {
+        final LongEasyCache cache = new LongEasyCache(1000);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Random random = new Random(1);
+                while (running.get()) {
+                    long key = random.nextInt(2000);
+                    if (random.nextBoolean()) {
+                        cache.store(key, key);
+                    } else {
+                        cache.delete(key);
+                    }
+                }
+            }
+        });
+        writer.start();
+        try {
+            Random random = new Random(2);
+            for (int i = 0; i < 2000000; i++) {
+                long key = random.nextInt(2000);
+                Long value = cache.get(key, Long.class);
+                Assert.assertTrue(value == null || value == key);
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package net.projectbarks.easycache;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+public class PolicyTest {
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Test
+    @UnitInfo(description = "LRU evicts the least recently used object")
+    public void testLruOrder() {
+        Policy policy = Policy.create(EvictionPolicy.LRU, 3);
+        CachedObject a = object("a"), b = object("b"), c = object("c");
+        policy.add(a);
+        policy.add(b);
+        policy.add(c);
+        policy.access(a);
+        Assert.assertSame(b, policy.victim());
+        policy.remove(b);
+        Assert.assertSame(c, policy.victim());
+    }
+
+    @Test
+    @UnitInfo(description = "W-TinyLFU keeps frequently used objects through a scan")
+    public void testTinyLfuScanResistance() {
+        int capacity = 100;
+        Policy policy = Policy.create(EvictionPolicy.W_TINY_LFU, capacity);
+        CachedObject[] hot = new CachedObject[capacity / 2];
+        int size = 0;
+        for (int i = 0; i < hot.length; i++) {
+            hot[i] = object("hot-" + i);
+            policy.add(hot[i]);
+            size++;
+        }
+        for (int round = 0; round < 5; round++) {
+            for (CachedObject object : hot) {
+                policy.access(object);
+            }
+        }
+        for (int i = 0; i < 1000; i++) {
+            policy.add(object("scan-" + i));
+            size++;
+            while (size > capacity) {
+                policy.remove(policy.victim());
+                size--;
+            }
+        }
+        for (CachedObject object : hot) {
+            Assert.assertNotNull("Hot object was evicted by a scan", object.queue);
+        }
+    }
+
+    private static CachedObject object(String key) {
+        CachedObject object = new CachedObject(key, 0, 0, false);
+        object.key = key;
+        object.weight = 1;
+        return object;
+    }
+}
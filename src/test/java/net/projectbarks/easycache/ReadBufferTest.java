@@ -0,0 +1,65 @@
+package net.projectbarks.easycache;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.concurrent.TimeUnit;
+
+public class ReadBufferTest {
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Test
+    @UnitInfo(description = "Reads are refused once a ring is full and applied in order when drained")
+    public void testDrain() {
+        ReadBuffer buffer = new ReadBuffer(1);
+        Policy policy = Policy.create(EvictionPolicy.LRU, 1000L);
+        CachedObject first = new CachedObject("First", Long.MAX_VALUE, 100L, false);
+        CachedObject second = new CachedObject("Second", Long.MAX_VALUE, 100L, false);
+        policy.add(first);
+        policy.add(second);
+        long now = System.currentTimeMillis();
+        int offered = 0;
+        while (buffer.offer(first, now + 1000L + offered)) {
+            offered++;
+        }
+        Assert.assertEquals(16, offered);
+        Assert.assertEquals(first, policy.victim());
+
+        buffer.drain(policy);
+        Assert.assertEquals(second, policy.victim());
+        Assert.assertEquals(now + 1000L + offered - 1 + 100L, first.getUpdateTimeExact());
+        Assert.assertTrue(buffer.offer(second, now));
+        buffer.drain(policy);
+        Assert.assertEquals(first, policy.victim());
+        Assert.assertEquals(now + 1000L + offered - 1 + 100L, first.getUpdateTimeExact());
+    }
+
+    @Test
+    @UnitInfo(description = "Objects that are read keep living while update time is allowed")
+    public void testIdleExpiry() throws InterruptedException {
+        EasyCache.clearCache();
+        EasyCache.setRecordStats(true);
+        EasyCache.setAllowUpdateTime(true);
+        try {
+            EasyCache.storeCacheObject("Busy", "Busy", TimeUnit.HOURS, 1L, TimeUnit.MILLISECONDS, 300L);
+            EasyCache.storeCacheObject("Idle", "Idle", TimeUnit.HOURS, 1L, TimeUnit.MILLISECONDS, 300L);
+            EasyCache.resetStats();
+            // The idle wheel only passes a bucket once its second is over.
+            for (int i = 0; i < 30; i++) {
+                Assert.assertEquals("Busy", EasyCache.getCachedObject("Busy", String.class));
+                Thread.sleep(50L);
+            }
+            EasyCache.checkLifetime();
+            Assert.assertEquals(1, EasyCache.getStats().getRemovalCount(RemovalCause.IDLE));
+            Assert.assertEquals("Busy", EasyCache.getCachedObject("Busy", String.class));
+            Assert.assertNull(EasyCache.getCachedObject("Idle", String.class));
+        } finally {
+            EasyCache.setAllowUpdateTime(false);
+            EasyCache.clearCache();
+        }
+    }
+}
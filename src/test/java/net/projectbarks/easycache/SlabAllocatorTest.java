@@ -0,0 +1,75 @@
+package net.projectbarks.easycache;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SlabAllocatorTest {
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Test
+    @UnitInfo(description = "Freed chunks are reused and empty slabs are returned to the pool")
+    public void testReuse() {
+        SlabAllocator allocator = new SlabAllocator();
+        long reserved = SlabAllocator.getReserved();
+        List<SlabAllocator.Chunk> chunks = new ArrayList<SlabAllocator.Chunk>();
+        int perSlab = SlabAllocator.SLAB_SIZE / 96;
+        for (int i = 0; i < perSlab * 3; i++) {
+            chunks.add(allocator.store(bytes(i, 65)));
+        }
+        Assert.assertEquals(96, SlabAllocator.capacityFor(65));
+        Assert.assertTrue(SlabAllocator.getReserved() - reserved <= 3L * SlabAllocator.SLAB_SIZE);
+
+        SlabAllocator.Chunk freed = chunks.remove(10);
+        allocator.free(freed);
+        SlabAllocator.Chunk reused = allocator.store(bytes(42, 90));
+        Assert.assertSame(freed.slab, reused.slab);
+        Assert.assertEquals(freed.offset, reused.offset);
+        Assert.assertArrayEquals(bytes(42, 90), allocator.read(reused));
+        Assert.assertEquals((byte) 11, allocator.read(chunks.get(10))[0]);
+
+        long full = SlabAllocator.getReserved();
+        for (SlabAllocator.Chunk chunk : chunks) {
+            allocator.free(chunk);
+        }
+        allocator.free(reused);
+        SlabAllocator other = new SlabAllocator();
+        for (int i = 0; i < SlabAllocator.SLAB_SIZE / 1024 * 3; i++) {
+            other.store(bytes(i, 1000));
+        }
+        Assert.assertTrue(SlabAllocator.getReserved() <= full);
+    }
+
+    @Test
+    @UnitInfo(description = "Objects larger than a slab span whole slabs and the slack of partly used slabs is tracked")
+    public void testSpansAndSlack() {
+        SlabAllocator allocator = new SlabAllocator();
+        byte[] large = bytes(7, SlabAllocator.SLAB_SIZE * 2 + 100);
+        large[large.length - 1] = 9;
+        SlabAllocator.Chunk chunk = allocator.store(large);
+        Assert.assertEquals(SlabAllocator.SLAB_SIZE * 2 + 128, SlabAllocator.capacityFor(large.length));
+        Assert.assertEquals(2, chunk.spans.length);
+        Assert.assertArrayEquals(large, allocator.read(chunk));
+        Assert.assertEquals(SlabAllocator.SLAB_SIZE - 128, allocator.slack());
+
+        SlabAllocator.Chunk small = allocator.store(bytes(1, 65));
+        Assert.assertEquals(SlabAllocator.SLAB_SIZE * 2 - 128 - 96, allocator.slack());
+        allocator.free(chunk);
+        Assert.assertEquals(SlabAllocator.SLAB_SIZE - 96, allocator.slack());
+        allocator.free(small);
+        Assert.assertEquals(0, allocator.slack());
+        Assert.assertEquals(SlabAllocator.SLAB_SIZE, SlabAllocator.capacityFor(SlabAllocator.SLAB_SIZE));
+    }
+
+    private static byte[] bytes(int first, int length) {
+        byte[] bytes = new byte[length];
+        bytes[0] = (byte) first;
+        return bytes;
+    }
+}
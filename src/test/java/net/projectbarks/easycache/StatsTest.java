@@ -0,0 +1,102 @@
+package net.projectbarks.easycache;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+public class StatsTest {
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Test
+    @UnitInfo(description = "Counts hits, misses, loads and removals by cause")
+    public void testCounters() throws InterruptedException {
+        EasyCache.clearCache();
+        EasyCache.setRecordStats(true);
+        EasyCache.resetStats();
+        EasyCache.storeCacheObject("Sierra", 1);
+        EasyCache.storeCacheObject("Sierra", 2);
+        EasyCache.storeCacheObject("Romeo", 3, TimeUnit.MILLISECONDS, 1L);
+        Thread.sleep(5L);
+        Assert.assertNotNull(EasyCache.getCachedObject("Sierra", Integer.class));
+        Assert.assertNull(EasyCache.getCachedObject("Romeo", Integer.class));
+        Assert.assertNull(EasyCache.getCachedObject("Missing", Integer.class));
+        EasyCache.getAll(Arrays.asList("Sierra", "Missing"), Integer.class);
+        EasyCache.getOrLoad("Quebec", Integer.class, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return 4;
+            }
+        });
+        EasyCache.deleteEntryFromCache("Sierra");
+
+        CacheStats stats = EasyCache.getStats();
+        Assert.assertEquals(2, stats.getHitCount());
+        Assert.assertEquals(4, stats.getMissCount());
+        Assert.assertEquals(1, stats.getLoadSuccessCount());
+        Assert.assertEquals(1, stats.getRemovalCount(RemovalCause.REPLACED));
+        Assert.assertEquals(1, stats.getRemovalCount(RemovalCause.LIFETIME));
+        Assert.assertEquals(1, stats.getRemovalCount(RemovalCause.EXPLICIT));
+        Assert.assertEquals(1, stats.getEvictionCount());
+        Assert.assertEquals(1, stats.getEntryCount());
+        Assert.assertEquals(EasyCache.getUsedSpace(), stats.getWeight());
+        Assert.assertEquals(4, stats.getGetLatency().getCount());
+        Assert.assertEquals(3, stats.getStoreLatency().getCount());
+
+        EasyCache.setRecordStats(false);
+        try {
+            EasyCache.getCachedObject("Quebec", Integer.class);
+            Assert.assertEquals(2, EasyCache.getStats().getHitCount());
+        } finally {
+            EasyCache.setRecordStats(true);
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "A load whose object cannot be stored is counted once as a failure")
+    public void testFailedStoreOfLoad() {
+        EasyCache.clearCache();
+        EasyCache.setRecordStats(true);
+        EasyCache.resetStats();
+        EasyCache.setMaxSize(DiskUnit.Byte, 16);
+        try {
+            EasyCache.getOrLoad("Tango", String.class, new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return "Larger than the whole max size";
+                }
+            });
+            Assert.fail("Object larger than the max size was stored!");
+        } catch (RuntimeException refused) {
+            CacheStats stats = EasyCache.getStats();
+            Assert.assertEquals(0, stats.getLoadSuccessCount());
+            Assert.assertEquals(1, stats.getLoadFailureCount());
+        } finally {
+            EasyCache.setMaxSize(DiskUnit.Megabyte, 100);
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "Percentiles stay within a bucket of the recorded latencies")
+    public void testPercentiles() {
+        LatencyHistogram.Recorder recorder = new LatencyHistogram.Recorder();
+        for (long nanos = 1; nanos <= 100000; nanos++) {
+            recorder.record(nanos * 10);
+        }
+        LatencyHistogram histogram = recorder.snapshot();
+        Assert.assertEquals(100000, histogram.getCount());
+        long[][] expected = {{50, 500000}, {99, 990000}, {100, 1000000}};
+        for (long[] pair : expected) {
+            long percentile = histogram.getPercentile(pair[0]);
+            Assert.assertTrue(percentile >= pair[1]);
+            Assert.assertTrue(percentile <= pair[1] * 1.07);
+        }
+        Assert.assertEquals(0, new LatencyHistogram.Recorder().snapshot().getPercentile(99));
+    }
+}
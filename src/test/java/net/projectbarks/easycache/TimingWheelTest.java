@@ -0,0 +1,101 @@
+package net.projectbarks.easycache;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TimingWheelTest {
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Test
+    @UnitInfo(description = "Objects expire only once their deadline has passed")
+    public void testMixedDeadlines() {
+        long start = 1000000L;
+        TimingWheel wheel = new TimingWheel(start);
+        long[] lifetimes = {
+                500, TimeUnit.SECONDS.toMillis(5), TimeUnit.MINUTES.toMillis(3),
+                TimeUnit.HOURS.toMillis(2), TimeUnit.DAYS.toMillis(9)
+        };
+        for (long lifetime : lifetimes) {
+            wheel.schedule(new CachedObject(lifetime, start + lifetime, 0, false));
+        }
+        List<CachedObject> expired = new ArrayList<CachedObject>();
+        for (long lifetime : lifetimes) {
+            wheel.advance(start + lifetime - 1, expired, 0);
+            Assert.assertFalse(expired.contains(new CachedObject(lifetime, 0, 0, false)));
+            wheel.advance(start + lifetime + TimeUnit.SECONDS.toMillis(2), expired, 0);
+            Assert.assertTrue(expired.contains(new CachedObject(lifetime, 0, 0, false)));
+        }
+        Assert.assertEquals(lifetimes.length, expired.size());
+    }
+
+    @Test
+    @UnitInfo(description = "Descheduled and updated objects are not expired early")
+    public void testDescheduleAndUpdate() {
+        long start = System.currentTimeMillis();
+        TimingWheel wheel = new TimingWheel(start);
+        CachedObject removed = new CachedObject("Removed", start + 100, 0, false);
+        CachedObject idle = new CachedObject("Idle", start + TimeUnit.HOURS.toMillis(1), TimeUnit.MINUTES.toMillis(1), true);
+        wheel.schedule(removed);
+        wheel.schedule(idle);
+        wheel.deschedule(removed);
+        idle.setUpdateTimeExact(start + TimeUnit.MINUTES.toMillis(10));
+
+        List<CachedObject> expired = new ArrayList<CachedObject>();
+        wheel.advance(start + TimeUnit.MINUTES.toMillis(5), expired, 0);
+        Assert.assertTrue(expired.isEmpty());
+        wheel.advance(start + TimeUnit.MINUTES.toMillis(11), expired, 0);
+        Assert.assertEquals(1, expired.size());
+        Assert.assertSame(idle, expired.get(0));
+    }
+
+    @Test
+    @UnitInfo(description = "A budgeted advance resumes where it stopped")
+    public void testBudgetedAdvance() {
+        long start = 1000000L;
+        TimingWheel wheel = new TimingWheel(start);
+        for (int i = 0; i < 1000; i++) {
+            wheel.schedule(new CachedObject(i, start + 10 + i, 0, false));
+        }
+        List<CachedObject> expired = new ArrayList<CachedObject>();
+        int passes = 0;
+        while (!wheel.advance(start + TimeUnit.MINUTES.toMillis(1), expired, 100)) {
+            Assert.assertEquals(100 * ++passes, expired.size());
+        }
+        Assert.assertEquals(1000, expired.size());
+        Assert.assertTrue(passes >= 9);
+    }
+
+    @Test
+    @UnitInfo(description = "An object is scheduled by lifetime and update time in separate wheels")
+    public void testIdleWheel() {
+        long start = 1000000L;
+        TimingWheel lifetimes = new TimingWheel(start);
+        TimingWheel idle = new TimingWheel(start, true);
+        CachedObject object = new CachedObject("Idle", start + TimeUnit.HOURS.toMillis(1), TimeUnit.MINUTES.toMillis(1), false);
+        object.update(start);
+        lifetimes.schedule(object);
+        idle.schedule(object);
+
+        List<CachedObject> expired = new ArrayList<CachedObject>();
+        lifetimes.advance(start + TimeUnit.MINUTES.toMillis(2), expired, 0);
+        Assert.assertTrue(expired.isEmpty());
+        object.update(start + TimeUnit.MINUTES.toMillis(2));
+        idle.advance(start + TimeUnit.MINUTES.toMillis(2), expired, 0);
+        Assert.assertTrue(expired.isEmpty());
+        idle.advance(start + TimeUnit.MINUTES.toMillis(4), expired, 0);
+        Assert.assertEquals(1, expired.size());
+
+        idle.deschedule(object);
+        expired.clear();
+        lifetimes.advance(start + TimeUnit.HOURS.toMillis(2), expired, 0);
+        Assert.assertEquals(1, expired.size());
+    }
+}
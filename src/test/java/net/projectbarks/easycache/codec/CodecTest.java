@@ -0,0 +1,109 @@
+package net.projectbarks.easycache.codec;
+
+import net.projectbarks.easycache.FancyWatcher;
+import net.projectbarks.easycache.UnitInfo;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CodecTest {
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Test
+    @UnitInfo(description = "Codecs read back exactly what they wrote")
+    public void testRoundTrip() {
+        Sample sample = new Sample();
+        sample.name = "ünïcødé € 😀";
+        sample.count = -42;
+        sample.ratio = 0.1d;
+        sample.total = Long.MAX_VALUE;
+        sample.price = new BigDecimal("12345678901234567890.5");
+        sample.flag = true;
+        sample.tags = Arrays.asList("One", null, "Three");
+        sample.children = new ArrayList<Sample>();
+        for (int i = 0; i < 3; i++) {
+            Sample child = new Sample();
+            child.count = i;
+            child.ratio = -0.0d;
+            sample.children.add(child);
+        }
+        for (Codec codec : new Codec[]{new GsonCodec(), new BinaryCodec()}) {
+            Sample copy = codec.decode(encode(codec, sample), Sample.class);
+            Assert.assertEquals(sample, copy);
+            Assert.assertEquals(Integer.valueOf(7), codec.decode(encode(codec, 7), Integer.class));
+            Assert.assertArrayEquals(new byte[]{1, 2, 3}, codec.decode(encode(codec, new byte[]{1, 2, 3}), byte[].class));
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "Binary codec writes repeated field names only once")
+    public void testBinaryIsCompact() {
+        List<Sample> list = new ArrayList<Sample>();
+        for (int i = 0; i < 100; i++) {
+            Sample sample = new Sample();
+            sample.name = "Sample " + i;
+            sample.count = i;
+            list.add(sample);
+        }
+        int json = encode(new GsonCodec(), list).length;
+        int binary = encode(new BinaryCodec(), list).length;
+        Assert.assertTrue(json + " vs " + binary, binary * 2 < json);
+    }
+
+    @Test(expected = CodecException.class)
+    @UnitInfo(description = "Corrupt bytes fail with a codec exception")
+    public void testCorruptBytes() {
+        byte[] bytes = encode(new BinaryCodec(), Arrays.asList("One", "Two"));
+        new BinaryCodec().decode(Arrays.copyOf(bytes, bytes.length - 3), List.class);
+    }
+
+    private static byte[] encode(Codec codec, Object value) {
+        ByteOutput output = ByteOutput.acquire();
+        try {
+            codec.encode(value, output);
+            return output.toByteArray();
+        } finally {
+            output.release();
+        }
+    }
+
+    private static class Sample {
+        String name;
+        int count;
+        double ratio;
+        long total;
+        BigDecimal price;
+        boolean flag;
+        List<String> tags;
+        List<Sample> children;
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Sample)) return false;
+            Sample that = (Sample) o;
+            return String.valueOf(name).equals(String.valueOf(that.name)) && count == that.count
+                    && Double.compare(ratio, that.ratio) == 0 && total == that.total
+                    && String.valueOf(price).equals(String.valueOf(that.price)) && flag == that.flag
+                    && String.valueOf(tags).equals(String.valueOf(that.tags))
+                    && String.valueOf(children).equals(String.valueOf(that.children));
+        }
+
+        @Override
+        public int hashCode() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return name + "/" + count + "/" + ratio + "/" + total + "/" + price + "/" + flag + "/" + tags + "/" + children;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package net.projectbarks.easycache.codec;
+
+import net.projectbarks.easycache.EasyCache;
+import net.projectbarks.easycache.FancyWatcher;
+import net.projectbarks.easycache.StorageMode;
+import net.projectbarks.easycache.UnitInfo;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class CompressionTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Test
+    @UnitInfo(description = "Compressors restore exactly the bytes they compressed")
+    public void testRoundTrip() {
+        Random random = new Random(7);
+        byte[] noise = new byte[100000];
+        random.nextBytes(noise);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("{\"name\":\"Sample ").append(i).append("\",\"count\":").append(random.nextInt(100)).append('}');
+        }
+        byte[] dictionary = "{\"name\":\"Sample \",\"count\":}".getBytes(UTF_8);
+        List<byte[]> inputs = Arrays.asList(new byte[0], new byte[]{1}, new byte[]{1, 2, 3, 4, 5},
+                new byte[70000], noise, text.toString().getBytes(UTF_8), "{\"name\":\"Sample 1\"}".getBytes(UTF_8));
+        Compressor[] compressors = {new LzCompressor(), new LzCompressor(dictionary),
+                new DeflateCompressor(), new DeflateCompressor(9, dictionary)};
+        for (Compressor compressor : compressors) {
+            for (byte[] input : inputs) {
+                ByteOutput output = ByteOutput.acquire();
+                try {
+                    output.write(9);
+                    compressor.compress(input, 0, input.length, output);
+                    byte[] restored = new byte[input.length];
+                    compressor.decompress(output.buffer(), 1, output.size() - 1, restored);
+                    Assert.assertArrayEquals(compressor + " " + input.length, input, restored);
+                } finally {
+                    output.release();
+                }
+            }
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "Large values are compressed while small and incompressible values are kept as they are")
+    public void testThreshold() {
+        CompressingCodec codec = new CompressingCodec(new GsonCodec(), new LzCompressor(), 64);
+        byte[] small = encode(codec, "Small");
+        Assert.assertEquals(0, small[0]);
+        Assert.assertEquals("Small", codec.decode(small, String.class));
+
+        List<String> large = new ArrayList<String>();
+        for (int i = 0; i < 200; i++) {
+            large.add("Repeated value " + i);
+        }
+        byte[] compressed = encode(codec, large);
+        Assert.assertNotEquals(0, compressed[0]);
+        Assert.assertEquals(large, codec.decode(compressed, List.class));
+        Assert.assertTrue(String.valueOf(codec.getRatio()), codec.getRatio() > 2);
+
+        byte[] noise = new byte[1000];
+        new Random(3).nextBytes(noise);
+        byte[] packed = codec.pack(noise);
+        Assert.assertEquals(0, packed[0]);
+        Assert.assertArrayEquals(noise, codec.unpack(packed));
+    }
+
+    @Test
+    @UnitInfo(description = "Compressed values weigh less so more of them fit within the max size")
+    public void testDensity() {
+        EasyCache.clearCache();
+        EasyCache.setStorageMode(StorageMode.VALUE);
+        try {
+            List<String> value = new ArrayList<String>();
+            for (int i = 0; i < 100; i++) {
+                value.add("Repeated value " + i);
+            }
+            EasyCache.storeCacheObject("Plain", value);
+            long plain = EasyCache.getUsedSpace();
+            EasyCache.setCodec(new CompressingCodec(new BinaryCodec()));
+            EasyCache.storeCacheObject("Compressed", value);
+            long compressed = EasyCache.getUsedSpace() - plain;
+            Assert.assertTrue(plain + " vs " + compressed, compressed * 2 < plain);
+            Assert.assertEquals(value, EasyCache.getCachedObject("Compressed", List.class));
+            Assert.assertEquals(value, EasyCache.getCachedObject("Plain", List.class));
+        } finally {
+            EasyCache.setStorageMode(StorageMode.REFERENCE);
+            EasyCache.setCodec(new BinaryCodec());
+            EasyCache.clearCache();
+        }
+    }
+
+    @Test(expected = CodecException.class)
+    @UnitInfo(description = "Corrupt compressed bytes fail with a codec exception")
+    public void testCorruptBytes() {
+        CompressingCodec codec = new CompressingCodec(new GsonCodec(), new LzCompressor(), 0);
+        byte[] bytes = codec.pack(new byte[1000]);
+        codec.unpack(Arrays.copyOf(bytes, bytes.length - 2));
+    }
+
+    @Test
+    @UnitInfo(description = "A claimed length far beyond what the compressed bytes can hold is refused")
+    public void testClaimedLength() {
+        CompressingCodec codec = new CompressingCodec(new GsonCodec(), new DeflateCompressor(), 0);
+        byte[] zeros = new byte[1 << 20];
+        Assert.assertArrayEquals(zeros, codec.unpack(codec.pack(zeros)));
+        byte[] forged = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x07, 1, 2, 3, 4};
+        try {
+            codec.unpack(forged);
+            Assert.fail("Expected a codec exception!");
+        } catch (CodecException exception) {
+            Assert.assertEquals("Corrupt compressed value!", exception.getMessage());
+        }
+    }
+
+    private static byte[] encode(Codec codec, Object value) {
+        ByteOutput output = ByteOutput.acquire();
+        try {
+            codec.encode(value, output);
+            return output.toByteArray();
+        } finally {
+            output.release();
+        }
+    }
+}
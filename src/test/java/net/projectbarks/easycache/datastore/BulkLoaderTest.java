@@ -0,0 +1,107 @@
+package net.projectbarks.easycache.datastore;
+
+import net.projectbarks.easycache.DiskUnit;
+import net.projectbarks.easycache.EasyCache;
+import net.projectbarks.easycache.FancyWatcher;
+import net.projectbarks.easycache.UnitInfo;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class BulkLoaderTest {
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Test
+    @UnitInfo(description = "Bulk loaders import every chunk in parallel")
+    public void testParallelImport() {
+        EasyCache.clearCache();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Assert.assertEquals(20000, EasyCache.importCache(new CountingLoader(20000), pool));
+            for (int i = 0; i < 20000; i += 7) {
+                Assert.assertEquals("Value-" + i, EasyCache.getCachedObject("Whiskey-" + i, String.class));
+            }
+        } finally {
+            pool.shutdown();
+            EasyCache.clearCache();
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "Bulk loaders still follow the one at a time protocol")
+    public void testSingleResults() {
+        CountingLoader loader = new CountingLoader(2500);
+        int loaded = 0;
+        CacheLoader.Result result;
+        do {
+            result = loader.load(new CacheLoader.Result());
+            Assert.assertEquals("\"Value-" + loaded + "\"", result.getValue());
+            loaded++;
+        } while (result.isRemainingValues());
+        Assert.assertEquals(2500, loaded);
+    }
+
+    @Test
+    @UnitInfo(description = "Only the objects that are kept count as imported")
+    public void testImportAdmission() {
+        EasyCache.clearCache();
+        EasyCache.setMaxSize(DiskUnit.Kilobyte, 8);
+        try {
+            final String[] keys = {"Xray-Huge", "Xray-Large", "Xray-Small"};
+            final int[] lengths = {20000, 4000, 10};
+            int imported = EasyCache.importCache(new CacheLoader() {
+                private int next;
+
+                @Override
+                public Result load(Result result) {
+                    char[] chars = new char[lengths[next]];
+                    Arrays.fill(chars, 'x');
+                    result.setKey(keys[next]);
+                    result.setValue("\"" + new String(chars) + "\"");
+                    result.setRemainingValues(++next < keys.length);
+                    return result;
+                }
+            });
+            Assert.assertEquals(2, imported);
+            Assert.assertNull(EasyCache.getCachedObject("Xray-Huge", String.class));
+            Assert.assertEquals(4000, EasyCache.getCachedObject("Xray-Large", String.class).length());
+        } finally {
+            EasyCache.setMaxSize(DiskUnit.Megabyte, 100);
+            EasyCache.clearCache();
+        }
+    }
+
+    /**
+     * Loads numbered objects in chunks, the json value is only built by decode.
+     */
+    private static class CountingLoader extends BulkCacheLoader {
+        private final int total;
+        private int next;
+
+        CountingLoader(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public boolean loadChunk(List<Result> chunk, int max) {
+            for (; next < total && chunk.size() < max; next++) {
+                Result result = new Result();
+                result.setKey("Whiskey-" + next);
+                chunk.add(result);
+            }
+            return next < total;
+        }
+
+        @Override
+        public void decode(Result result) {
+            result.setValue("\"Value-" + result.getKey().substring(8) + "\"");
+        }
+    }
+}
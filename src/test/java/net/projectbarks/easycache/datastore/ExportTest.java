@@ -0,0 +1,74 @@
+package net.projectbarks.easycache.datastore;
+
+import net.projectbarks.easycache.EasyCache;
+import net.projectbarks.easycache.FancyWatcher;
+import net.projectbarks.easycache.UnitInfo;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class ExportTest {
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Test
+    @UnitInfo(description = "An asynchronous export passes every object in order while writers keep storing")
+    public void testAsyncExport() throws Exception {
+        EasyCache.clearCache();
+        int stored = 20000;
+        for (int i = 0; i < stored; i++) {
+            EasyCache.storeCacheObject("Xray-" + i, i);
+        }
+        RecordingStore store = new RecordingStore();
+        ExecutorService workers = Executors.newFixedThreadPool(3);
+        try {
+            CompletableFuture<Integer> future = EasyCache.exportCacheAsync(store, workers);
+            for (int i = 0; !future.isDone(); i++) {
+                EasyCache.storeCacheObject("Yankee-" + i, i);
+            }
+            int exported = future.get(30, TimeUnit.SECONDS);
+            Assert.assertTrue(store.finished);
+            Assert.assertEquals(exported, store.keys.size());
+            Assert.assertTrue(exported >= stored);
+            for (int i = 0; i < stored; i++) {
+                Assert.assertTrue(store.keys.contains("Xray-" + i));
+            }
+        } finally {
+            workers.shutdown();
+            EasyCache.clearCache();
+        }
+    }
+
+    /**
+     * Records the keys stored and checks the index and total of every call.
+     */
+    private static class RecordingStore extends CacheStore {
+        private final Set<String> keys = new HashSet<String>();
+        private int total = -1;
+        private boolean finished;
+
+        @Override
+        public void store(String key, String value, Object rawValue, int index, int total) {
+            Assert.assertEquals(keys.size(), index);
+            Assert.assertTrue(this.total == -1 || this.total == total);
+            Assert.assertTrue(index < total);
+            Assert.assertEquals(String.valueOf(rawValue), value);
+            this.total = total;
+            keys.add(key);
+        }
+
+        @Override
+        public void finish() {
+            finished = true;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package net.projectbarks.easycache.datastore;
+
+import net.projectbarks.easycache.EasyCache;
+import net.projectbarks.easycache.FancyWatcher;
+import net.projectbarks.easycache.UnitInfo;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReadThroughTest {
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Test
+    @UnitInfo(description = "A missing key is loaded once for every thread missing it and then stored")
+    public void testLoad() throws Exception {
+        EasyCache.clearCache();
+        final AtomicInteger loads = new AtomicInteger();
+        EasyCache.setReadThrough(new ReadThroughLoader() {
+            @Override
+            public Object load(String key) throws Exception {
+                loads.incrementAndGet();
+                Thread.sleep(100L);
+                return key.startsWith("Charlie") ? key.toUpperCase() : null;
+            }
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(pool.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return EasyCache.getCachedObject("Charlie", String.class);
+                    }
+                }));
+            }
+            for (Future<String> future : futures) {
+                Assert.assertEquals("CHARLIE", future.get());
+            }
+            Assert.assertEquals(1, loads.get());
+            Assert.assertEquals("CHARLIE", EasyCache.getCachedObject("Charlie", String.class));
+            Assert.assertEquals(1, loads.get());
+
+            Assert.assertNull(EasyCache.getCachedObject("Delta", String.class));
+            Assert.assertNull(EasyCache.getCachedObject("Delta", String.class));
+            Assert.assertEquals(3, loads.get());
+        } finally {
+            pool.shutdown();
+            EasyCache.disableReadThrough();
+            EasyCache.clearCache();
+        }
+        Assert.assertNull(EasyCache.getCachedObject("Charlie", String.class));
+    }
+
+    @Test
+    @UnitInfo(description = "The misses of a batch are loaded together in a single call")
+    public void testLoadAll() {
+        EasyCache.clearCache();
+        final List<Collection<String>> batches = new ArrayList<Collection<String>>();
+        EasyCache.setReadThrough(new ReadThroughLoader() {
+            @Override
+            public Object load(String key) {
+                throw new IllegalStateException("Keys must be loaded in a batch!");
+            }
+
+            @Override
+            public Map<String, Object> loadAll(Collection<String> keys) {
+                batches.add(new ArrayList<String>(keys));
+                Map<String, Object> values = new HashMap<String, Object>();
+                for (String key : keys) {
+                    if (!key.equals("Echo-3")) {
+                        values.put(key, key.length());
+                    }
+                }
+                return values;
+            }
+        });
+        try {
+            EasyCache.storeCacheObject("Echo-1", 100);
+            Map<String, Integer> values = EasyCache.getAll(Arrays.asList("Echo-1", "Echo-2", "Echo-3", "Echo-22"), Integer.class);
+            Assert.assertEquals(1, batches.size());
+            Assert.assertEquals(Arrays.asList("Echo-2", "Echo-3", "Echo-22"), batches.get(0));
+            Assert.assertEquals(3, values.size());
+            Assert.assertEquals(Integer.valueOf(100), values.get("Echo-1"));
+            Assert.assertEquals(Integer.valueOf(7), values.get("Echo-22"));
+            Assert.assertFalse(values.containsKey("Echo-3"));
+
+            EasyCache.disableReadThrough();
+            Assert.assertEquals(Integer.valueOf(6), EasyCache.getCachedObject("Echo-2", Integer.class));
+            Assert.assertNull(EasyCache.getCachedObject("Echo-3", Integer.class));
+        } finally {
+            EasyCache.disableReadThrough();
+            EasyCache.clearCache();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package net.projectbarks.easycache.datastore;
+
+import net.projectbarks.easycache.EasyCache;
+import net.projectbarks.easycache.FancyWatcher;
+import net.projectbarks.easycache.StorageMode;
+import net.projectbarks.easycache.UnitInfo;
+import net.projectbarks.easycache.codec.CompressingCodec;
+import net.projectbarks.easycache.codec.GsonCodec;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestRule;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class SnapshotTest {
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    @UnitInfo(description = "A binary snapshot restores values and their remaining lifetime")
+    public void testExportImport() throws Exception {
+        File file = folder.newFile("cache.snapshot");
+        EasyCache.clearCache();
+        EasyCache.storeCacheObject("Tango", Arrays.asList("One", "Two"));
+        // Long enough for the first export and import of a cold jvm to finish before it expires.
+        EasyCache.storeCacheObject("Uniform", 42, TimeUnit.MILLISECONDS, 3000L);
+        EasyCache.setStorageMode(StorageMode.VALUE);
+        try {
+            EasyCache.storeCacheObject("Victor", new char[70000]);
+        } finally {
+            EasyCache.setStorageMode(StorageMode.REFERENCE);
+        }
+        Assert.assertEquals(3, EasyCache.exportCache(new BinarySnapshotStore(file)));
+
+        EasyCache.clearCache();
+        Assert.assertEquals(3, EasyCache.importCache(new BinarySnapshotLoader(file)));
+        Assert.assertEquals(Arrays.asList("One", "Two"), EasyCache.getCachedObject("Tango", List.class));
+        Assert.assertEquals(Integer.valueOf(42), EasyCache.getCachedObject("Uniform", Integer.class));
+        Assert.assertArrayEquals(new char[70000], EasyCache.getCachedObject("Victor", char[].class));
+        Thread.sleep(3100L);
+        Assert.assertNull(EasyCache.getCachedObject("Uniform", Integer.class));
+        EasyCache.clearCache();
+    }
+
+    @Test
+    @UnitInfo(description = "A compressed snapshot is smaller and can only be read with its codec")
+    public void testCompressedSnapshot() throws Exception {
+        File plain = folder.newFile("plain.snapshot");
+        File compressed = folder.newFile("compressed.snapshot");
+        CompressingCodec codec = new CompressingCodec(new GsonCodec());
+        EasyCache.clearCache();
+        for (int i = 0; i < 100; i++) {
+            EasyCache.storeCacheObject("Whiskey-" + i, Arrays.asList("Repeated value", "Repeated value", i));
+        }
+        EasyCache.storeCacheObject("Xray", new char[70000]);
+        Assert.assertEquals(101, EasyCache.exportCache(new BinarySnapshotStore(plain)));
+        Assert.assertEquals(101, EasyCache.exportCache(new BinarySnapshotStore(compressed, codec)));
+        Assert.assertTrue(plain.length() + " vs " + compressed.length(), compressed.length() * 2 < plain.length());
+
+        EasyCache.clearCache();
+        try {
+            new BinarySnapshotLoader(compressed);
+            Assert.fail("A compressed snapshot must not be read without its codec!");
+        } catch (IOException expected) {
+        }
+        Assert.assertEquals(101, EasyCache.importCache(new BinarySnapshotLoader(compressed, codec)));
+        Assert.assertEquals(Arrays.asList("Repeated value", "Repeated value", 7.0), EasyCache.getCachedObject("Whiskey-7", List.class));
+        Assert.assertArrayEquals(new char[70000], EasyCache.getCachedObject("Xray", char[].class));
+        EasyCache.clearCache();
+        Assert.assertEquals(101, EasyCache.importCache(new BinarySnapshotLoader(plain, codec)));
+        Assert.assertArrayEquals(new char[70000], EasyCache.getCachedObject("Xray", char[].class));
+        EasyCache.clearCache();
+    }
+}
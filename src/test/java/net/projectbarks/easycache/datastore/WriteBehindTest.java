@@ -0,0 +1,161 @@
+package net.projectbarks.easycache.datastore;
+
+import net.projectbarks.easycache.EasyCache;
+import net.projectbarks.easycache.FancyWatcher;
+import net.projectbarks.easycache.UnitInfo;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class WriteBehindTest {
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    @Test
+    @UnitInfo(description = "Repeated writes to a key reach the store once with the newest value")
+    public void testCoalescing() {
+        EasyCache.clearCache();
+        RecordingStore store = new RecordingStore();
+        EasyCache.setWriteBehind(store, 100, TimeUnit.HOURS, 1L, 1L);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                EasyCache.storeCacheObject("Zulu", i);
+            }
+            Map<String, Integer> values = new HashMap<String, Integer>();
+            for (int i = 0; i < 50; i++) {
+                values.put("Alfa-" + i, i);
+            }
+            EasyCache.storeAll(values);
+            Assert.assertTrue(store.writes().isEmpty());
+
+            EasyCache.flushWriteBehind();
+            List<String> writes = store.writes();
+            Assert.assertEquals(51, writes.size());
+            Assert.assertEquals("Zulu=999", writes.get(0));
+            Assert.assertTrue(writes.contains("Alfa-7=7"));
+        } finally {
+            EasyCache.disableWriteBehind();
+            EasyCache.clearCache();
+        }
+        Assert.assertTrue(store.finished);
+    }
+
+    @Test
+    @UnitInfo(description = "Dirty keys are flushed once a batch is full and when write behind is disabled")
+    public void testFlushSize() throws InterruptedException {
+        EasyCache.clearCache();
+        RecordingStore store = new RecordingStore();
+        EasyCache.setWriteBehind(store, 10, TimeUnit.HOURS, 1L, 1L);
+        try {
+            for (int i = 0; i < 25; i++) {
+                EasyCache.storeCacheObject("Bravo-" + i, i);
+            }
+            for (int i = 0; i < 200 && store.writes().size() < 20; i++) {
+                Thread.sleep(10L);
+            }
+            Assert.assertEquals(20, store.writes().size());
+            Assert.assertEquals(9, store.lastIndex);
+            Assert.assertEquals(10, store.lastTotal);
+        } finally {
+            EasyCache.disableWriteBehind();
+            EasyCache.clearCache();
+        }
+        Assert.assertEquals(25, store.writes().size());
+        Assert.assertTrue(store.finished);
+        EasyCache.storeCacheObject("Bravo-25", 25);
+        Assert.assertEquals(25, store.writes().size());
+    }
+
+    @Test
+    @UnitInfo(description = "Keys deleted while dirty never reach the store")
+    public void testDeletes() {
+        EasyCache.clearCache();
+        RecordingStore store = new RecordingStore();
+        EasyCache.setWriteBehind(store, 100, TimeUnit.HOURS, 1L, 1L);
+        try {
+            EasyCache.storeCacheObject("Charlie", 1);
+            EasyCache.storeCacheObject("Delta", 2);
+            EasyCache.storeCacheObject("Echo", 3);
+            EasyCache.deleteEntryFromCache("Charlie");
+            EasyCache.deleteAll(Arrays.asList("Delta"));
+            EasyCache.flushWriteBehind();
+            Assert.assertEquals(Arrays.asList("Echo=3"), store.writes());
+
+            EasyCache.storeCacheObject("Foxtrot", 4);
+            EasyCache.clearCache();
+            EasyCache.storeCacheObject("Charlie", 5);
+            EasyCache.flushWriteBehind();
+            Assert.assertEquals(Arrays.asList("Echo=3", "Charlie=5"), store.writes());
+        } finally {
+            EasyCache.disableWriteBehind();
+            EasyCache.clearCache();
+        }
+    }
+
+    @Test
+    @UnitInfo(description = "Writes failed by the store are retried in the order they became dirty")
+    public void testFailedWrites() {
+        EasyCache.clearCache();
+        RecordingStore store = new RecordingStore();
+        store.failures = 1;
+        EasyCache.setWriteBehind(store, 100, TimeUnit.HOURS, 1L, 1L);
+        try {
+            for (int i = 0; i < 5; i++) {
+                EasyCache.storeCacheObject("Golf-" + i, i);
+            }
+            try {
+                EasyCache.flushWriteBehind();
+                Assert.fail("The failure of the store must be thrown!");
+            } catch (RuntimeException expected) {
+            }
+            EasyCache.storeCacheObject("Golf-5", 5);
+            EasyCache.flushWriteBehind();
+            Assert.assertEquals(Arrays.asList("Golf-0=0", "Golf-1=1", "Golf-2=2", "Golf-3=3", "Golf-4=4", "Golf-5=5"),
+                    store.writes());
+        } finally {
+            EasyCache.disableWriteBehind();
+            EasyCache.clearCache();
+        }
+    }
+
+    /**
+     * Records every write passed to the store, the store is called from the
+     * flusher thread while the test reads it.
+     */
+    private static class RecordingStore extends CacheStore {
+        private final List<String> writes = new ArrayList<String>();
+        private volatile int lastIndex = -1, lastTotal = -1;
+        private volatile boolean finished;
+        /** The amount of writes of the third key to fail. */
+        private volatile int failures;
+
+        @Override
+        public synchronized void store(String key, String value, Object rawValue, int index, int total) {
+            if (index == 2 && failures > 0) {
+                failures--;
+                throw new IllegalStateException("Store is unavailable!");
+            }
+            writes.add(key + "=" + value);
+            lastIndex = index;
+            lastTotal = total;
+        }
+
+        @Override
+        public void finish() {
+            finished = true;
+        }
+
+        synchronized List<String> writes() {
+            return new ArrayList<String>(writes);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package net.projectbarks.easycache.server;
+
+import net.projectbarks.easycache.EasyCache;
+import net.projectbarks.easycache.FancyWatcher;
+import net.projectbarks.easycache.StorageMode;
+import net.projectbarks.easycache.UnitInfo;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+public class MemcachedServerTest {
+
+    private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+    @Rule
+    public TestRule watcher = new FancyWatcher();
+
+    private MemcachedServer server;
+    private Socket socket;
+
+    @Before
+    public void start() throws IOException {
+        EasyCache.clearCache();
+        server = new MemcachedServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1000);
+        socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setSoTimeout(5000);
+    }
+
+    @After
+    public void stop() throws IOException {
+        socket.close();
+        server.close();
+        EasyCache.clearCache();
+    }
+
+    @Test
+    @UnitInfo(description = "Values are set, read, touched and deleted through the text protocol")
+    public void testCommands() throws Exception {
+        Assert.assertEquals("STORED\r\n", send("set Alpha 42 0 5\r\nHello\r\n", "\r\n"));
+        Assert.assertEquals("VALUE Alpha 42 5\r\nHello\r\nEND\r\n", send("get Alpha Missing\r\n", "END\r\n"));
+        Assert.assertEquals("END\r\n", send("get Missing\r\n", "END\r\n"));
+
+        String gets = send("gets Alpha\r\n", "END\r\n");
+        String cas = gets.substring("VALUE Alpha 42 5 ".length(), gets.indexOf("\r\n"));
+        Assert.assertEquals("EXISTS\r\n", send("cas Alpha 1 0 3 " + (Long.parseLong(cas) + 1) + "\r\nBye\r\n", "\r\n"));
+        Assert.assertEquals("STORED\r\n", send("cas Alpha 1 0 3 " + cas + "\r\nBye\r\n", "\r\n"));
+        Assert.assertEquals("NOT_FOUND\r\n", send("cas Missing 1 0 3 1\r\nBye\r\n", "\r\n"));
+        Assert.assertEquals("VALUE Alpha 1 3\r\nBye\r\nEND\r\n", send("get Alpha\r\n", "END\r\n"));
+
+        Assert.assertEquals("TOUCHED\r\n", send("touch Alpha 1\r\n", "\r\n"));
+        Assert.assertEquals("NOT_FOUND\r\n", send("touch Missing 1\r\n", "\r\n"));
+        Assert.assertEquals("DELETED\r\n", send("delete Alpha\r\n", "\r\n"));
+        Assert.assertEquals("NOT_FOUND\r\n", send("delete Alpha\r\n", "\r\n"));
+
+        EasyCache.storeCacheObject("Bravo", "Stored in process");
+        Assert.assertEquals("END\r\n", send("get Bravo\r\n", "END\r\n"));
+        Assert.assertEquals("ERROR\r\n", send("unknown\r\n", "\r\n"));
+        Assert.assertEquals("CLIENT_ERROR bad command line format\r\n", send("touch Bravo soon\r\n", "\r\n"));
+    }
+
+    @Test
+    @UnitInfo(description = "Pipelined commands are answered in order and large values are refused")
+    public void testPipelining() throws Exception {
+        byte[] value = new byte[1000];
+        Arrays.fill(value, (byte) 'x');
+        String large = new String(value, LATIN_1);
+        String reply = send("set Charlie 0 0 1000 noreply\r\n" + large + "\r\n"
+                + "set Delta 0 0 1001\r\n" + large + "y\r\n"
+                + "get Charlie Delta\r\n"
+                + "set Echo 7 0 2\r\nab\r\n"
+                + "delete Echo noreply\r\n"
+                + "get Echo\r\n", "STORED\r\nEND\r\n");
+        Assert.assertEquals("SERVER_ERROR object too large for cache\r\n"
+                + "VALUE Charlie 0 1000\r\n" + large + "\r\nEND\r\n"
+                + "STORED\r\n"
+                + "END\r\n", reply);
+    }
+
+    @Test
+    @UnitInfo(description = "The value of a refused set is skipped rather than run as a command")
+    public void testRefusedSet() throws Exception {
+        char[] chars = new char[251];
+        Arrays.fill(chars, 'k');
+        String longKey = new String(chars);
+        Assert.assertEquals("STORED\r\n", send("set India 0 0 1\r\nx\r\n", "\r\n"));
+        String reply = send("set " + longKey + " 0 0 12\r\ndelete India\r\n"
+                + "set Juliett zero 0 12\r\ndelete India\r\n"
+                + "get India\r\n", "END\r\n");
+        Assert.assertEquals("CLIENT_ERROR key too long\r\n"
+                + "CLIENT_ERROR bad command line format\r\n"
+                + "VALUE India 0 1\r\nx\r\nEND\r\n", reply);
+    }
+
+    @Test
+    @UnitInfo(description = "A value split over many packets is read once it is complete")
+    public void testPartialValue() throws Exception {
+        OutputStream out = socket.getOutputStream();
+        out.write("set Foxtrot 0 1 10\r\n01234".getBytes(LATIN_1));
+        out.flush();
+        Thread.sleep(50L);
+        Assert.assertEquals("STORED\r\n", send("56789\r\n", "\r\n"));
+        Assert.assertEquals("VALUE Foxtrot 0 10\r\n0123456789\r\nEND\r\n", send("get Foxtrot\r\n", "END\r\n"));
+        Thread.sleep(1100L);
+        Assert.assertEquals("END\r\n", send("get Foxtrot\r\n", "END\r\n"));
+    }
+
+    @Test
+    @UnitInfo(description = "Values stored by value are kept as their raw bytes")
+    public void testStoreByValue() throws Exception {
+        EasyCache.setStorageMode(StorageMode.VALUE);
+        try {
+            byte[] value = new byte[1000];
+            Arrays.fill(value, (byte) 200);
+            String binary = new String(value, LATIN_1);
+            Assert.assertEquals("STORED\r\n", send("set Golf 3 0 1000\r\n" + binary + "\r\n", "\r\n"));
+            Assert.assertTrue(EasyCache.getUsedSpace() < 1100);
+            Assert.assertEquals("VALUE Golf 3 1000\r\n" + binary + "\r\nEND\r\n", send("get Golf\r\n", "END\r\n"));
+            EasyCache.storeCacheObject("Hotel", new byte[]{1, 2, 3});
+            Assert.assertEquals("END\r\n", send("get Hotel\r\n", "END\r\n"));
+        } finally {
+            EasyCache.setStorageMode(StorageMode.REFERENCE);
+        }
+    }
+
+    /**
+     * Sends a request and reads the reply until it ends with the suffix given.
+     */
+    private String send(String request, String suffix) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(request.getBytes(LATIN_1));
+        out.flush();
+        InputStream in = socket.getInputStream();
+        StringBuilder reply = new StringBuilder();
+        while (reply.length() < suffix.length() || !reply.substring(reply.length() - suffix.length()).equals(suffix)) {
+            int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            reply.append((char) b);
+        }
+        return reply.toString();
+    }
+}